@@ -3,6 +3,12 @@ package net.fabricmc.fernflower.api;
 
 import org.jetbrains.java.decompiler.main.extern.IResultSaver;
 
+import java.nio.ByteBuffer;
+
 public interface IFabricResultSaver extends IResultSaver {
   void saveClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content, int[] mapping);
+
+  default void saveEncodedClassEntry(String path, String archiveName, String qualifiedName, String entryName, ByteBuffer content, int[] mapping) {
+    saveClassEntry(path, archiveName, qualifiedName, entryName, IResultSaver.decode(content), mapping);
+  }
 }
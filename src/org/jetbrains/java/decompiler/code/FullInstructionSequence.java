@@ -1,19 +1,38 @@
 // Copyright 2000-2017 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.jetbrains.java.decompiler.code;
 
-import org.jetbrains.java.decompiler.util.VBStyleCollection;
-
+import java.util.Arrays;
 
+/**
+ * The instructions of a whole method as parsed from the class file. The sequence is read-only and keeps
+ * its instructions and their offsets in plain arrays instead of a keyed collection.
+ */
 public class FullInstructionSequence extends InstructionSequence {
 
+  private final Instruction[] instructions;
+  private final int[] offsets;
+  private final int count;
+
+  // bytecode offset -> instruction index, -1 for offsets inside an instruction
+  private final int[] indexByOffset;
+
   // *****************************************************************************
   // constructors
   // *****************************************************************************
 
-  public FullInstructionSequence(VBStyleCollection<Instruction, Integer> collinstr, ExceptionTable extable) {
-    super(collinstr);
+  public FullInstructionSequence(Instruction[] instructions, int[] offsets, int count, int codeLength, ExceptionTable extable) {
+    super(null);
+    this.instructions = instructions;
+    this.offsets = offsets;
+    this.count = count;
     this.exceptionTable = extable;
 
+    indexByOffset = new int[codeLength];
+    Arrays.fill(indexByOffset, -1);
+    for (int i = 0; i < count; i++) {
+      indexByOffset[offsets[i]] = i;
+    }
+
     // translate raw exception handlers to instr
     for (ExceptionHandler handler : extable.getHandlers()) {
       handler.from_instr = this.getPointerByAbsOffset(handler.from);
@@ -21,4 +40,65 @@ public class FullInstructionSequence extends InstructionSequence {
       handler.handler_instr = this.getPointerByAbsOffset(handler.handler);
     }
   }
+
+  @Override
+  public Instruction getInstr(int index) {
+    if (index >= count) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+    }
+    return instructions[index];
+  }
+
+  @Override
+  public Instruction getLastInstr() {
+    return getInstr(count - 1);
+  }
+
+  @Override
+  public int getOffset(int index) {
+    if (index >= count) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+    }
+    return offsets[index];
+  }
+
+  @Override
+  public int getPointerByAbsOffset(int offset) {
+    return offset >= 0 && offset < indexByOffset.length ? indexByOffset[offset] : -1;
+  }
+
+  @Override
+  public int length() {
+    return count;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return count == 0;
+  }
+
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException("Method instruction sequence is read-only");
+  }
+
+  @Override
+  public void addInstruction(Instruction inst, int offset) {
+    throw new UnsupportedOperationException("Method instruction sequence is read-only");
+  }
+
+  @Override
+  public void addInstruction(int index, Instruction inst, int offset) {
+    throw new UnsupportedOperationException("Method instruction sequence is read-only");
+  }
+
+  @Override
+  public void removeInstruction(int index) {
+    throw new UnsupportedOperationException("Method instruction sequence is read-only");
+  }
+
+  @Override
+  public void removeLast() {
+    throw new UnsupportedOperationException("Method instruction sequence is read-only");
+  }
 }
@@ -88,13 +88,7 @@ public abstract class InstructionSequence {
   }
 
   public int getPointerByRelOffset(int offset) {
-    Integer absoffset = collinstr.getKey(pointer) + offset;
-    if (collinstr.containsKey(absoffset)) {
-      return collinstr.getIndexByKey(absoffset);
-    }
-    else {
-      return -1;
-    }
+    return getPointerByAbsOffset(getOffset(pointer) + offset);
   }
 
   public int length() {
@@ -119,11 +113,11 @@ public abstract class InstructionSequence {
 
     StringBuilder buf = new StringBuilder();
 
-    for (int i = 0; i < collinstr.size(); i++) {
+    for (int i = 0; i < length(); i++) {
     buf.append(TextUtil.getIndentString(indent));
-      buf.append(collinstr.getKey(i).intValue());
+      buf.append(getOffset(i));
       buf.append(": ");
-      buf.append(collinstr.get(i).toString());
+      buf.append(getInstr(i).toString());
       buf.append(new_line_separator);
     }
 
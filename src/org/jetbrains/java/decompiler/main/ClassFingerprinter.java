@@ -0,0 +1,218 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.java.decompiler.main;
+
+import org.jetbrains.java.decompiler.main.ClassesProcessor.ClassNode;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.jetbrains.java.decompiler.struct.StructClass;
+import org.jetbrains.java.decompiler.struct.StructContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Hashes everything that can change the decompiled text of a root class: the engine version, the effective options,
+ * the bytes of the root class and of its nested classes, and the bytes of all super classes and interfaces of these classes.
+ * Runs with options that are objects rather than plain values (providers and the like) have no fingerprints, since the same
+ * type may be configured to behave differently.
+ */
+public class ClassFingerprinter {
+  // options that do not influence the decompiled text
+  private static final Set<String> IGNORED_OPTIONS = new HashSet<>(Arrays.asList(
+    IFernflowerPreferences.THREADS,
+    IFernflowerPreferences.LOG_LEVEL,
+    IFernflowerPreferences.LOG_FORMAT,
+    IFernflowerPreferences.DECOMPILATION_CACHE,
+    IFernflowerPreferences.INCREMENTAL_MANIFEST,
+    IFernflowerPreferences.INCREMENTAL_PREVIOUS_OUTPUT,
+    IFernflowerPreferences.PASS_STATISTICS_REPORT
+  ));
+
+  private final byte[] environmentHash;  // null if this run has no fingerprints
+
+  public ClassFingerprinter(Map<String, Object> options) {
+    environmentHash = hashEnvironment(options);
+  }
+
+  /**
+   * @return the fingerprint of the given root class, or null if one of the classes it depends on cannot be read
+   *         or this run has no fingerprints
+   */
+  public String getFingerprint(ClassNode root, StructContext context) {
+    if (environmentHash == null) {
+      return null;
+    }
+
+    MessageDigest digest = newDigest();
+    digest.update(environmentHash);
+
+    try {
+      Set<String> hierarchy = new TreeSet<>();
+      Deque<ClassNode> nodes = new ArrayDeque<>();
+      nodes.add(root);
+      while (!nodes.isEmpty()) {
+        ClassNode node = nodes.removeFirst();
+        if (node.type == ClassNode.CLASS_LAMBDA) {
+          continue;
+        }
+
+        update(digest, node.classStruct.qualifiedName);
+        updateWithClass(digest, node.classStruct.qualifiedName, context);
+        collectHierarchy(node.classStruct, context, hierarchy);
+
+        List<ClassNode> nested = new ArrayList<>(node.nested);
+        Collections.sort(nested);
+        nodes.addAll(nested);
+      }
+
+      for (String name : hierarchy) {
+        update(digest, name);
+        if (context.hasClass(name)) {
+          updateWithClass(digest, name, context);
+        }
+      }
+    }
+    catch (IOException ex) {
+      return null;
+    }
+
+    return toHex(digest.digest());
+  }
+
+  private static void collectHierarchy(StructClass cl, StructContext context, Set<String> hierarchy) {
+    List<String> parents = new ArrayList<>();
+    if (cl.superClass != null) {
+      parents.add(cl.superClass.getString());
+    }
+    parents.addAll(Arrays.asList(cl.getInterfaceNames()));
+
+    for (String parent : parents) {
+      if (hierarchy.add(parent)) {
+        StructClass parentClass = context.getClass(parent);
+        if (parentClass != null) {
+          collectHierarchy(parentClass, context, hierarchy);
+        }
+      }
+    }
+  }
+
+  private static void updateWithClass(MessageDigest digest, String name, StructContext context) throws IOException {
+    byte[] bytes = context.getClassBytes(name);
+    if (bytes == null) {
+      throw new IOException("No bytecode for " + name);
+    }
+    digest.update(bytes);
+  }
+
+  private static void update(MessageDigest digest, String value) {
+    digest.update(value.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte)0);
+  }
+
+  private static byte[] hashEnvironment(Map<String, Object> options) {
+    String engineVersion = EngineVersionHolder.VERSION;
+    if (engineVersion == null) {
+      DecompilerContext.getLogger().writeMessage("The engine version is unknown, decompiled classes are not reused",
+                                                 IFernflowerLogger.Severity.WARN);
+      return null;
+    }
+
+    MessageDigest digest = newDigest();
+    update(digest, "engine " + engineVersion);
+    for (Map.Entry<String, Object> option : new TreeMap<>(options).entrySet()) {
+      if (IGNORED_OPTIONS.contains(option.getKey())) {
+        continue;
+      }
+
+      Object value = option.getValue();
+      if (value != null && !(value instanceof String || value instanceof Number || value instanceof Boolean)) {
+        DecompilerContext.getLogger().writeMessage("Option " + option.getKey() + " is set to an object, decompiled classes are not reused",
+                                                   IFernflowerLogger.Severity.WARN);
+        return null;
+      }
+      update(digest, option.getKey());
+      update(digest, String.valueOf(value));
+    }
+    return digest.digest();
+  }
+
+  // hashing a development build reads all of its classes, so it is done once
+  private static final class EngineVersionHolder {
+    static final String VERSION = getEngineVersion();
+  }
+
+  // null if unknown
+  private static String getEngineVersion() {
+    String version = ClassFingerprinter.class.getPackage().getImplementationVersion();
+    if (version != null) {
+      return version;
+    }
+
+    // development build: hash the engine classes themselves, recompiling them in place changes no version or timestamp
+    URL location = ClassFingerprinter.class.getProtectionDomain().getCodeSource() != null ?
+                   ClassFingerprinter.class.getProtectionDomain().getCodeSource().getLocation() : null;
+    if (location == null || !"file".equals(location.getProtocol())) {
+      return null;
+    }
+
+    try {
+      Path root = new File(location.toURI()).toPath();
+      MessageDigest digest = newDigest();
+      if (Files.isDirectory(root)) {
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(root)) {
+          files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        for (Path file : files) {
+          update(digest, root.relativize(file).toString());
+          updateWithFile(digest, file);
+        }
+      }
+      else {
+        updateWithFile(digest, root);
+      }
+      return "dev " + toHex(digest.digest());
+    }
+    catch (IOException | URISyntaxException | IllegalArgumentException ex) {
+      return null;
+    }
+  }
+
+  private static void updateWithFile(MessageDigest digest, Path file) throws IOException {
+    byte[] buffer = new byte[8192];
+    try (InputStream in = Files.newInputStream(file)) {
+      int read;
+      while ((read = in.read(buffer)) > 0) {
+        digest.update(buffer, 0, read);
+      }
+    }
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder builder = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return builder.toString();
+  }
+}
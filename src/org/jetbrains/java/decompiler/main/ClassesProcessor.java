@@ -365,12 +365,17 @@ public class ClassesProcessor implements CodeConstants {
     return true;
   }
 
-  public void writeClass(StructClass cl, TextBuffer buffer) throws IOException {
+  /**
+   * @return false if a method of the class or of one of its nested classes could not be decompiled or written
+   */
+  public boolean writeClass(StructClass cl, TextBuffer buffer) throws IOException {
     ClassNode root = mapRootClasses.get(cl.qualifiedName);
     if (root.type != ClassNode.CLASS_ROOT) {
-      return;
+      return true;
     }
 
+    boolean complete = true;
+
     boolean packageInfo = cl.isSynthetic() && "package-info".equals(root.simpleName);
     boolean moduleInfo = cl.hasModifier(CodeConstants.ACC_MODULE) && cl.hasAttribute(StructGeneralAttribute.ATTRIBUTE_MODULE);
 
@@ -433,12 +438,16 @@ public class ClassesProcessor implements CodeConstants {
             mapper.dumpMapping(buffer, true);
           }
         }
+
+        complete = !hasMethodErrors(root);
       }
     }
     finally {
       destroyWrappers(root);
       DecompilerContext.getLogger().endReadingClass();
     }
+
+    return complete;
   }
 
   private static void initWrappers(ClassNode node) {
@@ -485,6 +494,23 @@ public class ClassesProcessor implements CodeConstants {
     }
   }
 
+  private static boolean hasMethodErrors(ClassNode node) {
+    if (node.wrapper != null) {
+      for (MethodWrapper method : node.wrapper.getMethods()) {
+        if (method.decompiledWithErrors) {
+          return true;
+        }
+      }
+    }
+
+    for (ClassNode nd : node.nested) {
+      if (hasMethodErrors(nd)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private static void destroyWrappers(ClassNode node) {
     node.wrapper = null;
     node.classStruct.releaseResources();
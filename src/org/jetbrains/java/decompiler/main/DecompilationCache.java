@@ -0,0 +1,121 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.java.decompiler.main;
+
+import org.jetbrains.java.decompiler.main.ClassesProcessor.ClassNode;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
+import org.jetbrains.java.decompiler.struct.StructContext;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.Map;
+
+/**
+ * On-disk cache of decompiled root classes, addressed by their {@link ClassFingerprinter fingerprint}.
+ */
+public class DecompilationCache {
+  private static final int FORMAT_VERSION = 1;
+
+  private final Path directory;
+  private final ClassFingerprinter fingerprinter;
+
+  public DecompilationCache(Path directory, Map<String, Object> options) {
+    this.directory = directory;
+    this.fingerprinter = new ClassFingerprinter(options);
+  }
+
+  /**
+   * @return the cache key of the given root class, or null if one of the classes it depends on cannot be read
+   */
+  public String getKey(ClassNode root, StructContext context) {
+    return fingerprinter.getFingerprint(root, context);
+  }
+
+  public CachedClass load(String key) {
+    Path file = getFile(key);
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != FORMAT_VERSION) {
+        return null;
+      }
+
+      int[] mapping = null;
+      int mappingLength = in.readInt();
+      if (mappingLength >= 0) {
+        mapping = new int[mappingLength];
+        for (int i = 0; i < mappingLength; i++) {
+          mapping[i] = in.readInt();
+        }
+      }
+
+      byte[] content = new byte[in.readInt()];
+      in.readFully(content);
+      return new CachedClass(content, mapping);
+    }
+    catch (IOException ex) {
+      DecompilerContext.getLogger().writeMessage("Cannot read cache entry " + file, IFernflowerLogger.Severity.WARN);
+      return null;
+    }
+  }
+
+  /**
+   * @param content the UTF-8 encoded class text between the position and the limit of the buffer, which are left unchanged
+   */
+  public void store(String key, ByteBuffer content, int[] mapping) {
+    Path file = getFile(key);
+    try {
+      Files.createDirectories(file.getParent());
+
+      // write to a temporary file first, so that concurrent runs never see partial entries
+      Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        out.writeInt(FORMAT_VERSION);
+        if (mapping == null) {
+          out.writeInt(-1);
+        }
+        else {
+          out.writeInt(mapping.length);
+          for (int value : mapping) {
+            out.writeInt(value);
+          }
+        }
+        out.writeInt(content.remaining());
+        if (content.hasArray()) {
+          out.write(content.array(), content.arrayOffset() + content.position(), content.remaining());
+        }
+        else {
+          byte[] bytes = new byte[content.remaining()];
+          content.duplicate().get(bytes);
+          out.write(bytes);
+        }
+      }
+
+      try {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException ex) {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    catch (IOException ex) {
+      DecompilerContext.getLogger().writeMessage("Cannot write cache entry " + file, IFernflowerLogger.Severity.WARN);
+    }
+  }
+
+  private Path getFile(String key) {
+    return directory.resolve(key.substring(0, 2)).resolve(key + ".cache");
+  }
+
+  public static final class CachedClass {
+    public final byte[] content;  // UTF-8
+    public final int[] mapping;
+
+    CachedClass(byte[] content, int[] mapping) {
+      this.content = content;
+      this.mapping = mapping;
+    }
+  }
+}
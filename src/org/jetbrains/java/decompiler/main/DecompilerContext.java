@@ -6,6 +6,7 @@ import org.jetbrains.java.decompiler.main.collectors.CounterContainer;
 import org.jetbrains.java.decompiler.main.collectors.ImportCollector;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
+import org.jetbrains.java.decompiler.main.rels.CancellationToken;
 import org.jetbrains.java.decompiler.modules.decompiler.vars.VarProcessor;
 import org.jetbrains.java.decompiler.main.extern.IVariableNamingFactory;
 import org.jetbrains.java.decompiler.modules.renamer.PoolInterceptor;
@@ -22,6 +23,7 @@ public class DecompilerContext {
   public static final String CURRENT_METHOD_WRAPPER = "CURRENT_METHOD_WRAPPER";
   public static final String CURRENT_VAR_PROCESSOR = "CURRENT_VAR_PROCESSOR";
   public static final String RENAMER_FACTORY = "RENAMER_FACTORY";
+  public static final String PASS_STATISTICS = "PASS_STATISTICS";
 
   public final Map<String, Object> properties;
   public final IFernflowerLogger logger;
@@ -33,6 +35,7 @@ public class DecompilerContext {
   private VarProcessor varProcessor;
   private CounterContainer counterContainer;
   private BytecodeSourceMapper bytecodeSourceMapper;
+  private CancellationToken cancellationToken = CancellationToken.NONE;
 
   public DecompilerContext(Map<String, Object> properties,
                            IFernflowerLogger logger,
@@ -85,6 +88,23 @@ public class DecompilerContext {
     context.counterContainer = new CounterContainer();
   }
 
+  /**
+   * Copies the current context for processing the current method on another thread, which can be cancelled through the
+   * given token. The copy keeps the method's variable processor and counters and has properties of its own, but shares
+   * the imports and line mappings of the class.
+   */
+  public static DecompilerContext forkMethod(CancellationToken token) {
+    DecompilerContext context = getCurrentContext();
+    DecompilerContext fork = new DecompilerContext(new HashMap<>(context.properties), context.logger, context.structContext,
+                                                   context.classProcessor, context.poolInterceptor, context.renamerFactory);
+    fork.importCollector = context.importCollector;
+    fork.varProcessor = context.varProcessor;
+    fork.counterContainer = context.counterContainer;
+    fork.bytecodeSourceMapper = context.bytecodeSourceMapper;
+    fork.cancellationToken = token;
+    return fork;
+  }
+
   // *****************************************************************************
   // context access
   // *****************************************************************************
@@ -137,4 +157,11 @@ public class DecompilerContext {
   public static BytecodeSourceMapper getBytecodeSourceMapper() {
     return getCurrentContext().bytecodeSourceMapper;
   }
+
+  /**
+   * Throws a {@link java.util.concurrent.CancellationException} if the processing of the current method was cancelled.
+   */
+  public static void checkCancelled() {
+    getCurrentContext().cancellationToken.checkCancelled();
+  }
 }
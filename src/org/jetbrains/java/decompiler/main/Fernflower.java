@@ -2,6 +2,7 @@
 package org.jetbrains.java.decompiler.main;
 
 import org.jetbrains.java.decompiler.main.ClassesProcessor.ClassNode;
+import org.jetbrains.java.decompiler.main.collectors.PassStatistics;
 import org.jetbrains.java.decompiler.main.extern.*;
 import org.jetbrains.java.decompiler.modules.renamer.ConverterHelper;
 import org.jetbrains.java.decompiler.modules.renamer.IdentifierConverter;
@@ -15,15 +16,23 @@ import org.jetbrains.java.decompiler.util.TextBuffer;
 import org.jetbrains.java.decompiler.util.ClasspathScanner;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 public class Fernflower implements IDecompiledData {
   private final StructContext structContext;
   private final ClassesProcessor classProcessor;
   private final IIdentifierRenamer helper;
   private final IdentifierConverter converter;
+  private final DecompilationCache cache;
+  private final IncrementalDecompilation incremental;
+  private final PassStatistics statistics;
 
   public Fernflower(IBytecodeProvider provider, IResultSaver saver, Map<String, Object> customProperties, IFernflowerLogger logger) {
     Map<String, Object> properties = new HashMap<>(IFernflowerPreferences.DEFAULTS);
@@ -78,6 +87,28 @@ public class Fernflower implements IDecompiledData {
     String jvmVersion = System.getProperty("java.vm.version", "missing jvm version");
     logger.writeMessage(String.format("JVM info: %s - %s - %s", vendor, javaVersion, jvmVersion), IFernflowerLogger.Severity.INFO);
 
+    String cacheDir = (String)properties.get(IFernflowerPreferences.DECOMPILATION_CACHE);
+    cache = cacheDir != null && !cacheDir.isEmpty() ? new DecompilationCache(Paths.get(cacheDir), properties) : null;
+
+    String manifest = (String)properties.get(IFernflowerPreferences.INCREMENTAL_MANIFEST);
+    String previousOutput = (String)properties.get(IFernflowerPreferences.INCREMENTAL_PREVIOUS_OUTPUT);
+    if (manifest != null && !manifest.isEmpty()) {
+      File previous = previousOutput != null && !previousOutput.isEmpty() ? new File(previousOutput) : null;
+      incremental = new IncrementalDecompilation(Paths.get(manifest), previous, properties);
+    }
+    else {
+      incremental = null;
+    }
+
+    String statisticsReport = (String)properties.get(IFernflowerPreferences.PASS_STATISTICS_REPORT);
+    if (statisticsReport != null && !statisticsReport.isEmpty()) {
+      statistics = new PassStatistics();
+      properties.put(DecompilerContext.PASS_STATISTICS, statistics);
+    }
+    else {
+      statistics = null;
+    }
+
     if (DecompilerContext.getOption(IFernflowerPreferences.INCLUDE_ENTIRE_CLASSPATH)) {
       ClasspathScanner.addAllClasspath(structContext);
     }
@@ -112,7 +143,33 @@ public class Fernflower implements IDecompiledData {
 
     classProcessor.loadClasses(helper);
 
-    structContext.saveContext();
+    // one work-stealing pool for the whole run, shared by the classes of every unit
+    int threads = Integer.parseInt((String)DecompilerContext.getProperty(IFernflowerPreferences.THREADS));
+    ForkJoinPool scheduler = new ForkJoinPool(Math.max(threads, 1));
+    try {
+      structContext.saveContext(scheduler);
+    }
+    finally {
+      scheduler.shutdown();
+    }
+
+    if (incremental != null) {
+      incremental.writeManifest();
+    }
+
+    if (statistics != null) {
+      writeStatistics((String)DecompilerContext.getProperty(IFernflowerPreferences.PASS_STATISTICS_REPORT));
+    }
+  }
+
+  private void writeStatistics(String report) {
+    try {
+      statistics.writeReport(Paths.get(report));
+      DecompilerContext.getLogger().writeMessage("Pass statistics written to " + report, IFernflowerLogger.Severity.INFO);
+    }
+    catch (IOException e) {
+      DecompilerContext.getLogger().writeMessage("Cannot write pass statistics to " + report, e);
+    }
   }
 
   public void addWhitelist(String prefix) {
@@ -138,16 +195,63 @@ public class Fernflower implements IDecompiledData {
     }
   }
 
+  @Override
+  public String getUnchangedOutput(StructClass cl, String path, String archiveName, String entryName) {
+    ClassNode root = classProcessor.getMapRootClasses().get(cl.qualifiedName);
+    if (incremental == null || root == null) {
+      return null;
+    }
+    return incremental.getUnchangedOutput(root, structContext, path, archiveName, entryName);
+  }
+
   @Override
   public String getClassContent(StructClass cl) {
+    ByteBuffer content = getEncodedClassContent(cl);
+    return content != null ? StandardCharsets.UTF_8.decode(content).toString() : null;
+  }
+
+  @Override
+  public ByteBuffer getEncodedClassContent(StructClass cl) {
     try {
+      String cacheKey = null;
+      ClassNode root = classProcessor.getMapRootClasses().get(cl.qualifiedName);
+      if (cache != null && root != null) {
+        cacheKey = cache.getKey(root, structContext);
+        DecompilationCache.CachedClass cached = cacheKey != null ? cache.load(cacheKey) : null;
+        if (cached != null) {
+          DecompilerContext.startClass(null);
+          if (cached.mapping != null) {
+            DecompilerContext.getBytecodeSourceMapper().setOriginalLinesMapping(cached.mapping);
+          }
+          return ByteBuffer.wrap(cached.content);
+        }
+      }
+
       TextBuffer buffer = new TextBuffer(ClassesProcessor.AVERAGE_CLASS_SIZE);
       buffer.append(DecompilerContext.getProperty(IFernflowerPreferences.BANNER).toString());
-      classProcessor.writeClass(cl, buffer);
-      return buffer.toString();
+      boolean complete = classProcessor.writeClass(cl, buffer);
+      ByteBuffer content = buffer.encodeUtf8();
+
+      // a method that failed or ran out of time may succeed next time, so such output is not kept
+      if (!complete && incremental != null) {
+        incremental.invalidate(cl.qualifiedName);
+      }
+
+      if (cacheKey != null && complete) {
+        int[] mapping = null;
+        if (DecompilerContext.getOption(IFernflowerPreferences.BYTECODE_SOURCE_MAPPING)) {
+          mapping = DecompilerContext.getBytecodeSourceMapper().getOriginalLinesMapping();
+        }
+        cache.store(cacheKey, content, mapping);
+      }
+
+      return content;
     }
     catch (Throwable t) {
       DecompilerContext.getLogger().writeMessage("Class " + cl.qualifiedName + " couldn't be fully decompiled.", t);
+      if (incremental != null) {
+        incremental.invalidate(cl.qualifiedName);
+      }
       return null;
     }
   }
@@ -0,0 +1,165 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.java.decompiler.main;
+
+import org.jetbrains.java.decompiler.main.ClassesProcessor.ClassNode;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
+import org.jetbrains.java.decompiler.struct.StructContext;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Re-decompilation of an input that changed since an earlier run. The manifest written by every run records the
+ * {@link ClassFingerprinter fingerprint} of each root class; classes whose fingerprint is unchanged are copied from
+ * the output of the earlier run instead of being decompiled again.
+ */
+public class IncrementalDecompilation {
+  private static final String HEADER = "# incremental decompilation manifest, version 1";
+
+  private final Path manifest;
+  private final File previousOutput;
+  private final ClassFingerprinter fingerprinter;
+  private final Map<String, String> previousFingerprints;
+  private final Map<String, String> fingerprints = new ConcurrentHashMap<>();
+  private final Map<File, Set<String>> previousArchives = new ConcurrentHashMap<>();
+
+  public IncrementalDecompilation(Path manifest, File previousOutput, Map<String, Object> options) {
+    this.manifest = manifest;
+    this.previousOutput = previousOutput;
+    this.fingerprinter = new ClassFingerprinter(options);
+    this.previousFingerprints = previousOutput != null && previousOutput.exists() ? readManifest(manifest) : Collections.emptyMap();
+  }
+
+  /**
+   * Whether the output of an earlier run is, lies in or contains the given destination. Unchanged classes are read from
+   * the earlier output while the new one is written, so the two must not overlap.
+   */
+  public static boolean overlaps(File previousOutput, File destination) {
+    Path previous = toRealPath(previousOutput);
+    Path target = toRealPath(destination);
+    return previous.startsWith(target) || target.startsWith(previous);
+  }
+
+  private static Path toRealPath(File file) {
+    try {
+      return file.getCanonicalFile().toPath();
+    }
+    catch (IOException ex) {
+      return file.getAbsoluteFile().toPath().normalize();
+    }
+  }
+
+  /**
+   * Records the fingerprint of the given root class for the new manifest and looks up its output of the earlier run.
+   *
+   * @return the file (for folder output) or archive holding the earlier output of the class if the class is unchanged, null otherwise
+   */
+  public String getUnchangedOutput(ClassNode root, StructContext context, String path, String archiveName, String entryName) {
+    String name = root.classStruct.qualifiedName;
+    String fingerprint = fingerprinter.getFingerprint(root, context);
+    if (fingerprint == null) {
+      return null;
+    }
+    fingerprints.put(name, fingerprint);
+
+    if (!fingerprint.equals(previousFingerprints.get(name))) {
+      return null;
+    }
+
+    if (archiveName == null) {
+      File file = new File(new File(previousOutput, path), entryName);
+      return file.isFile() ? file.getPath() : null;
+    }
+
+    // single-file output is the archive itself, otherwise archives are laid out like the input
+    File archive = previousOutput.isFile() ? previousOutput : new File(new File(previousOutput, path), archiveName);
+    return getArchiveEntries(archive).contains(entryName) ? archive.getPath() : null;
+  }
+
+  /**
+   * Drops a class from the new manifest, e.g. because it could not be decompiled, so that the next run tries again.
+   */
+  public void invalidate(String qualifiedName) {
+    fingerprints.remove(qualifiedName);
+  }
+
+  public void writeManifest() {
+    try {
+      Path parent = manifest.toAbsolutePath().getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+
+      try (BufferedWriter out = Files.newBufferedWriter(manifest, StandardCharsets.UTF_8)) {
+        out.write(HEADER);
+        out.newLine();
+        for (Map.Entry<String, String> entry : new TreeMap<>(fingerprints).entrySet()) {
+          out.write(entry.getValue());
+          out.write(' ');
+          out.write(entry.getKey());
+          out.newLine();
+        }
+      }
+    }
+    catch (IOException ex) {
+      DecompilerContext.getLogger().writeMessage("Cannot write incremental manifest " + manifest, ex);
+    }
+  }
+
+  private Set<String> getArchiveEntries(File archive) {
+    return previousArchives.computeIfAbsent(archive, file -> {
+      if (!file.isFile()) {
+        return Collections.emptySet();
+      }
+
+      Set<String> names = new HashSet<>();
+      try (ZipFile zip = new ZipFile(file)) {
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+          names.add(entries.nextElement().getName());
+        }
+      }
+      catch (IOException ex) {
+        DecompilerContext.getLogger().writeMessage("Cannot read previous output " + file, IFernflowerLogger.Severity.WARN);
+        return Collections.emptySet();
+      }
+      return names;
+    });
+  }
+
+  private static Map<String, String> readManifest(Path manifest) {
+    if (!Files.isRegularFile(manifest)) {
+      return Collections.emptyMap();
+    }
+
+    Map<String, String> fingerprints = new HashMap<>();
+    try (BufferedReader in = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+      if (!HEADER.equals(in.readLine())) {
+        DecompilerContext.getLogger().writeMessage("Ignoring incremental manifest " + manifest + " of unknown format",
+                                                   IFernflowerLogger.Severity.WARN);
+        return Collections.emptyMap();
+      }
+
+      String line;
+      while ((line = in.readLine()) != null) {
+        int separator = line.indexOf(' ');
+        if (separator > 0) {
+          fingerprints.put(line.substring(separator + 1), line.substring(0, separator));
+        }
+      }
+    }
+    catch (IOException ex) {
+      DecompilerContext.getLogger().writeMessage("Cannot read incremental manifest " + manifest, IFernflowerLogger.Severity.WARN);
+      return Collections.emptyMap();
+    }
+    return fingerprints;
+  }
+}
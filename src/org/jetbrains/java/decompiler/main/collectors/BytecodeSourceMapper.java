@@ -2,6 +2,8 @@
 package org.jetbrains.java.decompiler.main.collectors;
 
 import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.util.FastIntSet;
+import org.jetbrains.java.decompiler.util.LongIntHashMap;
 import org.jetbrains.java.decompiler.util.TextBuffer;
 
 import java.util.*;
@@ -11,26 +13,32 @@ public class BytecodeSourceMapper {
   private int offset_total;
 
   // class, method, bytecode offset, source line
-  private final Map<String, Map<String, Map<Integer, Integer>>> mapping = new LinkedHashMap<>();
+  private final Map<String, Map<String, LongIntHashMap>> mapping = new LinkedHashMap<>();
 
   // original line to decompiled line
-  private final Map<Integer, Integer> linesMapping = new HashMap<>();
-  private final Set<Integer> unmappedLines = new TreeSet<>();
+  private LongIntHashMap linesMapping = new LongIntHashMap();
+  private final FastIntSet unmappedLines = new FastIntSet();
 
   public void addMapping(String className, String methodName, int bytecodeOffset, int sourceLine) {
-    Map<String, Map<Integer, Integer>> class_mapping = mapping.computeIfAbsent(className, k -> new LinkedHashMap<>()); // need to preserve order
-    Map<Integer, Integer> method_mapping = class_mapping.computeIfAbsent(methodName, k -> new HashMap<>());
+    Map<String, LongIntHashMap> class_mapping = mapping.computeIfAbsent(className, k -> new LinkedHashMap<>()); // need to preserve order
+    LongIntHashMap method_mapping = class_mapping.computeIfAbsent(methodName, k -> new LongIntHashMap());
 
     // don't overwrite
-    method_mapping.putIfAbsent(bytecodeOffset, sourceLine);
+    if (!method_mapping.containsKey(bytecodeOffset)) {
+      method_mapping.put(bytecodeOffset, sourceLine);
+    }
   }
 
   public void addTracer(String className, String methodName, BytecodeMappingTracer tracer) {
     for (Entry<Integer, Integer> entry : tracer.getMapping().entrySet()) {
       addMapping(className, methodName, entry.getKey(), entry.getValue());
     }
-    linesMapping.putAll(tracer.getOriginalLinesMapping());
-    unmappedLines.addAll(tracer.getUnmappedLines());
+    for (Entry<Integer, Integer> entry : tracer.getOriginalLinesMapping().entrySet()) {
+      linesMapping.put(entry.getKey(), entry.getValue());
+    }
+    for (Integer line : tracer.getUnmappedLines()) {
+      unmappedLines.add(line);
+    }
   }
 
   public void dumpMapping(TextBuffer buffer, boolean offsetsToHex) {
@@ -40,13 +48,13 @@ public class BytecodeSourceMapper {
 
     String lineSeparator = DecompilerContext.getNewLineSeparator();
 
-    for (Entry<String, Map<String, Map<Integer, Integer>>> class_entry : mapping.entrySet()) {
-      Map<String, Map<Integer, Integer>> class_mapping = class_entry.getValue();
+    for (Entry<String, Map<String, LongIntHashMap>> class_entry : mapping.entrySet()) {
+      Map<String, LongIntHashMap> class_mapping = class_entry.getValue();
       buffer.append("class '" + class_entry.getKey() + "' {" + lineSeparator);
 
       boolean is_first_method = true;
-      for (Entry<String, Map<Integer, Integer>> method_entry : class_mapping.entrySet()) {
-        Map<Integer, Integer> method_mapping = method_entry.getValue();
+      for (Entry<String, LongIntHashMap> method_entry : class_mapping.entrySet()) {
+        LongIntHashMap method_mapping = method_entry.getValue();
 
         if (!is_first_method) {
           buffer.appendLineSeparator();
@@ -54,13 +62,11 @@ public class BytecodeSourceMapper {
 
         buffer.appendIndent(1).append("method '" + method_entry.getKey() + "' {" + lineSeparator);
 
-        List<Integer> lstBytecodeOffsets = new ArrayList<>(method_mapping.keySet());
-        Collections.sort(lstBytecodeOffsets);
+        for (long key : method_mapping.sortedKeys()) {
+          int offset = (int)key;
+          int line = method_mapping.get(key, 0);
 
-        for (Integer offset : lstBytecodeOffsets) {
-          Integer line = method_mapping.get(offset);
-
-          String strOffset = offsetsToHex ? Integer.toHexString(offset) : line.toString();
+          String strOffset = offsetsToHex ? Integer.toHexString(offset) : Integer.toString(line);
           buffer.appendIndent(2).append(strOffset).appendIndent(2).append((line + offset_total) + lineSeparator);
         }
         buffer.appendIndent(1).append("}").appendLineSeparator();
@@ -73,14 +79,13 @@ public class BytecodeSourceMapper {
 
     // lines mapping
     buffer.append("Lines mapping:").appendLineSeparator();
-    Map<Integer, Integer> sorted = new TreeMap<>(linesMapping);
-    for (Entry<Integer, Integer> entry : sorted.entrySet()) {
-      buffer.append(entry.getKey()).append(" <-> ").append(entry.getValue() + offset_total + 1).appendLineSeparator();
+    for (long line : linesMapping.sortedKeys()) {
+      buffer.append((int)line).append(" <-> ").append(linesMapping.get(line, 0) + offset_total + 1).appendLineSeparator();
     }
 
     if (!unmappedLines.isEmpty()) {
       buffer.append("Not mapped:").appendLineSeparator();
-      for (Integer line : unmappedLines) {
+      for (int line = unmappedLines.next(0); line >= 0; line = unmappedLines.next(line + 1)) {
         if (!linesMapping.containsKey(line)) {
           buffer.append(line).appendLineSeparator();
         }
@@ -93,15 +98,26 @@ public class BytecodeSourceMapper {
   }
 
   /**
-   * Original to decompiled line mapping.
+   * Restores a mapping previously returned by {@link #getOriginalLinesMapping()}, e.g. for a class taken from the decompilation cache.
+   */
+  public void setOriginalLinesMapping(int[] mapping) {
+    linesMapping = new LongIntHashMap(mapping.length / 2);
+    offset_total = 0;
+    for (int i = 0; i < mapping.length; i += 2) {
+      linesMapping.put(mapping[i], mapping[i + 1] - 1);
+    }
+  }
+
+  /**
+   * Original to decompiled line mapping, as pairs sorted by the original line.
    */
   public int[] getOriginalLinesMapping() {
     int[] res = new int[linesMapping.size() * 2];
     int i = 0;
-    for (Entry<Integer, Integer> entry : linesMapping.entrySet()) {
-      res[i] = entry.getKey();
-      unmappedLines.remove(entry.getKey());
-      res[i + 1] = entry.getValue() + offset_total + 1; // make it 1 based
+    for (long line : linesMapping.sortedKeys()) {
+      res[i] = (int)line;
+      unmappedLines.remove((int)line);
+      res[i + 1] = linesMapping.get(line, 0) + offset_total + 1; // make it 1 based
       i += 2;
     }
     return res;
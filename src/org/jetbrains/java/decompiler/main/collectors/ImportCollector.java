@@ -11,6 +11,7 @@ import org.jetbrains.java.decompiler.struct.StructContext;
 import org.jetbrains.java.decompiler.struct.StructField;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class ImportCollector {
@@ -32,7 +33,9 @@ public class ImportCollector {
   private final Set<String> setNotImportedNames = new HashSet<>();
   // set of field names in this class and all its predecessors.
   private final Set<String> setFieldNames = new HashSet<>();
-  private final Map<String, Map<String, String>> mapInnerClassNames = new HashMap<>();
+  // qualified name of a class of the root -> its resolution scope
+  private final Map<String, NameScope> mapScopes = new HashMap<>();
+  private final NameScope defaultScope = new NameScope(Collections.emptyMap());
   private final String currentPackageSlash;
   private final String currentPackagePoint;
 
@@ -95,6 +98,20 @@ public class ImportCollector {
   }
 
   public String getShortName(String fullName, boolean imported) {
+    ClassNode currCls = (ClassNode)DecompilerContext.getProperty(DecompilerContext.CURRENT_CLASS_NODE);
+    NameScope scope = currCls == null ? defaultScope : mapScopes.getOrDefault(currCls.classStruct.qualifiedName, defaultScope);
+
+    // the simple names are only ever added, so once a name is resolved in a scope the result never changes
+    Map<String, String> resolvedNames = imported ? scope.importedNames : scope.notImportedNames;
+    String resolved = resolvedNames.get(fullName);
+    if (resolved == null) {
+      resolved = resolveShortName(fullName, imported, scope.innerClassNames);
+      resolvedNames.put(fullName, resolved);
+    }
+    return resolved;
+  }
+
+  private String resolveShortName(String fullName, boolean imported, Map<String, String> innerClassNames) {
     ClassNode node = DecompilerContext.getClassProcessor().getMapRootClasses().get(fullName.replace('.', '/')); //todo[r.sh] anonymous classes?
 
     String result = null;
@@ -135,16 +152,13 @@ public class ImportCollector {
     // 2) class with the same short name in the default package
     // 3) inner class with the same short name in the current class, a super class, or an implemented interface
     boolean existsDefaultClass =
-      (context.getClass(currentPackageSlash + shortName) != null && !packageName.equals(currentPackagePoint)) || // current package
-      (context.getClass(shortName) != null && !currentPackagePoint.isEmpty());
+      (context.hasClass(currentPackageSlash + shortName) && !packageName.equals(currentPackagePoint)) || // current package
+      (context.hasClass(shortName) && !currentPackagePoint.isEmpty());
 
-    ClassNode currCls = (ClassNode)DecompilerContext.getProperty(DecompilerContext.CURRENT_CLASS_NODE);
-    String mapKey = currCls == null ? "" : currCls.classStruct.qualifiedName;
-    Map<String, String> innerClassNames = mapInnerClassNames.getOrDefault(mapKey, new HashMap<>());
     if (!existsDefaultClass && innerClassNames.containsKey(shortName) && !innerClassNames.get(shortName).equals(fullName)) {
       // if the class being accessed is also an inner class
       // attempt to import the outer class and reference OuterClass.InnerClass
-      if (context.getClass(packageName.replace('.', '/') + "$" + shortName) != null) {
+      if (context.hasClass(packageName.replace('.', '/') + "$" + shortName)) {
         lastDot = fullName.lastIndexOf(".", lastDot - 1);
         if (lastDot >= 0) {
           result = fullName.substring(lastDot + 1);
@@ -205,7 +219,7 @@ public class ImportCollector {
   private void collectConflictingShortNames(ClassNode root, Map<String, String> rootNames) {
     Map<String, String> names = new HashMap<>(rootNames);
     getSuperClassInnerClasses(root, names);
-    mapInnerClassNames.put(root.classStruct.qualifiedName, names);
+    mapScopes.put(root.classStruct.qualifiedName, new NameScope(names));
 
     for (ClassNode nested : root.nested) {
       collectConflictingShortNames(nested, names);
@@ -249,4 +263,17 @@ public class ImportCollector {
       } while (currentClass == null && !queue.isEmpty());
     }
   }
-}
\ No newline at end of file
+
+  private static final class NameScope {
+    // simple name -> qualified name of the inner classes visible in the class
+    final Map<String, String> innerClassNames;
+    // full name -> name to print, by whether the name is to be imported; concurrent, since methods with a time limit
+    // are processed on threads of their own
+    final Map<String, String> importedNames = new ConcurrentHashMap<>();
+    final Map<String, String> notImportedNames = new ConcurrentHashMap<>();
+
+    NameScope(Map<String, String> innerClassNames) {
+      this.innerClassNames = innerClassNames;
+    }
+  }
+}
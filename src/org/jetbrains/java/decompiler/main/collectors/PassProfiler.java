@@ -0,0 +1,118 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.java.decompiler.main.collectors;
+
+import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.struct.StructClass;
+import org.jetbrains.java.decompiler.struct.StructMethod;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records wall time, allocated bytes and invocation counts of the passes processing a single method, as well as
+ * the number of iterations of its fixed-point loops. Confined to the thread processing the method.
+ * <p>
+ * Each call to {@link #pass} ends the previous pass and starts the next one, so instrumenting a pass takes one line.
+ * When statistics are disabled, {@link #DISABLED} is used and every call returns right away.
+ */
+public final class PassProfiler {
+  public static final PassProfiler DISABLED = new PassProfiler(null, null, null, null);
+
+  private final PassStatistics statistics;
+  private final String className;
+  private final String methodName;
+  private final String descriptor;
+  private final Map<String, long[]> passes = new LinkedHashMap<>();  // count, time, allocated bytes
+  private final Map<String, long[]> iterations = new LinkedHashMap<>();
+
+  private String current;
+  private long currentStart;
+  private long currentAllocated;
+
+  private PassProfiler(PassStatistics statistics, String className, String methodName, String descriptor) {
+    this.statistics = statistics;
+    this.className = className;
+    this.methodName = methodName;
+    this.descriptor = descriptor;
+  }
+
+  public static PassProfiler start(StructClass cl, StructMethod mt) {
+    PassStatistics statistics = (PassStatistics)DecompilerContext.getProperty(DecompilerContext.PASS_STATISTICS);
+    if (statistics == null) {
+      return DISABLED;
+    }
+    return new PassProfiler(statistics, cl.qualifiedName, mt.getName(), mt.getDescriptor());
+  }
+
+  public void pass(String name) {
+    if (statistics == null) {
+      return;
+    }
+
+    long now = System.nanoTime();
+    long allocated = allocatedBytes();
+    endPass(now, allocated);
+    current = name;
+    currentStart = now;
+    currentAllocated = allocated;
+  }
+
+  public void iteration(String loop) {
+    if (statistics == null) {
+      return;
+    }
+
+    iterations.computeIfAbsent(loop, k -> new long[1])[0]++;
+  }
+
+  /**
+   * Ends the last pass and hands the records of the method over to the statistics.
+   */
+  public void finish() {
+    if (statistics == null) {
+      return;
+    }
+
+    endPass(System.nanoTime(), allocatedBytes());
+    current = null;
+    statistics.addMethod(className, methodName, descriptor, passes, iterations);
+  }
+
+  private void endPass(long now, long allocated) {
+    if (current != null) {
+      long[] record = passes.computeIfAbsent(current, k -> new long[3]);
+      record[0]++;
+      record[1] += now - currentStart;
+      if (allocated >= 0) {
+        record[2] += allocated - currentAllocated;
+      }
+    }
+  }
+
+  private static long allocatedBytes() {
+    com.sun.management.ThreadMXBean bean = ThreadBeanHolder.BEAN;
+    return bean != null ? bean.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+  }
+
+  // loaded on the first recorded pass, so that runs without statistics never touch the management classes
+  private static final class ThreadBeanHolder {
+    static final com.sun.management.ThreadMXBean BEAN = getThreadBean();
+  }
+
+  // allocation counters are a HotSpot extension, so only time is recorded on other VMs
+  private static com.sun.management.ThreadMXBean getThreadBean() {
+    try {
+      java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+        if (sunBean.isThreadAllocatedMemorySupported()) {
+          sunBean.setThreadAllocatedMemoryEnabled(true);
+          return sunBean;
+        }
+      }
+    }
+    catch (LinkageError | UnsupportedOperationException | SecurityException ignore) { }
+    return null;
+  }
+}
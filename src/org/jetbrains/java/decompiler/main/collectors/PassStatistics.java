@@ -0,0 +1,157 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.java.decompiler.main.collectors;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Collects the {@link PassProfiler} records of all methods of a run and writes them as a JSON report:
+ * totals per pass, then per class and per method, slowest first.
+ */
+public class PassStatistics {
+  private final Map<String, List<MethodRecord>> classes = new HashMap<>();
+
+  synchronized void addMethod(String className, String methodName, String descriptor, Map<String, long[]> passes, Map<String, long[]> iterations) {
+    classes.computeIfAbsent(className, k -> new ArrayList<>()).add(new MethodRecord(methodName, descriptor, passes, iterations));
+  }
+
+  public synchronized void writeReport(Path file) throws IOException {
+    List<ClassRecord> records = new ArrayList<>();
+    for (Map.Entry<String, List<MethodRecord>> entry : classes.entrySet()) {
+      records.add(new ClassRecord(entry.getKey(), entry.getValue()));
+    }
+    records.sort(Comparator.comparingLong((ClassRecord r) -> r.time).reversed());
+
+    Map<String, long[]> passes = new LinkedHashMap<>();
+    Map<String, long[]> iterations = new LinkedHashMap<>();
+    for (ClassRecord record : records) {
+      merge(passes, record.passes);
+      merge(iterations, record.iterations);
+    }
+
+    try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      out.write("{\n  \"passes\": ");
+      writePasses(out, passes, "  ");
+      out.write(",\n  \"iterations\": ");
+      writeIterations(out, iterations);
+      out.write(",\n  \"classes\": [");
+      for (int i = 0; i < records.size(); i++) {
+        ClassRecord record = records.get(i);
+        out.write(i == 0 ? "\n" : ",\n");
+        out.write("    {\"name\": " + quote(record.name) + ", \"timeNanos\": " + record.time + ", \"passes\": ");
+        writePasses(out, record.passes, "      ");
+        out.write(",\n      \"methods\": [");
+        for (int j = 0; j < record.methods.size(); j++) {
+          MethodRecord method = record.methods.get(j);
+          out.write(j == 0 ? "\n" : ",\n");
+          out.write("        {\"name\": " + quote(method.name) + ", \"descriptor\": " + quote(method.descriptor) +
+                    ", \"timeNanos\": " + method.time + ", \"passes\": ");
+          writePasses(out, method.passes, "          ");
+          out.write(", \"iterations\": ");
+          writeIterations(out, method.iterations);
+          out.write("}");
+        }
+        out.write("]}");
+      }
+      out.write("\n  ]\n}\n");
+    }
+  }
+
+  private static void writePasses(Writer out, Map<String, long[]> passes, String indent) throws IOException {
+    out.write("{");
+    boolean first = true;
+    for (Map.Entry<String, long[]> pass : passes.entrySet()) {
+      long[] record = pass.getValue();
+      out.write(first ? "\n" : ",\n");
+      out.write(indent + "  " + quote(pass.getKey()) + ": {\"count\": " + record[0] + ", \"timeNanos\": " + record[1] +
+                ", \"allocatedBytes\": " + record[2] + "}");
+      first = false;
+    }
+    out.write(first ? "}" : "\n" + indent + "}");
+  }
+
+  private static void writeIterations(Writer out, Map<String, long[]> iterations) throws IOException {
+    out.write("{");
+    boolean first = true;
+    for (Map.Entry<String, long[]> loop : iterations.entrySet()) {
+      out.write(first ? "" : ", ");
+      out.write(quote(loop.getKey()) + ": " + loop.getValue()[0]);
+      first = false;
+    }
+    out.write("}");
+  }
+
+  private static void merge(Map<String, long[]> target, Map<String, long[]> source) {
+    for (Map.Entry<String, long[]> entry : source.entrySet()) {
+      long[] values = entry.getValue();
+      long[] sum = target.computeIfAbsent(entry.getKey(), k -> new long[values.length]);
+      for (int i = 0; i < values.length; i++) {
+        sum[i] += values[i];
+      }
+    }
+  }
+
+  private static String quote(String value) {
+    StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        builder.append('\\').append(c);
+      }
+      else if (c < 0x20) {
+        builder.append(String.format("\\u%04x", (int)c));
+      }
+      else {
+        builder.append(c);
+      }
+    }
+    return builder.append('"').toString();
+  }
+
+  private static long totalTime(Map<String, long[]> passes) {
+    long time = 0;
+    for (long[] record : passes.values()) {
+      time += record[1];
+    }
+    return time;
+  }
+
+  private static final class MethodRecord {
+    final String name;
+    final String descriptor;
+    final Map<String, long[]> passes;
+    final Map<String, long[]> iterations;
+    final long time;
+
+    MethodRecord(String name, String descriptor, Map<String, long[]> passes, Map<String, long[]> iterations) {
+      this.name = name;
+      this.descriptor = descriptor;
+      this.passes = passes;
+      this.iterations = iterations;
+      this.time = totalTime(passes);
+    }
+  }
+
+  private static final class ClassRecord {
+    final String name;
+    final List<MethodRecord> methods;
+    final Map<String, long[]> passes = new LinkedHashMap<>();
+    final Map<String, long[]> iterations = new LinkedHashMap<>();
+    final long time;
+
+    ClassRecord(String name, List<MethodRecord> methods) {
+      this.name = name;
+      this.methods = new ArrayList<>(methods);
+      this.methods.sort(Comparator.comparingLong((MethodRecord r) -> r.time).reversed());
+      for (MethodRecord method : methods) {
+        merge(passes, method.passes);
+        merge(iterations, method.iterations);
+      }
+      this.time = totalTime(passes);
+    }
+  }
+}
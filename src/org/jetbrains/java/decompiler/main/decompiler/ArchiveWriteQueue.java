@@ -0,0 +1,144 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.java.decompiler.main.decompiler;
+
+import org.jetbrains.java.decompiler.main.DecompilerContext;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single writer thread for archive output. Decompiler threads hand off write operations and return immediately,
+ * unless the bounded queue is full, in which case they block until the writer catches up.
+ * Operations are executed in submission order.
+ */
+public class ArchiveWriteQueue {
+  public static final int DEFAULT_CAPACITY = 256;
+
+  private static final Runnable STOP = () -> { };
+
+  private final BlockingQueue<Runnable> queue;
+  private Thread writer;
+
+  private final AtomicLong operations = new AtomicLong();
+  private final AtomicInteger peakDepth = new AtomicInteger();
+  private final AtomicLong producerStallNanos = new AtomicLong();
+  private final AtomicLong writerIdleNanos = new AtomicLong();
+
+  public ArchiveWriteQueue(int capacity) {
+    queue = new ArrayBlockingQueue<>(capacity);
+  }
+
+  public void submit(Runnable operation) {
+    ensureStarted();
+
+    if (!queue.offer(operation)) {
+      long start = System.nanoTime();
+      try {
+        queue.put(operation);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+      producerStallNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    int depth = queue.size();
+    peakDepth.accumulateAndGet(depth, Math::max);
+  }
+
+  /**
+   * Waits until every operation submitted so far has been executed and stops the writer thread.
+   * The queue can be used again afterwards.
+   */
+  public void close() {
+    Thread thread;
+    synchronized (this) {
+      thread = writer;
+      writer = null;
+    }
+    if (thread == null) {
+      return;
+    }
+
+    try {
+      queue.put(STOP);
+      thread.join();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+  public int getDepth() {
+    return queue.size();
+  }
+
+  public int getPeakDepth() {
+    return peakDepth.get();
+  }
+
+  public long getOperationCount() {
+    return operations.get();
+  }
+
+  // time decompiler threads spent blocked because the queue was full
+  public long getProducerStallNanos() {
+    return producerStallNanos.get();
+  }
+
+  // time the writer thread spent waiting for work
+  public long getWriterIdleNanos() {
+    return writerIdleNanos.get();
+  }
+
+  private synchronized void ensureStarted() {
+    if (writer != null) {
+      return;
+    }
+
+    DecompilerContext context = DecompilerContext.getCurrentContext();
+    writer = new Thread(() -> {
+      DecompilerContext.setCurrentContext(context);
+      try {
+        drain();
+      }
+      finally {
+        DecompilerContext.setCurrentContext(null);
+      }
+    }, "Archive writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  private void drain() {
+    while (true) {
+      Runnable operation = queue.poll();
+      if (operation == null) {
+        long start = System.nanoTime();
+        try {
+          operation = queue.take();
+        }
+        catch (InterruptedException e) {
+          return;
+        }
+        writerIdleNanos.addAndGet(System.nanoTime() - start);
+      }
+
+      if (operation == STOP) {
+        return;
+      }
+
+      try {
+        operation.run();
+        operations.incrementAndGet();
+      }
+      catch (Throwable t) {
+        DecompilerContext.getLogger().writeMessage("Archive write failed", t);
+      }
+    }
+  }
+}
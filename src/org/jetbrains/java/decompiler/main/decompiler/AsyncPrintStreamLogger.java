@@ -0,0 +1,394 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.java.decompiler.main.decompiler;
+
+import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
+import org.jetbrains.java.decompiler.util.TextUtil;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logger for many decompiler threads. A message is turned into a record on the calling thread and put into a bounded
+ * lock-free ring buffer; a background thread takes the records in the order they were put and writes them to the
+ * stream in batches. A thread that finds the buffer full waits for the writer, so no message is lost.
+ * <p>
+ * The indentation of the nested class and method scopes is kept per thread. The records are written either as text,
+ * like {@link PrintStreamLogger} does, or as JSON lines that also name the thread and the innermost scope.
+ * {@link #close()} writes the pending records and stops the writer thread.
+ */
+public class AsyncPrintStreamLogger extends IFernflowerLogger implements AutoCloseable {
+  public static final int DEFAULT_CAPACITY = 8192;
+
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  // how long an interrupted close() still waits for the pending records to be written
+  private static final long INTERRUPTED_CLOSE_MILLIS = 1000;
+
+  private final PrintStream stream;
+  private final boolean json;
+  private final ThreadLocal<ArrayDeque<String>> scopes = ThreadLocal.withInitial(ArrayDeque::new);
+
+  // slot i holds a record once sequences[i] is one greater than the position the record was put at
+  private final AtomicReferenceArray<Record> slots;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  private long head; // writer thread only
+
+  // threads between the check of closed and the publication of their record
+  private final AtomicInteger producers = new AtomicInteger();
+
+  private volatile Thread writer;
+  private volatile boolean writerParked;
+  private volatile boolean closed;
+  // set once no more records can be put, the writer stops when it has taken all of them
+  private volatile boolean stopped;
+
+  public AsyncPrintStreamLogger(PrintStream printStream, boolean json) {
+    this(printStream, json, DEFAULT_CAPACITY);
+  }
+
+  public AsyncPrintStreamLogger(PrintStream printStream, boolean json, int capacity) {
+    int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+    stream = printStream;
+    this.json = json;
+    slots = new AtomicReferenceArray<>(size);
+    sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+    mask = size - 1;
+  }
+
+  @Override
+  public void writeMessage(String message, Severity severity) {
+    if (accepts(severity)) {
+      put(newRecord(message, severity, null));
+    }
+  }
+
+  @Override
+  public void writeMessage(String message, Severity severity, Throwable t) {
+    if (accepts(severity)) {
+      put(newRecord(message, severity, t));
+    }
+  }
+
+  @Override
+  public void startReadingClass(String className) {
+    if (accepts(Severity.INFO)) {
+      writeMessage("Decompiling class " + className, Severity.INFO);
+      scopes.get().push(className);
+    }
+  }
+
+  @Override
+  public void endReadingClass() {
+    if (accepts(Severity.INFO)) {
+      scopes.get().poll();
+      writeMessage("... done", Severity.INFO);
+    }
+  }
+
+  @Override
+  public void startClass(String className) {
+    if (accepts(Severity.INFO)) {
+      writeMessage(() -> "Processing class " + className, Severity.TRACE);
+      scopes.get().push(className);
+    }
+  }
+
+  @Override
+  public void endClass() {
+    if (accepts(Severity.INFO)) {
+      scopes.get().poll();
+      writeMessage("... proceeded", Severity.TRACE);
+    }
+  }
+
+  @Override
+  public void startMethod(String methodName) {
+    if (accepts(Severity.INFO)) {
+      writeMessage(() -> "Processing method " + methodName, Severity.TRACE);
+      scopes.get().push(methodName);
+    }
+  }
+
+  @Override
+  public void endMethod() {
+    if (accepts(Severity.INFO)) {
+      scopes.get().poll();
+      writeMessage("... proceeded", Severity.TRACE);
+    }
+  }
+
+  @Override
+  public void startWriteClass(String className) {
+    if (accepts(Severity.INFO)) {
+      writeMessage(() -> "Writing class " + className, Severity.TRACE);
+      scopes.get().push(className);
+    }
+  }
+
+  @Override
+  public void endWriteClass() {
+    if (accepts(Severity.INFO)) {
+      scopes.get().poll();
+      writeMessage("... written", Severity.TRACE);
+    }
+  }
+
+  /**
+   * Writes all records put so far and stops the writer thread. Later messages are written directly.
+   */
+  @Override
+  public void close() {
+    Thread thread;
+    synchronized (this) {
+      closed = true;
+      thread = writer;
+    }
+
+    // a producer that has claimed a slot publishes its record before it leaves, and no new one can claim a slot
+    while (producers.get() > 0) {
+      Thread.yield();
+    }
+    stopped = true;
+
+    boolean interrupted = false;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+      try {
+        thread.join();
+      }
+      catch (InterruptedException e) {
+        // still give the writer a moment to write what is pending, the interrupt is passed on below
+        interrupted = true;
+        try {
+          thread.join(INTERRUPTED_CLOSE_MILLIS);
+        }
+        catch (InterruptedException ignored) { }
+      }
+    }
+
+    synchronized (stream) {
+      stream.flush();
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private Record newRecord(String message, Severity severity, Throwable t) {
+    ArrayDeque<String> stack = scopes.get();
+    int depth = stack.size();
+    // the indentation string is an option of the current context, so it is looked up on the calling thread
+    String indent = json || depth == 0 ? "" : TextUtil.getIndentString(depth);
+    return new Record(System.currentTimeMillis(), severity, Thread.currentThread().getName(), stack.peek(), depth, indent,
+                      String.valueOf(message), t);
+  }
+
+  private void put(Record record) {
+    boolean published = false;
+    if (!closed) {
+      producers.incrementAndGet();
+      try {
+        // checked again after registering, so close() either waits for this producer or the producer sees close()
+        if (!closed && ensureStarted()) {
+          published = publish(record);
+        }
+      }
+      finally {
+        producers.decrementAndGet();
+      }
+    }
+
+    if (!published) {
+      writeDirectly(record);
+      return;
+    }
+
+    if (writerParked) {
+      LockSupport.unpark(writer);
+    }
+  }
+
+  // false if the writer thread has died and the record is to be written directly
+  private boolean publish(Record record) {
+    while (true) {
+      long position = tail.get();
+      int index = (int)position & mask;
+      long available = sequences.get(index) - position;
+      if (available == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          slots.set(index, record);
+          sequences.set(index, position + 1);
+          return true;
+        }
+      }
+      else if (available < 0) {
+        // full: let the writer catch up, it keeps running until all claimed slots are taken
+        Thread thread = writer;
+        if (!thread.isAlive()) {
+          return false;
+        }
+        LockSupport.unpark(thread);
+        Thread.yield();
+      }
+    }
+  }
+
+  private void writeDirectly(Record record) {
+    synchronized (stream) {
+      stream.print(format(record, new StringBuilder()));
+    }
+  }
+
+  // false once the logger is closed
+  private boolean ensureStarted() {
+    if (writer != null) {
+      return true;
+    }
+    synchronized (this) {
+      if (closed) {
+        return false;
+      }
+      if (writer == null) {
+        Thread thread = new Thread(this::drain, "Logger");
+        thread.setDaemon(true);
+        thread.start();
+        writer = thread;
+      }
+      return true;
+    }
+  }
+
+  private void drain() {
+    StringBuilder batch = new StringBuilder();
+    while (true) {
+      Record record = take();
+      if (record != null) {
+        format(record, batch);
+        if (batch.length() < 1 << 16) {
+          continue;
+        }
+      }
+
+      if (batch.length() > 0) {
+        synchronized (stream) {
+          stream.print(batch);
+          stream.flush();
+        }
+        batch.setLength(0);
+      }
+
+      if (record == null) {
+        // the producers see the flag after they have published their record, so the check below cannot miss it
+        writerParked = true;
+        if (!isAvailable()) {
+          if (stopped && head == tail.get()) {
+            writerParked = false;
+            return;
+          }
+          else {
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+          }
+        }
+        writerParked = false;
+      }
+    }
+  }
+
+  private boolean isAvailable() {
+    return sequences.get((int)head & mask) == head + 1;
+  }
+
+  private Record take() {
+    if (!isAvailable()) {
+      return null;
+    }
+    int index = (int)head & mask;
+    Record record = slots.get(index);
+    slots.set(index, null);
+    sequences.set(index, head + mask + 1);
+    head++;
+    return record;
+  }
+
+  private StringBuilder format(Record record, StringBuilder out) {
+    String separator = System.lineSeparator();
+    if (json) {
+      out.append("{\"time\": ").append(record.time)
+        .append(", \"level\": \"").append(record.severity.name())
+        .append("\", \"thread\": ").append(quote(record.thread))
+        .append(", \"scope\": ").append(record.scope == null ? "null" : quote(record.scope))
+        .append(", \"depth\": ").append(record.depth)
+        .append(", \"message\": ").append(quote(record.message));
+      if (record.error != null) {
+        out.append(", \"error\": ").append(quote(stackTrace(record.error)));
+      }
+      out.append('}').append(separator);
+    }
+    else {
+      out.append(record.severity.prefix).append(record.indent).append(record.message).append(separator);
+      if (record.error != null) {
+        out.append(stackTrace(record.error));
+      }
+    }
+    return out;
+  }
+
+  private static String stackTrace(Throwable t) {
+    StringWriter writer = new StringWriter();
+    try (PrintWriter printWriter = new PrintWriter(writer)) {
+      t.printStackTrace(printWriter);
+    }
+    return writer.toString();
+  }
+
+  private static String quote(String value) {
+    StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        builder.append('\\').append(c);
+      }
+      else if (c < 0x20) {
+        builder.append(String.format("\\u%04x", (int)c));
+      }
+      else {
+        builder.append(c);
+      }
+    }
+    return builder.append('"').toString();
+  }
+
+  private static final class Record {
+    final long time;
+    final Severity severity;
+    final String thread;
+    final String scope;
+    final int depth;
+    final String indent;
+    final String message;
+    final Throwable error;
+
+    Record(long time, Severity severity, String thread, String scope, int depth, String indent, String message, Throwable error) {
+      this.time = time;
+      this.severity = severity;
+      this.thread = thread;
+      this.scope = scope;
+      this.depth = depth;
+      this.indent = indent;
+      this.message = message;
+      this.error = error;
+    }
+  }
+}
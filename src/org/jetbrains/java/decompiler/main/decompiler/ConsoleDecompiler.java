@@ -4,25 +4,31 @@ package org.jetbrains.java.decompiler.main.decompiler;
 import net.fabricmc.fernflower.api.IFabricResultSaver;
 import org.jetbrains.java.decompiler.main.DecompilerContext;
 import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.main.IncrementalDecompilation;
 import org.jetbrains.java.decompiler.main.extern.IBytecodeProvider;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
 import org.jetbrains.java.decompiler.main.extern.IResultSaver;
 import org.jetbrains.java.decompiler.util.InterpreterUtil;
+import org.jetbrains.java.decompiler.util.ZipArchiveReader;
+import org.jetbrains.java.decompiler.util.ZipArchiveWriter;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.jar.JarOutputStream;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.Manifest;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
-public class ConsoleDecompiler implements IBytecodeProvider, IResultSaver {
+public class ConsoleDecompiler implements IBytecodeProvider, IResultSaver, ZipArchiveWriter.CompressedEntrySaver {
   @SuppressWarnings("UseOfSystemOutOrSystemErr")
   public static void main(String[] args) {
     List<String> params = new ArrayList<String>();
@@ -110,20 +116,33 @@ public class ConsoleDecompiler implements IBytecodeProvider, IResultSaver {
       return;
     }
 
-    PrintStreamLogger logger = new PrintStreamLogger(System.out);
-    ConsoleDecompiler decompiler = new ConsoleDecompiler(destination, mapOptions, logger);
-
-    for (File library : libraries) {
-      decompiler.addLibrary(library);
-    }
-    for (File source : sources) {
-      decompiler.addSource(source);
+    String previousOutput = getPreviousOutput(mapOptions);
+    if (previousOutput != null && IncrementalDecompilation.overlaps(new File(previousOutput), destination)) {
+      System.out.println("error: previous output '" + previousOutput + "' overlaps destination '" + destination + "'");
+      return;
     }
-    for (String prefix : whitelist) {
-      decompiler.addWhitelist(prefix);
+
+    boolean jsonLog = "json".equalsIgnoreCase((String)mapOptions.get(IFernflowerPreferences.LOG_FORMAT));
+    try (AsyncPrintStreamLogger logger = new AsyncPrintStreamLogger(System.out, jsonLog)) {
+      ConsoleDecompiler decompiler = new ConsoleDecompiler(destination, mapOptions, logger);
+
+      for (File library : libraries) {
+        decompiler.addLibrary(library);
+      }
+      for (File source : sources) {
+        decompiler.addSource(source);
+      }
+      for (String prefix : whitelist) {
+        decompiler.addWhitelist(prefix);
+      }
+
+      decompiler.decompileContext();
     }
+  }
 
-    decompiler.decompileContext();
+  private static String getPreviousOutput(Map<String, Object> options) {
+    String previousOutput = (String)options.get(IFernflowerPreferences.INCREMENTAL_PREVIOUS_OUTPUT);
+    return previousOutput == null || previousOutput.isEmpty() ? null : previousOutput;
   }
 
   @SuppressWarnings("UseOfSystemOutOrSystemErr")
@@ -141,12 +160,24 @@ public class ConsoleDecompiler implements IBytecodeProvider, IResultSaver {
   // Implementation
   // *******************************************************************
 
+  // upper bound on the number of source/library archives kept open at the same time
+  private static final int MAX_OPEN_ARCHIVES = 64;
+
   private final File root;
   private final Fernflower engine;
-  private final Map<String, ZipOutputStream> mapArchiveStreams = new HashMap<>();
-  private final Map<String, Set<String>> mapArchiveEntries = new HashMap<>();
+  // archives of different units are written concurrently
+  private final Map<String, ZipArchiveWriter> mapArchiveStreams = new ConcurrentHashMap<>();
+  private final Map<String, Set<String>> mapArchiveEntries = new ConcurrentHashMap<>();
+  private final ArchiveCache archiveCache = new ArchiveCache(MAX_OPEN_ARCHIVES);
+  private final ArchiveWriteQueue writeQueue = new ArchiveWriteQueue(ArchiveWriteQueue.DEFAULT_CAPACITY);
 
   protected ConsoleDecompiler(File destination, Map<String, Object> options, IFernflowerLogger logger) {
+    // the earlier output would be overwritten while unchanged classes are still copied from it
+    String previousOutput = getPreviousOutput(options);
+    if (previousOutput != null && IncrementalDecompilation.overlaps(new File(previousOutput), destination)) {
+      throw new IllegalArgumentException("Previous output " + previousOutput + " overlaps destination " + destination);
+    }
+
     root = destination;
     engine = new Fernflower(this, root.isDirectory() ? this : new SingleFileSaver(destination), options, logger);
   }
@@ -168,10 +199,23 @@ public class ConsoleDecompiler implements IBytecodeProvider, IResultSaver {
       engine.decompileContext();
     }
     finally {
+      writeQueue.close();
+      logWriteQueueStats();
+      archiveCache.close();
       engine.clearContext();
     }
   }
 
+  private void logWriteQueueStats() {
+    IFernflowerLogger logger = DecompilerContext.getLogger();
+    if (writeQueue.getOperationCount() > 0 && logger.accepts(IFernflowerLogger.Severity.INFO)) {
+      logger.writeMessage(String.format("Archive writer: %d operations, peak queue depth %d, decompiler threads stalled %d ms, writer idle %d ms",
+                                        writeQueue.getOperationCount(), writeQueue.getPeakDepth(),
+                                        writeQueue.getProducerStallNanos() / 1_000_000, writeQueue.getWriterIdleNanos() / 1_000_000),
+                          IFernflowerLogger.Severity.INFO);
+    }
+  }
+
   // *******************************************************************
   // Interface IBytecodeProvider
   // *******************************************************************
@@ -183,11 +227,16 @@ public class ConsoleDecompiler implements IBytecodeProvider, IResultSaver {
       return InterpreterUtil.getBytes(file);
     }
     else {
-      try (ZipFile archive = new ZipFile(file)) {
+      ArchiveCache.Handle handle = archiveCache.acquire(file);
+      try {
+        ZipFile archive = handle.archive;
         ZipEntry entry = archive.getEntry(internalPath);
         if (entry == null) throw new IOException("Entry not found: " + internalPath);
         return InterpreterUtil.getBytes(archive, entry);
       }
+      finally {
+        archiveCache.release(handle);
+      }
     }
   }
 
@@ -228,6 +277,21 @@ public class ConsoleDecompiler implements IBytecodeProvider, IResultSaver {
     }
   }
 
+  @Override
+  public void saveEncodedClassFile(String path, String qualifiedName, String entryName, ByteBuffer content, int[] mapping) {
+    File file = new File(getAbsolutePath(path), entryName);
+    try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                            StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer data = content.duplicate();
+      while (data.hasRemaining()) {
+        out.write(data);
+      }
+    }
+    catch (IOException ex) {
+      DecompilerContext.getLogger().writeMessage("Cannot write class file " + file, ex);
+    }
+  }
+
   @Override
   public void createArchive(String path, String archiveName, Manifest manifest) {
     File file = new File(getAbsolutePath(path), archiveName);
@@ -236,9 +300,7 @@ public class ConsoleDecompiler implements IBytecodeProvider, IResultSaver {
         throw new IOException("Cannot create file " + file);
       }
 
-      FileOutputStream fileStream = new FileOutputStream(file);
-      ZipOutputStream zipStream = manifest != null ? new JarOutputStream(fileStream, manifest) : new ZipOutputStream(fileStream);
-      mapArchiveStreams.put(file.getPath(), zipStream);
+      mapArchiveStreams.put(file.getPath(), new ZipArchiveWriter(file, manifest));
     }
     catch (IOException ex) {
       DecompilerContext.getLogger().writeMessage("Cannot create archive " + file, ex);
@@ -258,45 +320,85 @@ public class ConsoleDecompiler implements IBytecodeProvider, IResultSaver {
       return;
     }
 
-    try (ZipFile srcArchive = new ZipFile(new File(source))) {
-      ZipEntry entry = srcArchive.getEntry(entryName);
-      if (entry != null) {
-        try (InputStream in = srcArchive.getInputStream(entry)) {
-          ZipOutputStream out = mapArchiveStreams.get(file);
-          out.putNextEntry(new ZipEntry(entryName));
-          InterpreterUtil.copyStream(in, out);
+    ZipArchiveWriter out = mapArchiveStreams.get(file);
+    writeQueue.submit(() -> {
+      try {
+        ArchiveCache.Handle handle = archiveCache.acquire(new File(source));
+        try {
+          ZipArchiveReader rawArchive = handle.getRawArchive();
+          ZipArchiveReader.Entry rawEntry = rawArchive != null ? rawArchive.getEntry(entryName) : null;
+          if (rawEntry != null && rawEntry.canCopyRaw()) {
+            out.copyRawEntry(entryName, rawArchive, rawEntry);
+          }
+          else {
+            ZipEntry entry = handle.archive.getEntry(entryName);
+            if (entry != null) {
+              out.putEntry(entryName, InterpreterUtil.getBytes(handle.archive, entry));
+            }
+          }
+        }
+        finally {
+          archiveCache.release(handle);
         }
       }
+      catch (IOException ex) {
+        String message = "Cannot copy entry " + entryName + " from " + source + " to " + file;
+        DecompilerContext.getLogger().writeMessage(message, ex);
+      }
+    });
+  }
+
+  @Override
+  public void saveClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content) {
+    String file = new File(getAbsolutePath(path), archiveName).getPath();
+
+    if (!checkEntry(entryName, file)) {
+      return;
     }
-    catch (IOException ex) {
-      String message = "Cannot copy entry " + entryName + " from " + source + " to " + file;
-      DecompilerContext.getLogger().writeMessage(message, ex);
+
+    // encoding and compression happen on the calling decompiler thread, the writer thread only appends the result
+    byte[] data = content != null ? content.getBytes(StandardCharsets.UTF_8) : InterpreterUtil.EMPTY_BYTE_ARRAY;
+    putCompressedEntry(file, entryName, ZipArchiveWriter.compress(data));
+  }
+
+  @Override
+  public void saveEncodedClassEntry(String path, String archiveName, String qualifiedName, String entryName, ByteBuffer content) {
+    String file = new File(getAbsolutePath(path), archiveName).getPath();
+
+    if (!checkEntry(entryName, file)) {
+      return;
     }
+
+    putCompressedEntry(file, entryName, ZipArchiveWriter.compress(content != null ? content : ByteBuffer.wrap(InterpreterUtil.EMPTY_BYTE_ARRAY)));
   }
 
   @Override
-  public synchronized void saveClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content) {
+  public void saveCompressedClassEntry(String path, String archiveName, String qualifiedName, String entryName,
+                                       ZipArchiveWriter.CompressedEntry entry) {
     String file = new File(getAbsolutePath(path), archiveName).getPath();
 
     if (!checkEntry(entryName, file)) {
       return;
     }
 
-    try {
-      ZipOutputStream out = mapArchiveStreams.get(file);
-      out.putNextEntry(new ZipEntry(entryName));
-      if (content != null) {
-        out.write(content.getBytes(StandardCharsets.UTF_8));
+    putCompressedEntry(file, entryName, entry);
+  }
+
+  private void putCompressedEntry(String file, String entryName, ZipArchiveWriter.CompressedEntry compressed) {
+    ZipArchiveWriter out = mapArchiveStreams.get(file);
+    writeQueue.submit(() -> {
+      try {
+        out.putCompressedEntry(entryName, compressed);
       }
-    }
-    catch (IOException ex) {
-      String message = "Cannot write entry " + entryName + " to " + file;
-      DecompilerContext.getLogger().writeMessage(message, ex);
-    }
+      catch (IOException ex) {
+        String message = "Cannot write entry " + entryName + " to " + file;
+        DecompilerContext.getLogger().writeMessage(message, ex);
+      }
+    });
   }
 
   private boolean checkEntry(String entryName, String file) {
-    Set<String> set = mapArchiveEntries.computeIfAbsent(file, k -> new HashSet<>());
+    Set<String> set = mapArchiveEntries.computeIfAbsent(file, k -> ConcurrentHashMap.newKeySet());
 
     boolean added = set.add(entryName);
     if (!added) {
@@ -309,12 +411,111 @@ public class ConsoleDecompiler implements IBytecodeProvider, IResultSaver {
   @Override
   public void closeArchive(String path, String archiveName) {
     String file = new File(getAbsolutePath(path), archiveName).getPath();
-    try {
-      mapArchiveEntries.remove(file);
-      mapArchiveStreams.remove(file).close();
+    mapArchiveEntries.remove(file);
+    ZipArchiveWriter out = mapArchiveStreams.remove(file);
+    writeQueue.submit(() -> {
+      try {
+        out.close();
+      }
+      catch (IOException ex) {
+        DecompilerContext.getLogger().writeMessage("Cannot close " + file, IFernflowerLogger.Severity.WARN);
+      }
+    });
+  }
+
+  public ArchiveWriteQueue getWriteQueue() {
+    return writeQueue;
+  }
+
+  /**
+   * Keeps source and library archives open for the duration of a run, so that the central directory of each archive is read only once
+   * instead of once per requested class. Handles are reference counted: an archive evicted while another thread is still reading from it
+   * is closed only when that read completes.
+   */
+  private static final class ArchiveCache {
+    private final Map<String, Handle> handles;
+
+    ArchiveCache(int maxOpen) {
+      handles = new LinkedHashMap<String, Handle>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Handle> eldest) {
+          if (size() > maxOpen) {
+            eldest.getValue().evict();
+            return true;
+          }
+          return false;
+        }
+      };
     }
-    catch (IOException ex) {
-      DecompilerContext.getLogger().writeMessage("Cannot close " + file, IFernflowerLogger.Severity.WARN);
+
+    synchronized Handle acquire(File file) throws IOException {
+      String key = file.getAbsolutePath();
+      Handle handle = handles.get(key);
+      if (handle == null) {
+        handle = new Handle(new ZipFile(file));
+        handles.put(key, handle);
+      }
+      handle.refs++;
+      return handle;
+    }
+
+    synchronized void release(Handle handle) {
+      handle.refs--;
+      if (handle.evicted && handle.refs == 0) {
+        handle.closeQuietly();
+      }
+    }
+
+    synchronized void close() {
+      for (Handle handle : handles.values()) {
+        handle.evict();
+      }
+      handles.clear();
+    }
+
+    private static final class Handle {
+      final ZipFile archive;
+      int refs;
+      boolean evicted;
+      private ZipArchiveReader rawArchive;
+      private boolean rawArchiveChecked;
+
+      Handle(ZipFile archive) {
+        this.archive = archive;
+      }
+
+      // central directory index used to copy entries without recompression; null if the archive layout is not supported
+      synchronized ZipArchiveReader getRawArchive() {
+        if (!rawArchiveChecked) {
+          rawArchiveChecked = true;
+          try {
+            rawArchive = new ZipArchiveReader(new File(archive.getName()));
+          }
+          catch (IOException ex) {
+            DecompilerContext.getLogger().writeMessage("Cannot index " + archive.getName() + ", entries will be recompressed", IFernflowerLogger.Severity.WARN);
+          }
+        }
+        return rawArchive;
+      }
+
+      void evict() {
+        evicted = true;
+        if (refs == 0) {
+          closeQuietly();
+        }
+      }
+
+      void closeQuietly() {
+        try {
+          archive.close();
+          if (rawArchive != null) {
+            rawArchive.close();
+          }
+        }
+        catch (IOException ex) {
+          DecompilerContext.getLogger().writeMessage("Cannot close " + archive.getName(), IFernflowerLogger.Severity.WARN);
+        }
+      }
     }
   }
 }
@@ -9,17 +9,17 @@ import java.io.PrintStream;
 public class PrintStreamLogger extends IFernflowerLogger {
 
   private final PrintStream stream;
-  private int indent;
+  // classes are decompiled on several threads, each with its own nesting
+  private final ThreadLocal<int[]> indent = ThreadLocal.withInitial(() -> new int[1]);
 
   public PrintStreamLogger(PrintStream printStream) {
     stream = printStream;
-    indent = 0;
   }
 
   @Override
   public void writeMessage(String message, Severity severity) {
     if (accepts(severity)) {
-      stream.println(severity.prefix + TextUtil.getIndentString(indent) + message);
+      stream.println(severity.prefix + TextUtil.getIndentString(indent.get()[0]) + message);
     }
   }
 
@@ -35,14 +35,14 @@ public class PrintStreamLogger extends IFernflowerLogger {
   public void startReadingClass(String className) {
     if (accepts(Severity.INFO)) {
       writeMessage("Decompiling class " + className, Severity.INFO);
-      ++indent;
+      ++indent.get()[0];
     }
   }
 
   @Override
   public void endReadingClass() {
     if (accepts(Severity.INFO)) {
-      --indent;
+      --indent.get()[0];
       writeMessage("... done", Severity.INFO);
     }
   }
@@ -51,14 +51,14 @@ public class PrintStreamLogger extends IFernflowerLogger {
   public void startClass(String className) {
     if (accepts(Severity.INFO)) {
       writeMessage("Processing class " + className, Severity.TRACE);
-      ++indent;
+      ++indent.get()[0];
     }
   }
 
   @Override
   public void endClass() {
     if (accepts(Severity.INFO)) {
-      --indent;
+      --indent.get()[0];
       writeMessage("... proceeded", Severity.TRACE);
     }
   }
@@ -67,14 +67,14 @@ public class PrintStreamLogger extends IFernflowerLogger {
   public void startMethod(String methodName) {
     if (accepts(Severity.INFO)) {
       writeMessage("Processing method " + methodName, Severity.TRACE);
-      ++indent;
+      ++indent.get()[0];
     }
   }
 
   @Override
   public void endMethod() {
     if (accepts(Severity.INFO)) {
-      --indent;
+      --indent.get()[0];
       writeMessage("... proceeded", Severity.TRACE);
     }
   }
@@ -83,14 +83,14 @@ public class PrintStreamLogger extends IFernflowerLogger {
   public void startWriteClass(String className) {
     if (accepts(Severity.INFO)) {
       writeMessage("Writing class " + className, Severity.TRACE);
-      ++indent;
+      ++indent.get()[0];
     }
   }
 
   @Override
   public void endWriteClass() {
     if (accepts(Severity.INFO)) {
-      --indent;
+      --indent.get()[0];
       writeMessage("... written", Severity.TRACE);
     }
   }
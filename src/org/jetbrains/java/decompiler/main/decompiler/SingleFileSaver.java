@@ -1,26 +1,29 @@
 package org.jetbrains.java.decompiler.main.decompiler;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 import org.jetbrains.java.decompiler.main.DecompilerContext;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
 import org.jetbrains.java.decompiler.main.extern.IResultSaver;
 import org.jetbrains.java.decompiler.util.InterpreterUtil;
+import org.jetbrains.java.decompiler.util.ZipArchiveReader;
+import org.jetbrains.java.decompiler.util.ZipArchiveWriter;
 
-public class SingleFileSaver implements IResultSaver {
+public class SingleFileSaver implements IResultSaver, ZipArchiveWriter.CompressedEntrySaver {
   private final File target;
-  private ZipOutputStream output;
+  private ZipArchiveWriter output;
   private Set<String> entries = new HashSet<>();
+  private final Map<String, ZipArchiveReader> sources = new HashMap<>();
 
   public SingleFileSaver(File target) {
     this.target = target;
@@ -47,8 +50,7 @@ public class SingleFileSaver implements IResultSaver {
     if (output != null)
       throw new UnsupportedOperationException("Attempted to write multiple archives at the same time");
     try {
-      FileOutputStream stream = new FileOutputStream(target);
-      output = manifest != null ? new JarOutputStream(stream, manifest) : new ZipOutputStream(stream);
+      output = new ZipArchiveWriter(target, manifest);
     } catch (IOException e) {
       DecompilerContext.getLogger().writeMessage("Cannot create archive " + target, e);
     }
@@ -64,12 +66,18 @@ public class SingleFileSaver implements IResultSaver {
     if (!checkEntry(entryName))
       return;
 
-    try (ZipFile srcArchive = new ZipFile(new File(source))) {
-      ZipEntry entry = srcArchive.getEntry(entryName);
-      if (entry != null) {
-        try (InputStream in = srcArchive.getInputStream(entry)) {
-          output.putNextEntry(new ZipEntry(entryName));
-          InterpreterUtil.copyStream(in, output);
+    try {
+      ZipArchiveReader rawArchive = getSource(source);
+      ZipArchiveReader.Entry rawEntry = rawArchive != null ? rawArchive.getEntry(entryName) : null;
+      if (rawEntry != null && rawEntry.canCopyRaw()) {
+        output.copyRawEntry(entryName, rawArchive, rawEntry);
+        return;
+      }
+
+      try (ZipFile srcArchive = new ZipFile(new File(source))) {
+        ZipEntry entry = srcArchive.getEntry(entryName);
+        if (entry != null) {
+          output.putEntry(entryName, InterpreterUtil.getBytes(srcArchive, entry));
         }
       }
     }
@@ -85,9 +93,36 @@ public class SingleFileSaver implements IResultSaver {
         return;
 
     try {
-      output.putNextEntry(new ZipEntry(entryName));
-      if (content != null)
-          output.write(content.getBytes("UTF-8"));
+      output.putEntry(entryName, content != null ? content.getBytes(StandardCharsets.UTF_8) : InterpreterUtil.EMPTY_BYTE_ARRAY);
+    }
+    catch (IOException ex) {
+      String message = "Cannot write entry " + entryName + " to " + target;
+      DecompilerContext.getLogger().writeMessage(message, ex);
+    }
+  }
+
+  @Override
+  public void saveEncodedClassEntry(String path, String archiveName, String qualifiedName, String entryName, ByteBuffer content) {
+    if (!checkEntry(entryName))
+        return;
+
+    try {
+      output.putCompressedEntry(entryName, ZipArchiveWriter.compress(content != null ? content : ByteBuffer.wrap(InterpreterUtil.EMPTY_BYTE_ARRAY)));
+    }
+    catch (IOException ex) {
+      String message = "Cannot write entry " + entryName + " to " + target;
+      DecompilerContext.getLogger().writeMessage(message, ex);
+    }
+  }
+
+  @Override
+  public void saveCompressedClassEntry(String path, String archiveName, String qualifiedName, String entryName,
+                                       ZipArchiveWriter.CompressedEntry entry) {
+    if (!checkEntry(entryName))
+        return;
+
+    try {
+      output.putCompressedEntry(entryName, entry);
     }
     catch (IOException ex) {
       String message = "Cannot write entry " + entryName + " to " + target;
@@ -105,6 +140,35 @@ public class SingleFileSaver implements IResultSaver {
     catch (IOException ex) {
       DecompilerContext.getLogger().writeMessage("Cannot close " + target, IFernflowerLogger.Severity.WARN);
     }
+
+    for (Map.Entry<String, ZipArchiveReader> source : sources.entrySet()) {
+      try {
+        if (source.getValue() != null) {
+          source.getValue().close();
+        }
+      }
+      catch (IOException ex) {
+        DecompilerContext.getLogger().writeMessage("Cannot close " + source.getKey(), IFernflowerLogger.Severity.WARN);
+      }
+    }
+    sources.clear();
+  }
+
+  // central directory index of a source archive, so entries can be copied without recompression; null if the archive cannot be indexed
+  private ZipArchiveReader getSource(String source) {
+    if (sources.containsKey(source)) {
+      return sources.get(source);
+    }
+
+    ZipArchiveReader reader = null;
+    try {
+      reader = new ZipArchiveReader(new File(source));
+    }
+    catch (IOException ex) {
+      DecompilerContext.getLogger().writeMessage("Cannot index " + source + ", entries will be recompressed", IFernflowerLogger.Severity.WARN);
+    }
+    sources.put(source, reader);
+    return reader;
   }
 
   private boolean checkEntry(String entryName) {
@@ -1,6 +1,8 @@
 // Copyright 2000-2017 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.jetbrains.java.decompiler.main.extern;
 
+import java.util.function.Supplier;
+
 public abstract class IFernflowerLogger {
 
   public enum Severity {
@@ -27,6 +29,15 @@ public abstract class IFernflowerLogger {
 
   public abstract void writeMessage(String message, Severity severity, Throwable t);
 
+  /**
+   * Builds the message only if the severity is accepted.
+   */
+  public void writeMessage(Supplier<String> message, Severity severity) {
+    if (accepts(severity)) {
+      writeMessage(message.get(), severity);
+    }
+  }
+
   public void writeMessage(String message, Throwable t) {
     writeMessage(message, Severity.ERROR, t);
   }
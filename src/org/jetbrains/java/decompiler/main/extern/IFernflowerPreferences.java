@@ -40,6 +40,7 @@ public interface IFernflowerPreferences {
   String INLINE_SIMPLE_LAMBDAS = "isl";
 
   String LOG_LEVEL = "log";
+  String LOG_FORMAT = "lgf";
   String MAX_PROCESSING_METHOD = "mpm";
   String RENAME_ENTITIES = "ren";
   String USER_RENAMER_CLASS = "urc";
@@ -47,6 +48,10 @@ public interface IFernflowerPreferences {
   String INDENT_STRING = "ind";
   String BANNER = "ban";
   String THREADS = "thr";
+  String DECOMPILATION_CACHE = "dcc";
+  String INCREMENTAL_MANIFEST = "inm";
+  String INCREMENTAL_PREVIOUS_OUTPUT = "ipo";
+  String PASS_STATISTICS_REPORT = "psr";
 
   String DUMP_ORIGINAL_LINES = "__dump_original_lines__";
   String UNIT_TEST_MODE = "__unit_test_mode__";
@@ -97,6 +102,7 @@ public interface IFernflowerPreferences {
     defaults.put(INLINE_SIMPLE_LAMBDAS, "1");
 
     defaults.put(LOG_LEVEL, IFernflowerLogger.Severity.INFO.name());
+    defaults.put(LOG_FORMAT, "text");
     defaults.put(MAX_PROCESSING_METHOD, "0");
     defaults.put(RENAME_ENTITIES, "0");
     defaults.put(NEW_LINE_SEPARATOR, (InterpreterUtil.IS_WINDOWS ? "0" : "1"));
@@ -105,6 +111,10 @@ public interface IFernflowerPreferences {
     defaults.put(UNIT_TEST_MODE, "0");
     defaults.put(DUMP_ORIGINAL_LINES, "0");
     defaults.put(THREADS, String.valueOf(Runtime.getRuntime().availableProcessors()));
+    defaults.put(DECOMPILATION_CACHE, "");
+    defaults.put(INCREMENTAL_MANIFEST, "");
+    defaults.put(INCREMENTAL_PREVIOUS_OUTPUT, "");
+    defaults.put(PASS_STATISTICS_REPORT, "");
     defaults.put(USE_JAD_VARNAMING, "0");
     defaults.put(SKIP_EXTRA_FILES, "0");
     defaults.put(WARN_INCONSISTENT_INNER_CLASSES, "1");
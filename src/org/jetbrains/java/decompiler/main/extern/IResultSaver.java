@@ -1,6 +1,8 @@
 // Copyright 2000-2017 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.jetbrains.java.decompiler.main.extern;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.jar.Manifest;
 
 public interface IResultSaver {
@@ -8,8 +10,18 @@ public interface IResultSaver {
 
   void copyFile(String source, String path, String entryName);
 
+  // may be called concurrently from several decompiler threads, for different files
   void saveClassFile(String path, String qualifiedName, String entryName, String content, int[] mapping);
 
+  /**
+   * Same as {@link #saveClassFile(String, String, String, String, int[])} with the content already encoded in UTF-8
+   * between the position and the limit of the buffer. Savers writing bytes anyway should override it, so that the class
+   * text is never held as a string; the default implementation decodes the content.
+   */
+  default void saveEncodedClassFile(String path, String qualifiedName, String entryName, ByteBuffer content, int[] mapping) {
+    saveClassFile(path, qualifiedName, entryName, decode(content), mapping);
+  }
+
   void createArchive(String path, String archiveName, Manifest manifest);
 
   void saveDirEntry(String path, String archiveName, String entryName);
@@ -18,5 +30,17 @@ public interface IResultSaver {
 
   void saveClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content);
 
+  /**
+   * Same as {@link #saveClassEntry(String, String, String, String, String)} with the content already encoded in UTF-8,
+   * see {@link #saveEncodedClassFile}. The content may be null.
+   */
+  default void saveEncodedClassEntry(String path, String archiveName, String qualifiedName, String entryName, ByteBuffer content) {
+    saveClassEntry(path, archiveName, qualifiedName, entryName, decode(content));
+  }
+
   void closeArchive(String path, String archiveName);
+
+  static String decode(ByteBuffer content) {
+    return content != null ? StandardCharsets.UTF_8.decode(content.duplicate()).toString() : null;
+  }
 }
@@ -0,0 +1,31 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.java.decompiler.main.rels;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Cooperative cancellation of method processing. The processing loops poll the token and bail out
+ * with a {@link CancellationException} once it has been cancelled.
+ */
+public final class CancellationToken {
+  // never cancelled, used when no time limit is set
+  public static final CancellationToken NONE = new CancellationToken();
+
+  private volatile boolean cancelled;
+
+  public void cancel() {
+    if (this != NONE) {
+      cancelled = true;
+    }
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  public void checkCancelled() {
+    if (cancelled) {
+      throw new CancellationException("Method processing cancelled");
+    }
+  }
+}
@@ -23,8 +23,11 @@ import org.jetbrains.java.decompiler.util.VBStyleCollection;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class ClassWrapper {
+  private static final long CANCEL_GRACE_MILLIS = 1000;
+
   private final StructClass classStruct;
   private final Set<String> hiddenMembers = new HashSet<>();
   private final VBStyleCollection<Exprent, String> staticFieldInitializers = new VBStyleCollection<>();
@@ -63,36 +66,37 @@ public class ClassWrapper {
             root = MethodProcessorRunnable.codeToJava(classStruct, mt, md, varProc);
           }
           else {
-            MethodProcessorRunnable mtProc = new MethodProcessorRunnable(classStruct, mt, md, varProc, DecompilerContext.getCurrentContext());
-
-            Thread mtThread = new Thread(mtProc, "Java decompiler");
-            long stopAt = System.currentTimeMillis() + maxSec * 1000L;
+            MethodProcessorRunnable mtProc = new MethodProcessorRunnable(classStruct, mt, md, varProc);
+            mtProc.start();
 
-            mtThread.start();
-
-            while (!mtProc.isFinished()) {
-              try {
-                synchronized (mtProc.lock) {
-                  mtProc.lock.wait(200);
-                }
-              }
-              catch (InterruptedException e) {
-                killThread(mtThread);
-                throw e;
-              }
-
-              if (System.currentTimeMillis() >= stopAt) {
-                String message = "Processing time limit exceeded for method " + mt.getName() + ", execution interrupted.";
-                DecompilerContext.getLogger().writeMessage(message, IFernflowerLogger.Severity.ERROR);
-                killThread(mtThread);
-                isError = true;
-                break;
-              }
+            boolean completed;
+            try {
+              completed = mtProc.await(maxSec, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+              mtProc.cancel();
+              throw e;
             }
 
-            if (!isError) {
+            if (completed) {
               root = mtProc.getResult();
             }
+            else {
+              String message = "Processing time limit exceeded for method " + mt.getName() + ", execution interrupted.";
+              DecompilerContext.getLogger().writeMessage(message, IFernflowerLogger.Severity.ERROR);
+              mtProc.cancel();
+              // the processing still shares the imports and line mappings of this class, so it has to stop before going on
+              if (!mtProc.await(CANCEL_GRACE_MILLIS, TimeUnit.MILLISECONDS)) {
+                DecompilerContext.getLogger().writeMessage("Processing of method " + mt.getName() + " did not stop after cancellation yet, waiting",
+                                                           IFernflowerLogger.Severity.WARN);
+                mtProc.await();
+              }
+              // whatever the processing left in the variables and counters of the method is dropped with it
+              varProc = new VarProcessor(mt, md);
+              DecompilerContext.startMethod(varProc);
+              counter = DecompilerContext.getCounterContainer();
+              isError = true;
+            }
           }
         }
         else {
@@ -182,11 +186,6 @@ public class ClassWrapper {
     DecompilerContext.getLogger().endClass();
   }
 
-  @SuppressWarnings("deprecation")
-  private static void killThread(Thread thread) {
-    thread.stop();
-  }
-
   public MethodWrapper getMethodWrapper(String name, String descriptor) {
     return methods.getWithKey(InterpreterUtil.makeUniqueKey(name, descriptor));
   }
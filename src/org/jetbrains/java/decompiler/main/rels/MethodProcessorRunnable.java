@@ -6,6 +6,7 @@ import org.jetbrains.java.decompiler.code.InstructionSequence;
 import org.jetbrains.java.decompiler.code.cfg.ControlFlowGraph;
 import org.jetbrains.java.decompiler.main.DecompilerContext;
 import org.jetbrains.java.decompiler.main.collectors.CounterContainer;
+import org.jetbrains.java.decompiler.main.collectors.PassProfiler;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
 import org.jetbrains.java.decompiler.modules.code.DeadCodeHelper;
@@ -25,32 +26,75 @@ import org.jetbrains.java.decompiler.struct.gen.MethodDescriptor;
 import org.jetbrains.java.decompiler.util.DotExporter;
 
 import java.io.IOException;
+import java.util.concurrent.*;
 
 public class MethodProcessorRunnable implements Runnable {
   public static ThreadLocal<RootStatement> debugCurrentlyDecompiling = ThreadLocal.withInitial(() -> null);
   public static ThreadLocal<ControlFlowGraph> debugCurrentCFG = ThreadLocal.withInitial(() -> null);
-  public final Object lock = new Object();
+
+  // threads are reused across methods and classes; a thread stays busy after a timeout only until its task notices the cancellation
+  private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new Thread(runnable, "Method processor");
+    thread.setDaemon(true);
+    return thread;
+  });
 
   private final StructClass klass;
   private final StructMethod method;
   private final MethodDescriptor methodDescriptor;
   private final VarProcessor varProc;
-  private final DecompilerContext parentContext;
+  private final DecompilerContext context;
+
+  private final CancellationToken token = new CancellationToken();
+  private final CountDownLatch finished = new CountDownLatch(1);
+  private Future<?> task;
 
   private volatile RootStatement root;
   private volatile Throwable error;
-  private volatile boolean finished = false;
 
   public MethodProcessorRunnable(StructClass klass,
                                  StructMethod method,
                                  MethodDescriptor methodDescriptor,
-                                 VarProcessor varProc,
-                                 DecompilerContext parentContext) {
+                                 VarProcessor varProc) {
     this.klass = klass;
     this.method = method;
     this.methodDescriptor = methodDescriptor;
     this.varProc = varProc;
-    this.parentContext = parentContext;
+    // the processing gets a context of its own, so the current thread may go on with the next method once it has stopped
+    this.context = DecompilerContext.forkMethod(token);
+  }
+
+  /**
+   * Starts processing the method on the shared pool.
+   */
+  public void start() {
+    task = EXECUTOR.submit(this);
+  }
+
+  /**
+   * Waits for the processing to finish, returning as soon as it does.
+   *
+   * @return false if the time limit elapsed first
+   */
+  public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+    return finished.await(timeout, unit);
+  }
+
+  /**
+   * Waits for the processing to finish, however long it takes.
+   */
+  public void await() throws InterruptedException {
+    finished.await();
+  }
+
+  /**
+   * Asks the processing to stop at its next cancellation check.
+   */
+  public void cancel() {
+    token.cancel();
+    if (task != null) {
+      task.cancel(true);
+    }
   }
 
   @Override
@@ -59,7 +103,7 @@ public class MethodProcessorRunnable implements Runnable {
     root = null;
 
     try {
-      DecompilerContext.setCurrentContext(parentContext);
+      DecompilerContext.setCurrentContext(context);
       root = codeToJava(klass, method, methodDescriptor, varProc);
     }
     catch (Throwable t) {
@@ -67,59 +111,81 @@ public class MethodProcessorRunnable implements Runnable {
     }
     finally {
       DecompilerContext.setCurrentContext(null);
+      finished.countDown();
     }
+  }
 
-    finished = true;
-    synchronized (lock) {
-      lock.notifyAll();
+  public static RootStatement codeToJava(StructClass cl, StructMethod mt, MethodDescriptor md, VarProcessor varProc) throws IOException {
+    PassProfiler profiler = PassProfiler.start(cl, mt);
+    try {
+      return codeToJava(cl, mt, md, varProc, profiler);
+    }
+    finally {
+      profiler.finish();
     }
   }
 
-  public static RootStatement codeToJava(StructClass cl, StructMethod mt, MethodDescriptor md, VarProcessor varProc) throws IOException {
+  private static RootStatement codeToJava(StructClass cl, StructMethod mt, MethodDescriptor md, VarProcessor varProc,
+                                          PassProfiler profiler) throws IOException {
     debugCurrentlyDecompiling.set(null);
     debugCurrentCFG.set(null);
 
     boolean isInitializer = CodeConstants.CLINIT_NAME.equals(mt.getName()); // for now static initializer only
 
+    profiler.pass("StructMethod.expandData");
     mt.expandData(cl);
     InstructionSequence seq = mt.getInstructionSequence();
+    profiler.pass("ControlFlowGraph");
     ControlFlowGraph graph = new ControlFlowGraph(seq);
     debugCurrentCFG.set(graph);
     DotExporter.toDotFile(graph, mt, "cfgConstructed", true);
 
+    profiler.pass("DeadCodeHelper.removeDeadBlocks");
     DeadCodeHelper.removeDeadBlocks(graph);
+    profiler.pass("ControlFlowGraph.inlineJsr");
     graph.inlineJsr(cl, mt);
 
     // TODO: move to the start, before jsr inlining
+    profiler.pass("DeadCodeHelper.connectDummyExitBlock");
     DeadCodeHelper.connectDummyExitBlock(graph);
 
+    profiler.pass("DeadCodeHelper.removeGotos");
     DeadCodeHelper.removeGotos(graph);
 
+    profiler.pass("ExceptionDeobfuscator.removeCircularRanges");
     ExceptionDeobfuscator.removeCircularRanges(graph);
 
+    profiler.pass("ExceptionDeobfuscator.restorePopRanges");
     ExceptionDeobfuscator.restorePopRanges(graph);
 
     if (DecompilerContext.getOption(IFernflowerPreferences.REMOVE_EMPTY_RANGES)) {
+      profiler.pass("ExceptionDeobfuscator.removeEmptyRanges");
       ExceptionDeobfuscator.removeEmptyRanges(graph);
     }
 
     if (DecompilerContext.getOption(IFernflowerPreferences.ENSURE_SYNCHRONIZED_MONITOR)) {
       // special case: search for 'synchronized' ranges w/o monitorexit instruction (as generated by Kotlin and Scala)
+      profiler.pass("DeadCodeHelper.extendSynchronizedRangeToMonitorexit");
       DeadCodeHelper.extendSynchronizedRangeToMonitorexit(graph);
     }
 
     if (DecompilerContext.getOption(IFernflowerPreferences.NO_EXCEPTIONS_RETURN)) {
       // special case: single return instruction outside of a protected range
+      profiler.pass("DeadCodeHelper.incorporateValueReturns");
       DeadCodeHelper.incorporateValueReturns(graph);
     }
 
     //		ExceptionDeobfuscator.restorePopRanges(graph);
+    profiler.pass("ExceptionDeobfuscator.insertEmptyExceptionHandlerBlocks");
     ExceptionDeobfuscator.insertEmptyExceptionHandlerBlocks(graph);
 
+    profiler.pass("DeadCodeHelper.mergeBasicBlocks");
     DeadCodeHelper.mergeBasicBlocks(graph);
+    DecompilerContext.checkCancelled();
 
     DecompilerContext.getCounterContainer().setCounter(CounterContainer.VAR_COUNTER, mt.getLocalVariables());
 
+    profiler.pass("ExceptionDeobfuscator.handleObfuscatedExceptions");
     if (ExceptionDeobfuscator.hasObfuscatedExceptions(graph)) {
       DecompilerContext.getLogger().writeMessage("Heavily obfuscated exception ranges found!", IFernflowerLogger.Severity.WARN);
       if (!ExceptionDeobfuscator.handleMultipleEntryExceptionRanges(graph)) {
@@ -128,89 +194,123 @@ public class MethodProcessorRunnable implements Runnable {
       ExceptionDeobfuscator.insertDummyExceptionHandlerBlocks(graph, mt.getBytecodeVersion());
     }
 
+    profiler.pass("DomHelper.parseGraph");
     RootStatement root = DomHelper.parseGraph(graph, mt);
     debugCurrentlyDecompiling.set(root);
     DotExporter.toDotFile(graph, mt, "cfgParsed", true);
     DotExporter.toDotFile(root, mt, "initialStat");
 
     FinallyProcessor fProc = new FinallyProcessor(md, varProc);
+    profiler.pass("FinallyProcessor.iterateGraph");
     while (fProc.iterateGraph(cl, mt, root, graph)) {
+      DecompilerContext.checkCancelled();
+      profiler.iteration("finally");
+      profiler.pass("DomHelper.parseGraph");
       root = DomHelper.parseGraph(graph, mt);
       debugCurrentlyDecompiling.set(root);
+      profiler.pass("FinallyProcessor.iterateGraph");
     }
 
     // remove synchronized exception handler
     // not until now because of comparison between synchronized statements in the finally cycle
+    profiler.pass("DomHelper.removeSynchronizedHandler");
     DomHelper.removeSynchronizedHandler(root);
 
     //		LabelHelper.lowContinueLabels(root, new HashSet<StatEdge>());
 
+    profiler.pass("SequenceHelper.condenseSequences");
     SequenceHelper.condenseSequences(root);
 
+    profiler.pass("ClearStructHelper.clearStatements");
     ClearStructHelper.clearStatements(root);
 
     ExprProcessor proc = new ExprProcessor(md, varProc);
+    profiler.pass("ExprProcessor.processStatement");
     proc.processStatement(root, cl);
     DotExporter.toDotFile(root, mt, "initialProcessStat");
 
+    profiler.pass("SequenceHelper.condenseSequences");
     SequenceHelper.condenseSequences(root);
 
     StackVarsProcessor stackProc = new StackVarsProcessor();
 
     do {
+      DecompilerContext.checkCancelled();
+      profiler.iteration("stackVars");
+      profiler.pass("StackVarsProcessor.simplifyStackVars");
       stackProc.simplifyStackVars(root, mt, cl);
+      profiler.pass("VarProcessor.setVarVersions");
       varProc.setVarVersions(root);
+      profiler.pass("PPandMMHelper.findPPandMM");
     } while (new PPandMMHelper(varProc).findPPandMM(root));
 
     if (cl.isVersion(CodeConstants.BYTECODE_JAVA_9)) {
+      profiler.pass("ConcatenationHelper.simplifyStringConcat");
       ConcatenationHelper.simplifyStringConcat(root);
     }
 
     while (true) {
+      DecompilerContext.checkCancelled();
+      profiler.iteration("restructure");
+      profiler.pass("LabelHelper.cleanUpEdges");
       LabelHelper.cleanUpEdges(root);
 
       while (true) {
+        DecompilerContext.checkCancelled();
+        profiler.iteration("loopsAndIfs");
+        profiler.pass("EliminateLoopsHelper.eliminateLoops");
         if (EliminateLoopsHelper.eliminateLoops(root, cl)) {
           continue;
         }
 
+        profiler.pass("MergeHelper.enhanceLoops");
         MergeHelper.enhanceLoops(root);
 
+        profiler.pass("LoopExtractHelper.extractLoops");
         if (LoopExtractHelper.extractLoops(root)) {
           continue;
         }
 
+        profiler.pass("IfHelper.mergeAllIfs");
         if (!IfHelper.mergeAllIfs(root)) {
           break;
         }
       }
 
       if (DecompilerContext.getOption(IFernflowerPreferences.IDEA_NOT_NULL_ANNOTATION)) {
+        profiler.pass("IdeaNotNullHelper.removeHardcodedChecks");
         if (IdeaNotNullHelper.removeHardcodedChecks(root, mt)) {
           SequenceHelper.condenseSequences(root);
         }
       }
 
+      profiler.pass("StackVarsProcessor.simplifyStackVars");
       stackProc.simplifyStackVars(root, mt, cl);
+      profiler.pass("VarProcessor.setVarVersions");
       varProc.setVarVersions(root);
 
+      profiler.pass("LabelHelper.identifyLabels");
       LabelHelper.identifyLabels(root);
 
+      profiler.pass("TryHelper.enhanceTryStats");
       if (TryHelper.enhanceTryStats(root, cl)) {
         continue;
       }
 
+      profiler.pass("InlineSingleBlockHelper.inlineSingleBlocks");
       if (InlineSingleBlockHelper.inlineSingleBlocks(root)) {
         continue;
       }
 
       // this has to be done last so it does not screw up the formation of for loops
+      profiler.pass("MergeHelper.makeDoWhileLoops");
       if (MergeHelper.makeDoWhileLoops(root)) {
         LabelHelper.cleanUpEdges(root);
         LabelHelper.identifyLabels(root);
       }
 
       // initializer may have at most one return point, so no transformation of method exits permitted
+      profiler.pass("ExitHelper.condenseExits");
       if (isInitializer || !ExitHelper.condenseExits(root)) {
         break;
       }
@@ -221,29 +321,40 @@ public class MethodProcessorRunnable implements Runnable {
       //}
     }
 
+    DecompilerContext.checkCancelled();
+
     // this has to be done after all inlining is done so the case values do not get reverted
+    profiler.pass("SwitchHelper.simplifySwitches");
     if (SwitchHelper.simplifySwitches(root)) {
       SequenceHelper.condenseSequences(root); // remove empty blocks
     }
 
+    profiler.pass("ExitHelper.adjustReturnType");
     ExitHelper.adjustReturnType(root, md);
+    profiler.pass("ExitHelper.removeRedundantReturns");
     ExitHelper.removeRedundantReturns(root);
 
+    profiler.pass("SecondaryFunctionsHelper.identifySecondaryFunctions");
     SecondaryFunctionsHelper.identifySecondaryFunctions(root, varProc);
 
+    profiler.pass("cleanSynchronizedVar");
     cleanSynchronizedVar(root);
 
+    profiler.pass("VarProcessor.setVarDefinitions");
     varProc.setVarDefinitions(root);
 
     // Make sure to update assignments after setting the var definitions!
+    profiler.pass("SecondaryFunctionsHelper.updateAssignments");
     SecondaryFunctionsHelper.updateAssignments(root);
 
     // must be the last invocation, because it makes the statement structure inconsistent
     // FIXME: new edge type needed
+    profiler.pass("LabelHelper.replaceContinueWithBreak");
     LabelHelper.replaceContinueWithBreak(root);
 
     DotExporter.toDotFile(root, mt, "finalStatement");
 
+    profiler.pass("StructMethod.releaseResources");
     mt.releaseResources();
 
     return root;
@@ -255,10 +366,6 @@ public class MethodProcessorRunnable implements Runnable {
     return root;
   }
 
-  public boolean isFinished() {
-    return finished;
-  }
-
   public static void cleanSynchronizedVar(Statement stat) {
     for (Statement st : stat.getStats()) {
       cleanSynchronizedVar(st);
@@ -10,10 +10,9 @@ import org.jetbrains.java.decompiler.modules.decompiler.decompose.FastExtendedPo
 import org.jetbrains.java.decompiler.modules.decompiler.deobfuscator.IrreducibleCFGDeobfuscator;
 import org.jetbrains.java.decompiler.modules.decompiler.stats.*;
 import org.jetbrains.java.decompiler.struct.StructMethod;
+import org.jetbrains.java.decompiler.util.BitMatrix;
 import org.jetbrains.java.decompiler.util.DotExporter;
-import org.jetbrains.java.decompiler.util.FastFixedSetFactory;
-import org.jetbrains.java.decompiler.util.FastFixedSetFactory.FastFixedSet;
-import org.jetbrains.java.decompiler.util.InterpreterUtil;
+import org.jetbrains.java.decompiler.util.LongIntHashMap;
 import org.jetbrains.java.decompiler.util.VBStyleCollection;
 
 import java.util.*;
@@ -103,96 +102,117 @@ public final class DomHelper {
 
   public static VBStyleCollection<List<Integer>, Integer> calcPostDominators(Statement container) {
 
-    HashMap<Statement, FastFixedSet<Statement>> lists = new HashMap<>();
-
     StrongConnectivityHelper schelper = new StrongConnectivityHelper(container);
     List<List<Statement>> components = schelper.getComponents();
 
     List<Statement> lstStats = container.getPostReversePostOrderList(StrongConnectivityHelper.getExitReps(components));
 
-    FastFixedSetFactory<Statement> factory = new FastFixedSetFactory<>(lstStats);
+    // number the statements in reverse post-order, so that iterating over a set yields its elements sorted
+    Statement[] nodes = new Statement[lstStats.size()];
+    LongIntHashMap indices = new LongIntHashMap(nodes.length);
+    int count = 0;
+    for (Statement stat : container.getReversePostOrderList()) { // sort order crucial!
+      nodes[count] = stat;
+      indices.put(stat.id, count++);
+    }
+    for (Statement stat : lstStats) {
+      if (!indices.containsKey(stat.id)) {
+        nodes[count] = stat;
+        indices.put(stat.id, count++);
+      }
+    }
+
+    int[] order = new int[lstStats.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = indices.get(lstStats.get(i).id, -1);
+    }
+
+    // postdominator sets are never modified in place and may be shared
+    long[][] lists = new long[count][];
 
-    FastFixedSet<Statement> setFlagNodes = factory.spawnEmptySet();
-    setFlagNodes.setAllElements();
+    boolean[] setFlagNodes = new boolean[count];
+    Arrays.fill(setFlagNodes, true);
+    int flagCount = count;
 
-    FastFixedSet<Statement> initSet = factory.spawnEmptySet();
-    initSet.setAllElements();
+    long[] initSet = new long[BitMatrix.getWordCount(count)];
+    for (int i = 0; i < count; i++) {
+      BitMatrix.set(initSet, i);
+    }
 
     for (List<Statement> lst : components) {
-      FastFixedSet<Statement> tmpSet;
+      long[] tmpSet;
 
       if (StrongConnectivityHelper.isExitComponent(lst)) {
-        tmpSet = factory.spawnEmptySet();
-        tmpSet.addAll(lst);
+        tmpSet = new long[initSet.length];
+        for (Statement stat : lst) {
+          BitMatrix.set(tmpSet, indices.get(stat.id, -1));
+        }
       }
       else {
-        tmpSet = initSet.getCopy();
+        tmpSet = initSet;
       }
 
       for (Statement stat : lst) {
-        lists.put(stat, tmpSet);
+        lists[indices.get(stat.id, -1)] = tmpSet;
       }
     }
 
     do {
+      DecompilerContext.checkCancelled();
 
-      for (Statement stat : lstStats) {
+      for (int index : order) {
 
-        if (!setFlagNodes.contains(stat)) {
+        if (!setFlagNodes[index]) {
           continue;
         }
-        setFlagNodes.remove(stat);
+        setFlagNodes[index] = false;
+        flagCount--;
 
-        FastFixedSet<Statement> doms = lists.get(stat);
-        FastFixedSet<Statement> domsSuccs = factory.spawnEmptySet();
+        Statement stat = nodes[index];
+        long[] domsSuccs = new long[initSet.length];
 
         List<Statement> lstSuccs = stat.getNeighbours(StatEdge.TYPE_REGULAR, Statement.DIRECTION_FORWARD);
         for (int j = 0; j < lstSuccs.size(); j++) {
-          Statement succ = lstSuccs.get(j);
-          FastFixedSet<Statement> succlst = lists.get(succ);
+          long[] succlst = lists[indices.get(lstSuccs.get(j).id, -1)];
 
           if (j == 0) {
-            domsSuccs.union(succlst);
+            BitMatrix.or(domsSuccs, succlst);
           }
           else {
-            domsSuccs.intersection(succlst);
+            BitMatrix.and(domsSuccs, succlst);
           }
         }
 
-        if (!domsSuccs.contains(stat)) {
-          domsSuccs.add(stat);
-        }
+        BitMatrix.set(domsSuccs, index);
 
-        if (!InterpreterUtil.equalObjects(domsSuccs, doms)) {
+        if (!Arrays.equals(domsSuccs, lists[index])) {
 
-          lists.put(stat, domsSuccs);
+          lists[index] = domsSuccs;
 
           List<Statement> lstPreds = stat.getNeighbours(StatEdge.TYPE_REGULAR, Statement.DIRECTION_BACKWARD);
           for (Statement pred : lstPreds) {
-            setFlagNodes.add(pred);
+            int predIndex = indices.get(pred.id, -1);
+            if (predIndex >= 0 && !setFlagNodes[predIndex]) {
+              setFlagNodes[predIndex] = true;
+              flagCount++;
+            }
           }
         }
       }
     }
-    while (!setFlagNodes.isEmpty());
+    while (flagCount > 0);
 
     VBStyleCollection<List<Integer>, Integer> ret = new VBStyleCollection<>();
-    List<Statement> lstRevPost = container.getReversePostOrderList(); // sort order crucial!
 
-    final HashMap<Integer, Integer> mapSortOrder = new HashMap<>();
-    for (int i = 0; i < lstRevPost.size(); i++) {
-      mapSortOrder.put(lstRevPost.get(i).id, i);
-    }
-
-    for (Statement st : lstStats) {
+    for (int index : order) {
+      Statement st = nodes[index];
+      long[] posts = lists[index];
 
       List<Integer> lstPosts = new ArrayList<>();
-      for (Statement stt : lists.get(st)) {
-        lstPosts.add(stt.id);
+      for (int i = BitMatrix.nextSetBit(posts, 0); i >= 0; i = BitMatrix.nextSetBit(posts, i + 1)) {
+        lstPosts.add(nodes[i].id);
       }
 
-      lstPosts.sort(Comparator.comparing(mapSortOrder::get));
-
       if (lstPosts.size() > 1 && lstPosts.get(0).intValue() == st.id) {
         lstPosts.add(lstPosts.remove(0));
       }
@@ -362,6 +382,7 @@ public final class DomHelper {
           boolean forceall = i != 0;
 
           while (true) {
+            DecompilerContext.checkCancelled();
 
             if (findSimpleStatements(general, mapExtPost)) {
               reducibility = 0;
@@ -592,6 +613,7 @@ public final class DomHelper {
     boolean found, success = false;
 
     do {
+      DecompilerContext.checkCancelled();
       found = false;
 
       List<Statement> lstStats = stat.getPostReversePostOrderList();
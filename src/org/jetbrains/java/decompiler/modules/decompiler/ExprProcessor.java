@@ -107,47 +107,59 @@ public class ExprProcessor implements CodeConstants {
     FlattenStatementsHelper flatthelper = new FlattenStatementsHelper();
     DirectGraph dgraph = flatthelper.buildDirectGraph(root);
 
-    // collect finally entry points
-    Set<String> setFinallyShortRangeEntryPoints = new HashSet<>();
-    for (List<FinallyPathWrapper> lst : dgraph.mapShortRangeFinallyPaths.values()) {
-      for (FinallyPathWrapper finwrap : lst) {
-        setFinallyShortRangeEntryPoints.add(finwrap.entry);
+    int nodeCount = dgraph.getNodeCount();
+
+    // collect finally entry points, by node index
+    BitSet finallyShortRangeEntryPoints = new BitSet(nodeCount);
+    // source node index, entry nodes
+    BitSet[] finallyLongRangeEntryPaths = new BitSet[nodeCount];
+    for (int i = 0; i < nodeCount; i++) {
+      FinallyPathWrapper[] paths = dgraph.getShortRangeFinallyPaths(i);
+      if (paths != null) {
+        for (FinallyPathWrapper finwrap : paths) {
+          finallyShortRangeEntryPoints.set(finwrap.entry.index);
+        }
       }
-    }
 
-    Set<String> setFinallyLongRangeEntryPaths = new HashSet<>();
-    for (List<FinallyPathWrapper> lst : dgraph.mapLongRangeFinallyPaths.values()) {
-      for (FinallyPathWrapper finwrap : lst) {
-        setFinallyLongRangeEntryPaths.add(finwrap.source + "##" + finwrap.entry);
+      paths = dgraph.getLongRangeFinallyPaths(i);
+      if (paths != null) {
+        for (FinallyPathWrapper finwrap : paths) {
+          BitSet entries = finallyLongRangeEntryPaths[finwrap.source.index];
+          if (entries == null) {
+            finallyLongRangeEntryPaths[finwrap.source.index] = entries = new BitSet(nodeCount);
+          }
+          entries.set(finwrap.entry.index);
+        }
       }
     }
 
-    Map<String, VarExprent> mapCatch = new HashMap<>();
-    collectCatchVars(root, flatthelper, mapCatch);
+    VarExprent[] catchVars = new VarExprent[nodeCount];
+    collectCatchVars(root, flatthelper, dgraph, catchVars);
 
-    Map<DirectNode, Map<String, PrimitiveExprsList>> mapData = new HashMap<>();
+    // node index, entry points, expression data
+    List<Map<List<DirectNode>, PrimitiveExprsList>> mapData = new ArrayList<>(Collections.nCopies(nodeCount, null));
 
     LinkedList<DirectNode> stack = new LinkedList<>();
-    LinkedList<LinkedList<String>> stackEntryPoint = new LinkedList<>();
+    LinkedList<LinkedList<DirectNode>> stackEntryPoint = new LinkedList<>();
 
     stack.add(dgraph.first);
     stackEntryPoint.add(new LinkedList<>());
 
-    Map<String, PrimitiveExprsList> map = new HashMap<>();
-    map.put(null, new PrimitiveExprsList());
-    mapData.put(dgraph.first, map);
+    Map<List<DirectNode>, PrimitiveExprsList> map = new HashMap<>();
+    map.put(Collections.emptyList(), new PrimitiveExprsList());
+    mapData.set(dgraph.first.index, map);
 
     while (!stack.isEmpty()) {
 
       DirectNode node = stack.removeFirst();
-      LinkedList<String> entrypoints = stackEntryPoint.removeFirst();
+      LinkedList<DirectNode> entrypoints = stackEntryPoint.removeFirst();
 
       PrimitiveExprsList data;
-      if (mapCatch.containsKey(node.id)) {
-        data = getExpressionData(mapCatch.get(node.id));
+      if (catchVars[node.index] != null) {
+        data = getExpressionData(catchVars[node.index]);
       }
       else {
-        data = mapData.get(node).get(buildEntryPointKey(entrypoints));
+        data = mapData.get(node.index).get(entrypoints);
       }
 
       BasicBlockStatement block = node.block;
@@ -156,15 +168,16 @@ public class ExprProcessor implements CodeConstants {
         block.setExprents(data.getLstExprents());
       }
 
-      String currentEntrypoint = entrypoints.isEmpty() ? null : entrypoints.getLast();
+      DirectNode currentEntrypoint = entrypoints.isEmpty() ? null : entrypoints.getLast();
+      FinallyPathWrapper[] longRangePaths = dgraph.getLongRangeFinallyPaths(node.index);
 
       for (DirectNode nd : node.succs) {
 
         boolean isSuccessor = true;
-        if (currentEntrypoint != null && dgraph.mapLongRangeFinallyPaths.containsKey(node.id)) {
+        if (currentEntrypoint != null && longRangePaths != null) {
           isSuccessor = false;
-          for (FinallyPathWrapper finwraplong : dgraph.mapLongRangeFinallyPaths.get(node.id)) {
-            if (finwraplong.source.equals(currentEntrypoint) && finwraplong.destination.equals(nd.id)) {
+          for (FinallyPathWrapper finwraplong : longRangePaths) {
+            if (finwraplong.source == currentEntrypoint && finwraplong.destination == nd) {
               isSuccessor = true;
               break;
             }
@@ -172,19 +185,23 @@ public class ExprProcessor implements CodeConstants {
         }
 
         if (isSuccessor) {
-          Map<String, PrimitiveExprsList> mapSucc = mapData.computeIfAbsent(nd, k -> new HashMap<>());
-          LinkedList<String> ndentrypoints = new LinkedList<>(entrypoints);
+          Map<List<DirectNode>, PrimitiveExprsList> mapSucc = mapData.get(nd.index);
+          if (mapSucc == null) {
+            mapData.set(nd.index, mapSucc = new HashMap<>());
+          }
+          LinkedList<DirectNode> ndentrypoints = new LinkedList<>(entrypoints);
 
-          if (setFinallyLongRangeEntryPaths.contains(node.id + "##" + nd.id)) {
-            ndentrypoints.addLast(node.id);
+          BitSet longRangeEntries = finallyLongRangeEntryPaths[node.index];
+          if (longRangeEntries != null && longRangeEntries.get(nd.index)) {
+            ndentrypoints.addLast(node);
           }
-          else if (!setFinallyShortRangeEntryPoints.contains(nd.id) && dgraph.mapLongRangeFinallyPaths.containsKey(node.id)) {
+          else if (!finallyShortRangeEntryPoints.get(nd.index) && longRangePaths != null) {
             ndentrypoints.removeLast(); // currentEntrypoint should
             // not be null at this point
           }
 
           // handling of entry point loops
-          int succ_entry_index = ndentrypoints.indexOf(nd.id);
+          int succ_entry_index = ndentrypoints.indexOf(nd);
           if (succ_entry_index >=
               0) { // we are in a loop (e.g. continue in a finally block), drop all entry points in the list beginning with succ_entry_index
             for (int elements_to_remove = ndentrypoints.size() - succ_entry_index; elements_to_remove > 0; elements_to_remove--) {
@@ -192,10 +209,10 @@ public class ExprProcessor implements CodeConstants {
             }
           }
 
-          String ndentrykey = buildEntryPointKey(ndentrypoints);
-          if (!mapSucc.containsKey(ndentrykey)) {
+          // the entry point lists are never modified once queued, so they can serve as keys
+          if (!mapSucc.containsKey(ndentrypoints)) {
 
-            mapSucc.put(ndentrykey, copyVarExprents(data.copyStack()));
+            mapSucc.put(ndentrypoints, copyVarExprents(data.copyStack()));
 
             stack.add(nd);
             stackEntryPoint.add(ndentrypoints);
@@ -207,21 +224,6 @@ public class ExprProcessor implements CodeConstants {
     initStatementExprents(root);
   }
 
-  // FIXME: Ugly code, to be rewritten. A tuple class is needed.
-  private static String buildEntryPointKey(LinkedList<String> entrypoints) {
-    if (entrypoints.isEmpty()) {
-      return null;
-    }
-    else {
-      StringBuilder buffer = new StringBuilder();
-      for (String point : entrypoints) {
-        buffer.append(point);
-        buffer.append(":");
-      }
-      return buffer.toString();
-    }
-  }
-
   private static PrimitiveExprsList copyVarExprents(PrimitiveExprsList data) {
     ExprentStack stack = data.getStack();
     copyEntries(stack);
@@ -234,7 +236,7 @@ public class ExprProcessor implements CodeConstants {
     }
   }
 
-  private static void collectCatchVars(Statement stat, FlattenStatementsHelper flatthelper, Map<String, VarExprent> map) {
+  private static void collectCatchVars(Statement stat, FlattenStatementsHelper flatthelper, DirectGraph dgraph, VarExprent[] vars) {
 
     List<VarExprent> lst = null;
 
@@ -250,12 +252,15 @@ public class ExprProcessor implements CodeConstants {
 
     if (lst != null) {
       for (int i = 1; i < stat.getStats().size(); i++) {
-        map.put(flatthelper.getMapDestinationNodes().get(stat.getStats().get(i).id)[0], lst.get(i - 1));
+        DirectNode node = dgraph.nodes.getWithKey(flatthelper.getMapDestinationNodes().get(stat.getStats().get(i).id)[0]);
+        if (node != null) { // unreachable handlers are not part of the graph
+          vars[node.index] = lst.get(i - 1);
+        }
       }
     }
 
     for (Statement st : stat.getStats()) {
-      collectCatchVars(st, flatthelper, map);
+      collectCatchVars(st, flatthelper, dgraph, vars);
     }
   }
 
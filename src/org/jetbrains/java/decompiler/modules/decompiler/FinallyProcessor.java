@@ -54,6 +54,7 @@ public class FinallyProcessor {
     stack.add(root);
 
     while (!stack.isEmpty()) {
+      DecompilerContext.checkCancelled();
       Statement stat = stack.removeLast();
 
       Statement parent = stat.getParent();
@@ -493,6 +494,7 @@ public class FinallyProcessor {
     List<Area> lstAreas = new ArrayList<>();
 
     for (BasicBlock start : starts) {
+      DecompilerContext.checkCancelled();
 
       Area arr = compareSubgraphsEx(graph, start, catchBlocks, first, finallytype, mapLast, skippedFirst);
       if (arr == null) {
@@ -581,6 +583,7 @@ public class FinallyProcessor {
     stack.add(new BlockStackEntry(startCatch, startSample, new ArrayList<>()));
 
     while (!stack.isEmpty()) {
+      DecompilerContext.checkCancelled();
 
       BlockStackEntry entry = stack.remove(0);
       BasicBlock blockCatch = entry.blockCatch;
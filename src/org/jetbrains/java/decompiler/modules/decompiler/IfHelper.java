@@ -501,6 +501,7 @@ public final class IfHelper {
       //			}
 
       ifstat.iftype = IfStatement.IFTYPE_IFELSE;
+      Statement.structureChanged();
     }
     else if (ifdirect && (!elsedirect || (noifstat && !noelsestat)) && !ifstat.getAllSuccessorEdges().isEmpty()) {  // if - then
 
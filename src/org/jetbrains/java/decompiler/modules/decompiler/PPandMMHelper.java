@@ -8,7 +8,6 @@ import org.jetbrains.java.decompiler.modules.decompiler.exps.FunctionExprent;
 import org.jetbrains.java.decompiler.modules.decompiler.exps.VarExprent;
 import org.jetbrains.java.decompiler.modules.decompiler.sforms.DirectGraph;
 import org.jetbrains.java.decompiler.modules.decompiler.sforms.DirectNode;
-import org.jetbrains.java.decompiler.modules.decompiler.sforms.FlattenStatementsHelper;
 import org.jetbrains.java.decompiler.modules.decompiler.stats.RootStatement;
 import org.jetbrains.java.decompiler.modules.decompiler.vars.VarProcessor;
 import org.jetbrains.java.decompiler.modules.decompiler.vars.VarVersionPair;
@@ -32,8 +31,7 @@ public class PPandMMHelper {
 
   public boolean findPPandMM(RootStatement root) {
 
-    FlattenStatementsHelper flatthelper = new FlattenStatementsHelper();
-    this.dgraph = flatthelper.buildDirectGraph(root);
+    this.dgraph = root.getDirectGraph();
 
     LinkedList<DirectNode> stack = new LinkedList<>();
     stack.add(this.dgraph.first);
@@ -56,6 +56,7 @@ public final class SecondaryFunctionsHelper {
           ifelsestat.getStats().removeWithKey(ifstat.id);
 
           ifelsestat.iftype = IfStatement.IFTYPE_IF;
+          Statement.structureChanged();
           ifelsestat.setIfstat(ifelsestat.getElsestat());
           ifelsestat.setElsestat(null);
 
@@ -17,8 +17,10 @@ import org.jetbrains.java.decompiler.struct.StructClass;
 import org.jetbrains.java.decompiler.struct.StructMethod;
 import org.jetbrains.java.decompiler.struct.gen.MethodDescriptor;
 import org.jetbrains.java.decompiler.struct.gen.VarType;
-import org.jetbrains.java.decompiler.util.FastSparseSetFactory.FastSparseSet;
-import org.jetbrains.java.decompiler.util.InterpreterUtil;
+import org.jetbrains.java.decompiler.util.FastIntSet;
+import org.jetbrains.java.decompiler.util.LongHashSet;
+import org.jetbrains.java.decompiler.util.LongIntHashMap;
+import org.jetbrains.java.decompiler.util.LongObjectHashMap;
 import org.jetbrains.java.decompiler.util.SFormsFastMapDirect;
 
 import java.util.*;
@@ -50,7 +52,7 @@ public class StackVarsProcessor {
       ssau.splitVariables(root, mt);
 
       if (first) {
-        setEffectivelyFinalVars(root, ssau, new HashMap<>());
+        setEffectivelyFinalVars(root, ssau, new LongObjectHashMap<>());
       }
 
       if (iterateStatements(root, ssau)) {
@@ -103,21 +105,20 @@ public class StackVarsProcessor {
   }
 
   private boolean iterateStatements(RootStatement root, SSAUConstructorSparseEx ssa) {
-    FlattenStatementsHelper flatthelper = new FlattenStatementsHelper();
-    DirectGraph dgraph = flatthelper.buildDirectGraph(root);
+    DirectGraph dgraph = root.getDirectGraph();
 
     boolean res = false;
 
     Set<DirectNode> setVisited = new HashSet<>();
     LinkedList<DirectNode> stack = new LinkedList<>();
-    LinkedList<Map<VarVersionPair, Exprent>> stackMaps = new LinkedList<>();
+    LinkedList<LongObjectHashMap<Exprent>> stackMaps = new LinkedList<>();
 
     stack.add(dgraph.first);
-    stackMaps.add(new HashMap<>());
+    stackMaps.add(new LongObjectHashMap<>());
 
     while (!stack.isEmpty()) {
       DirectNode nd = stack.removeFirst();
-      Map<VarVersionPair, Exprent> mapVarValues = stackMaps.removeFirst();
+      LongObjectHashMap<Exprent> mapVarValues = stackMaps.removeFirst();
 
       if (setVisited.contains(nd)) {
         continue;
@@ -166,7 +167,7 @@ public class StackVarsProcessor {
 
       for (DirectNode ndx : nd.succs) {
         stack.add(ndx);
-        stackMaps.add(new HashMap<>(mapVarValues));
+        stackMaps.add(new LongObjectHashMap<>(mapVarValues));
       }
 
       // make sure the 3 special exprent lists in a loop (init, condition, increment) are not empty
@@ -174,6 +175,7 @@ public class StackVarsProcessor {
       if (nd.exprents.isEmpty() &&
           (nd.type == DirectNode.NODE_INIT || nd.type == DirectNode.NODE_CONDITION || nd.type == DirectNode.NODE_INCREMENT)) {
         nd.exprents.add(null);
+        Statement.structureChanged();
 
         if (nd.statement.type == Statement.TYPE_DO) {
           DoStatement loop = (DoStatement)nd.statement;
@@ -190,11 +192,11 @@ public class StackVarsProcessor {
     return res;
   }
 
-  private static Exprent isReplaceableVar(Exprent exprent, Map<VarVersionPair, Exprent> mapVarValues) {
+  private static Exprent isReplaceableVar(Exprent exprent, LongObjectHashMap<Exprent> mapVarValues) {
     Exprent dest = null;
     if (exprent.type == Exprent.EXPRENT_VAR) {
       VarExprent var = (VarExprent)exprent;
-      dest = mapVarValues.get(new VarVersionPair(var));
+      dest = mapVarValues.get(var.getVarVersionKey());
     }
     return dest;
   }
@@ -204,13 +206,13 @@ public class StackVarsProcessor {
 
     // live sets
     SFormsFastMapDirect livemap = ssau.getLiveVarVersionsMap(new VarVersionPair(var));
-    Set<VarVersionPair> setVars = getAllVersions(dest);
+    LongHashSet setVars = getAllVersions(dest);
 
-    for (VarVersionPair varpaar : setVars) {
-      VarVersionNode node = ssau.getSsuversions().nodes.getWithKey(varpaar);
+    for (int slot = setVars.nextSlot(0); slot >= 0; slot = setVars.nextSlot(slot + 1)) {
+      VarVersionNode node = ssau.getSsuversions().nodes.getWithKey(VarVersionPair.unpack(setVars.keyAt(slot)));
 
-      for (Iterator<Entry<Integer, FastSparseSet<Integer>>> itent = node.live.entryList().iterator(); itent.hasNext(); ) {
-        Entry<Integer, FastSparseSet<Integer>> ent = itent.next();
+      for (Iterator<Entry<Integer, FastIntSet>> itent = node.live.entryList().iterator(); itent.hasNext(); ) {
+        Entry<Integer, FastIntSet> ent = itent.next();
 
         Integer key = ent.getKey();
 
@@ -218,7 +220,7 @@ public class StackVarsProcessor {
           itent.remove();
         }
         else {
-          FastSparseSet<Integer> set = ent.getValue();
+          FastIntSet set = ent.getValue();
 
           set.complement(livemap.get(key));
           if (set.isEmpty()) {
@@ -232,7 +234,7 @@ public class StackVarsProcessor {
   private int[] iterateExprent(List<Exprent> lstExprents,
                                int index,
                                Exprent next,
-                               Map<VarVersionPair, Exprent> mapVarValues,
+                               LongObjectHashMap<Exprent> mapVarValues,
                                SSAUConstructorSparseEx ssau) {
     Exprent exprent = lstExprents.get(index);
 
@@ -320,14 +322,14 @@ public class StackVarsProcessor {
       return new int[]{-1, changed};
     }
 
-    Map<Integer, Set<VarVersionPair>> mapVars = getAllVarVersions(leftpaar, right, ssau);
+    Map<Integer, FastIntSet> mapVars = getAllVarVersions(leftpaar, right, ssau);
 
     boolean isSelfReference = mapVars.containsKey(leftpaar.var);
     if (isSelfReference && notdom) {
       return new int[]{-1, changed};
     }
 
-    Set<VarVersionPair> setNextVars = next == null ? null : getAllVersions(next);
+    LongHashSet setNextVars = next == null ? null : getAllVersions(next);
 
     // FIXME: fix the entire method!
     if (right.type != Exprent.EXPRENT_CONST &&
@@ -335,7 +337,7 @@ public class StackVarsProcessor {
         setNextVars != null &&
         mapVars.containsKey(leftpaar.var)) {
       for (VarVersionNode usedvar : usedVers) {
-        if (!setNextVars.contains(new VarVersionPair(usedvar.var, usedvar.version))) {
+        if (!setNextVars.contains(VarVersionPair.pack(usedvar.var, usedvar.version))) {
           return new int[]{-1, changed};
         }
       }
@@ -346,15 +348,15 @@ public class StackVarsProcessor {
     boolean vernotreplaced = false;
     boolean verreplaced = false;
 
-    Set<VarVersionPair> setTempUsedVers = new HashSet<>();
+    LongHashSet setTempUsedVers = new LongHashSet();
 
     for (VarVersionNode usedvar : usedVers) {
       VarVersionPair usedver = new VarVersionPair(usedvar.var, usedvar.version);
       if (isVersionToBeReplaced(usedver, mapVars, ssau, leftpaar) &&
           (right.type == Exprent.EXPRENT_CONST || right.type == Exprent.EXPRENT_VAR || right.type == Exprent.EXPRENT_FIELD
-           || setNextVars == null || setNextVars.contains(usedver))) {
+           || setNextVars == null || setNextVars.contains(usedver.toLong()))) {
 
-        setTempUsedVers.add(usedver);
+        setTempUsedVers.add(usedver.toLong());
         verreplaced = true;
       }
       else {
@@ -366,13 +368,13 @@ public class StackVarsProcessor {
       return new int[]{-1, changed};
     }
     else {
-      for (VarVersionPair usedver : setTempUsedVers) {
+      for (int slot = setTempUsedVers.nextSlot(0); slot >= 0; slot = setTempUsedVers.nextSlot(slot + 1)) {
         Exprent copy = right.copy();
         if (right.type == Exprent.EXPRENT_FIELD && ssau.getMapFieldVars().containsKey(right.id)) {
           ssau.getMapFieldVars().put(copy.id, ssau.getMapFieldVars().get(right.id));
         }
 
-        mapVarValues.put(usedver, copy);
+        mapVarValues.put(setTempUsedVers.keyAt(slot), copy);
       }
     }
 
@@ -389,8 +391,8 @@ public class StackVarsProcessor {
     }
   }
 
-  private static Set<VarVersionPair> getAllVersions(Exprent exprent) {
-    Set<VarVersionPair> res = new HashSet<>();
+  private static LongHashSet getAllVersions(Exprent exprent) {
+    LongHashSet res = new LongHashSet();
 
     List<Exprent> listTemp = new ArrayList<>(exprent.getAllExprents(true));
     listTemp.add(exprent);
@@ -398,7 +400,7 @@ public class StackVarsProcessor {
     for (Exprent expr : listTemp) {
       if (expr.type == Exprent.EXPRENT_VAR) {
         VarExprent var = (VarExprent)expr;
-        res.add(new VarVersionPair(var));
+        res.add(var.getVarVersionKey());
       }
     }
 
@@ -408,7 +410,7 @@ public class StackVarsProcessor {
   private static Object[] iterateChildExprent(Exprent exprent,
                                               Exprent parent,
                                               Exprent next,
-                                              Map<VarVersionPair, Exprent> mapVarValues,
+                                              LongObjectHashMap<Exprent> mapVarValues,
                                               SSAUConstructorSparseEx ssau) {
     boolean changed = false;
 
@@ -490,28 +492,28 @@ public class StackVarsProcessor {
       return new Object[]{null, changed, false};
     }
 
-    Map<Integer, Set<VarVersionPair>> mapVars = getAllVarVersions(leftpaar, right, ssau);
+    Map<Integer, FastIntSet> mapVars = getAllVarVersions(leftpaar, right, ssau);
     if (mapVars.containsKey(leftpaar.var) && notdom) {
       return new Object[]{null, changed, false};
     }
 
     mapVars.remove(leftpaar.var);
 
-    Set<VarVersionPair> setAllowedVars = getAllVersions(parent);
+    LongHashSet setAllowedVars = getAllVersions(parent);
     if (next != null) {
       setAllowedVars.addAll(getAllVersions(next));
     }
 
     boolean vernotreplaced = false;
 
-    Set<VarVersionPair> setTempUsedVers = new HashSet<>();
+    LongHashSet setTempUsedVers = new LongHashSet();
 
     for (VarVersionNode usedvar : usedVers) {
       VarVersionPair usedver = new VarVersionPair(usedvar.var, usedvar.version);
       if (isVersionToBeReplaced(usedver, mapVars, ssau, leftpaar) &&
-          (right.type == Exprent.EXPRENT_VAR || setAllowedVars.contains(usedver))) {
+          (right.type == Exprent.EXPRENT_VAR || setAllowedVars.contains(usedver.toLong()))) {
 
-        setTempUsedVers.add(usedver);
+        setTempUsedVers.add(usedver.toLong());
       }
       else {
         vernotreplaced = true;
@@ -519,13 +521,13 @@ public class StackVarsProcessor {
     }
 
     if (!notdom && !vernotreplaced) {
-      for (VarVersionPair usedver : setTempUsedVers) {
+      for (int slot = setTempUsedVers.nextSlot(0); slot >= 0; slot = setTempUsedVers.nextSlot(slot + 1)) {
         Exprent copy = right.copy();
         if (right.type == Exprent.EXPRENT_FIELD && ssau.getMapFieldVars().containsKey(right.id)) {
           ssau.getMapFieldVars().put(copy.id, ssau.getMapFieldVars().get(right.id));
         }
 
-        mapVarValues.put(usedver, copy);
+        mapVarValues.put(setTempUsedVers.keyAt(slot), copy);
       }
 
       // remove assignment
@@ -582,7 +584,7 @@ public class StackVarsProcessor {
   }
 
   private static boolean isVersionToBeReplaced(VarVersionPair usedvar,
-                                               Map<Integer, Set<VarVersionPair>> mapVars,
+                                               Map<Integer, FastIntSet> mapVars,
                                                SSAUConstructorSparseEx ssau,
                                                VarVersionPair leftpaar) {
     VarVersionsGraph ssuversions = ssau.getSsuversions();
@@ -594,20 +596,21 @@ public class StackVarsProcessor {
     }
 
     // compare protected ranges
-    if (!InterpreterUtil.equalObjects(ssau.getMapVersionFirstRange().get(leftpaar),
-                                      ssau.getMapVersionFirstRange().get(usedvar))) {
+    LongIntHashMap mapVersionFirstRange = ssau.getMapVersionFirstRange();
+    if (mapVersionFirstRange.get(leftpaar.toLong(), -1) != mapVersionFirstRange.get(usedvar.toLong(), -1)) {
       return false;
     }
 
-    for (Entry<Integer, Set<VarVersionPair>> ent : mapVars.entrySet()) {
-      FastSparseSet<Integer> liveverset = mapLiveVars.get(ent.getKey());
+    for (Entry<Integer, FastIntSet> ent : mapVars.entrySet()) {
+      FastIntSet liveverset = mapLiveVars.get(ent.getKey());
       if (liveverset == null || liveverset.isEmpty()) {
         return false;
       }
 
       Set<VarVersionNode> domset = new HashSet<>();
-      for (VarVersionPair verpaar : ent.getValue()) {
-        domset.add(ssuversions.nodes.getWithKey(verpaar));
+      FastIntSet verset = ent.getValue();
+      for (int ver = verset.next(0); ver >= 0; ver = verset.next(ver + 1)) {
+        domset.add(ssuversions.nodes.getWithKey(new VarVersionPair(ent.getKey().intValue(), ver)));
       }
 
       boolean isdom = true;
@@ -629,10 +632,10 @@ public class StackVarsProcessor {
     return true;
   }
 
-  private static Map<Integer, Set<VarVersionPair>> getAllVarVersions(VarVersionPair leftvar,
-                                                                     Exprent exprent,
-                                                                     SSAUConstructorSparseEx ssau) {
-    Map<Integer, Set<VarVersionPair>> map = new HashMap<>();
+  private static Map<Integer, FastIntSet> getAllVarVersions(VarVersionPair leftvar,
+                                                            Exprent exprent,
+                                                            SSAUConstructorSparseEx ssau) {
+    Map<Integer, FastIntSet> map = new HashMap<>();
     SFormsFastMapDirect mapLiveVars = ssau.getLiveVarVersionsMap(leftvar);
 
     List<Exprent> lst = exprent.getAllExprents(true);
@@ -643,11 +646,7 @@ public class StackVarsProcessor {
         int varindex = ((VarExprent)expr).getIndex();
         if (leftvar.var != varindex) {
           if (mapLiveVars.containsKey(varindex)) {
-            Set<VarVersionPair> verset = new HashSet<>();
-            for (Integer vers : mapLiveVars.get(varindex)) {
-              verset.add(new VarVersionPair(varindex, vers.intValue()));
-            }
-            map.put(varindex, verset);
+            map.put(varindex, mapLiveVars.get(varindex).getCopy());
           }
           else {
             throw new RuntimeException("inkonsistent live map!");
@@ -661,11 +660,7 @@ public class StackVarsProcessor {
         if (ssau.getMapFieldVars().containsKey(expr.id)) {
           int varindex = ssau.getMapFieldVars().get(expr.id);
           if (mapLiveVars.containsKey(varindex)) {
-            Set<VarVersionPair> verset = new HashSet<>();
-            for (Integer vers : mapLiveVars.get(varindex)) {
-              verset.add(new VarVersionPair(varindex, vers.intValue()));
-            }
-            map.put(varindex, verset);
+            map.put(varindex, mapLiveVars.get(varindex).getCopy());
           }
         }
       }
@@ -674,7 +669,7 @@ public class StackVarsProcessor {
     return map;
   }
 
-  private static void setEffectivelyFinalVars(Statement stat, SSAUConstructorSparseEx ssau, Map<VarVersionPair, VarExprent> varLookupMap) {
+  private static void setEffectivelyFinalVars(Statement stat, SSAUConstructorSparseEx ssau, LongObjectHashMap<VarExprent> varLookupMap) {
     if (stat.getExprents() != null && !stat.getExprents().isEmpty()) {
       for (int i = 0; i < stat.getExprents().size(); ++i) {
         setEffectivelyFinalVars(stat.getExprents().get(i), ssau, i, stat.getExprents(), varLookupMap);
@@ -686,12 +681,12 @@ public class StackVarsProcessor {
     }
   }
 
-  private static void setEffectivelyFinalVars(Exprent exprent, SSAUConstructorSparseEx ssau, int index, List<Exprent> list, Map<VarVersionPair, VarExprent> varLookupMap) {
+  private static void setEffectivelyFinalVars(Exprent exprent, SSAUConstructorSparseEx ssau, int index, List<Exprent> list, LongObjectHashMap<VarExprent> varLookupMap) {
     if (exprent.type == Exprent.EXPRENT_ASSIGNMENT) {
       AssignmentExprent assign = (AssignmentExprent)exprent;
       if (assign.getLeft().type == Exprent.EXPRENT_VAR) {
         VarExprent var = (VarExprent)assign.getLeft();
-        varLookupMap.put(var.getVarVersionPair(), var);
+        varLookupMap.put(var.getVarVersionKey(), var);
       }
     }
     else if (exprent.type == Exprent.EXPRENT_NEW) {
@@ -738,7 +733,7 @@ public class StackVarsProcessor {
                   VarVersionNode next = null;
                   if (vvnode.var >= VarExprent.STACK_BASE) {
                     vvnode = vvnode.preds.iterator().next().source;
-                    VarVersionPair nextVVP = ssau.getVarAssignmentMap().get(new VarVersionPair(vvnode.var, vvnode.version));
+                    VarVersionPair nextVVP = ssau.getVarAssignmentMap().get(VarVersionPair.pack(vvnode.var, vvnode.version));
                     next = ssau.getSsuversions().nodes.getWithKey(nextVVP);
 
                     if (nextVVP != null && nextVVP.var < 0) { // TODO check if field is final?
@@ -766,7 +761,7 @@ public class StackVarsProcessor {
                       if (roots.size() == 1) {
                         vvnode = roots.get(0);
                         vvp = new VarVersionPair(vvnode.var, vvnode.version);
-                        VarVersionPair nextVVP = ssau.getVarAssignmentMap().get(vvp);
+                        VarVersionPair nextVVP = ssau.getVarAssignmentMap().get(vvp.toLong());
                         next = ssau.getSsuversions().nodes.getWithKey(nextVVP);
                         if (nextVVP != null && nextVVP.var < 0) {
                           vvp = nextVVP;
@@ -792,7 +787,7 @@ public class StackVarsProcessor {
                   vvnode = next;
                 }
 
-                VarExprent var = varLookupMap.get(vvp);
+                VarExprent var = varLookupMap.get(vvp.toLong());
                 if (var != null) {
                   var.setEffectivelyFinal(true);
                 }
@@ -60,6 +60,7 @@ public class StatEdge {
   }
 
   public void setType(int type) {
+    Statement.structureChanged();
     this.type = type;
   }
 
@@ -68,6 +69,7 @@ public class StatEdge {
   }
 
   public void setSource(Statement source) {
+    Statement.structureChanged();
     this.source = source;
   }
 
@@ -76,6 +78,7 @@ public class StatEdge {
   }
 
   public void setDestination(Statement destination) {
+    Statement.structureChanged();
     this.destination = destination;
   }
 
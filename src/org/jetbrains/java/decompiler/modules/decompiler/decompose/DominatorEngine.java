@@ -3,112 +3,137 @@ package org.jetbrains.java.decompiler.modules.decompiler.decompose;
 
 import org.jetbrains.java.decompiler.modules.decompiler.StatEdge;
 import org.jetbrains.java.decompiler.modules.decompiler.stats.Statement;
-import org.jetbrains.java.decompiler.util.VBStyleCollection;
+import org.jetbrains.java.decompiler.util.LongIntHashMap;
 
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Immediate dominators of the children of a statement, computed with the iterative algorithm of Cooper, Harvey
+ * and Kennedy. The children are numbered densely in reverse post-order, so that a dominator always has a smaller
+ * index than the nodes it dominates, and all per-node data lives in int arrays indexed by that number.
+ */
 public class DominatorEngine {
 
   private final Statement statement;
 
-  private final VBStyleCollection<Integer, Integer> colOrderedIDoms = new VBStyleCollection<>();
+  // reverse post-order index -> statement
+  private Statement[] nodes;
 
+  // statement id -> reverse post-order index
+  private LongIntHashMap indices;
+
+  // reverse post-order index -> index of the immediate dominator, the first node is its own idom
+  private int[] idoms;
 
   public DominatorEngine(Statement statement) {
     this.statement = statement;
   }
 
   public void initialize() {
+    orderStatements();
     calcIDoms();
   }
 
   private void orderStatements() {
+    List<Statement> lstStats = statement.getReversePostOrderList();
 
-    for (Statement stat : statement.getReversePostOrderList()) {
-      colOrderedIDoms.addWithKey(null, stat.id);
+    nodes = lstStats.toArray(new Statement[0]);
+    indices = new LongIntHashMap(nodes.length);
+    for (int i = 0; i < nodes.length; i++) {
+      indices.put(nodes[i].id, i);
     }
   }
 
-  private static Integer getCommonIDom(Integer key1, Integer key2, VBStyleCollection<Integer, Integer> orderedIDoms) {
-
-    if (key1 == null) {
-      return key2;
-    }
-    else if (key2 == null) {
-      return key1;
-    }
-
-    int index1 = orderedIDoms.getIndexByKey(key1);
-    int index2 = orderedIDoms.getIndexByKey(key2);
-
-    while (index1 != index2) {
-      if (index1 > index2) {
-        key1 = orderedIDoms.getWithKey(key1);
-        index1 = orderedIDoms.getIndexByKey(key1);
-      }
-      else {
-        key2 = orderedIDoms.getWithKey(key2);
-        index2 = orderedIDoms.getIndexByKey(key2);
+  private void calcIDoms() {
+    int count = nodes.length;
+
+    // predecessors among the ordered statements
+    int[][] preds = new int[count][];
+    for (int i = 0; i < count; i++) {
+      List<StatEdge> edges = nodes[i].getAllPredecessorEdges();
+      int[] lst = new int[edges.size()];
+      int size = 0;
+      for (StatEdge edge : edges) {
+        int index = indices.get(edge.getSource().id, -1);
+        if (index >= 0) {
+          lst[size++] = index;
+        }
       }
+      preds[i] = size == lst.length ? lst : Arrays.copyOf(lst, size);
     }
 
-    return key1;
-  }
-
-  private void calcIDoms() {
-
-    orderStatements();
-
-    colOrderedIDoms.putWithKey(statement.getFirst().id, statement.getFirst().id);
-
-    // exclude first statement
-    List<Integer> lstIds = colOrderedIDoms.getLstKeys().subList(1, colOrderedIDoms.getLstKeys().size());
-
-    while (true) {
+    idoms = new int[count];
+    Arrays.fill(idoms, -1);
+    idoms[0] = 0;
 
-      boolean changed = false;
+    boolean changed = true;
+    while (changed) {
+      changed = false;
 
-      for (Integer id : lstIds) {
+      // exclude first statement
+      for (int i = 1; i < count; i++) {
+        int idom = -1;
 
-        Statement stat = statement.getStats().getWithKey(id);
-        Integer idom = null;
-
-        for (StatEdge edge : stat.getAllPredecessorEdges()) {
-          if (colOrderedIDoms.getWithKey(edge.getSource().id) != null) {
-            idom = getCommonIDom(idom, edge.getSource().id, colOrderedIDoms);
+        for (int pred : preds[i]) {
+          if (idoms[pred] >= 0) {
+            idom = idom < 0 ? pred : getCommonIDom(idom, pred, idoms);
           }
         }
 
-        Integer oldidom = colOrderedIDoms.putWithKey(idom, id);
-        if (!idom.equals(oldidom)) {
+        if (idoms[i] != idom) {
+          idoms[i] = idom;
           changed = true;
         }
       }
+    }
+  }
 
-      if (!changed) {
-        break;
+  private static int getCommonIDom(int index1, int index2, int[] idoms) {
+    while (index1 != index2) {
+      while (index1 > index2) {
+        index1 = idoms[index1];
+      }
+      while (index2 > index1) {
+        index2 = idoms[index2];
       }
     }
+    return index1;
   }
 
-  public VBStyleCollection<Integer, Integer> getOrderedIDoms() {
-    return colOrderedIDoms;
+  public int getNodeCount() {
+    return nodes.length;
   }
 
-  public boolean isDominator(Integer node, Integer dom) {
+  /**
+   * @return the statement with the given reverse post-order index
+   */
+  public Statement getNode(int index) {
+    return nodes[index];
+  }
 
-    while (!node.equals(dom)) {
+  /**
+   * @return the reverse post-order index of the immediate dominator of the node with the given index
+   */
+  public int getIDomIndex(int index) {
+    return idoms[index];
+  }
 
-      Integer idom = colOrderedIDoms.getWithKey(node);
+  public boolean isDominator(int node, int dom) {
+    if (node == dom) {
+      return true;
+    }
 
-      if (idom.equals(node)) {
-        return false; // root node
-      }
-      else {
-        node = idom;
-      }
+    int index = indices.get(node, -1);
+    int domIndex = indices.get(dom, -1);
+    if (index < 0 || domIndex < 0) {
+      return false;
     }
 
-    return true;
+    // dominators precede the nodes they dominate in reverse post-order
+    while (index > domIndex) {
+      index = idoms[index];
+    }
+    return index == domIndex;
   }
 }
@@ -3,36 +3,43 @@ package org.jetbrains.java.decompiler.modules.decompiler.decompose;
 
 import org.jetbrains.java.decompiler.modules.decompiler.StatEdge;
 import org.jetbrains.java.decompiler.modules.decompiler.stats.Statement;
-import org.jetbrains.java.decompiler.util.FastFixedSetFactory;
-import org.jetbrains.java.decompiler.util.FastFixedSetFactory.FastFixedSet;
-import org.jetbrains.java.decompiler.util.InterpreterUtil;
+import org.jetbrains.java.decompiler.util.BitMatrix;
+import org.jetbrains.java.decompiler.util.LongIntHashMap;
 
 import java.util.*;
-import java.util.Map.Entry;
 
+/**
+ * Extended postdominators of the children of a statement. The children are numbered densely in the order of their
+ * ids, the reachability sets are word vectors over these numbers and the result is kept in a {@link BitMatrix}
+ * whose row {@code i} holds the extended postdominators of the child {@code i}.
+ */
 public class FastExtendedPostdominanceHelper {
 
-  private List<Statement> lstReversePostOrderList;
+  private Statement statement;
 
-  private HashMap<Integer, FastFixedSet<Integer>> mapSupportPoints = new LinkedHashMap<>();
+  // index -> child statement, sorted by id
+  private Statement[] nodes;
 
-  private final HashMap<Integer, FastFixedSet<Integer>> mapExtPostdominators = new LinkedHashMap<>();
+  // statement id -> index
+  private LongIntHashMap indices;
 
-  private Statement statement;
+  // indices of the children in reverse post-order
+  private int[] reversePostOrder;
+
+  // index -> reachability set of a support point, null for other nodes
+  private long[][] supportPoints;
 
-  private FastFixedSetFactory<Integer> factory;
+  private BitMatrix extPostdominators;
+
+  // state of the current reachability pass: reachability sets of the visited nodes, null once no longer needed
+  private long[][] reachabilitySets;
+  private boolean[] visited;
 
   public HashMap<Integer, Set<Integer>> getExtendedPostdominators(Statement statement) {
 
     this.statement = statement;
 
-    HashSet<Integer> set = new LinkedHashSet<>();
-    for (Statement st : statement.getStats()) {
-      set.add(st.id);
-    }
-    this.factory = new FastFixedSetFactory<>(set);
-
-    lstReversePostOrderList = statement.getReversePostOrderList();
+    orderStatements();
 
     //		try {
     //			DotExporter.toDotFile(statement, new File("c:\\Temp\\stat1.dot"));
@@ -51,163 +58,199 @@ public class FastExtendedPostdominanceHelper {
 
     filterOnDominance(filter);
 
-    Set<Entry<Integer, FastFixedSet<Integer>>> entries = mapExtPostdominators.entrySet();
-    HashMap<Integer, Set<Integer>> res = new HashMap<>(entries.size());
-    for (Entry<Integer, FastFixedSet<Integer>> entry : entries) {
-      List<Integer> lst = new ArrayList<>(entry.getValue().toPlainSet());
-      Collections.sort(lst); // Order Matters!
-      res.put(entry.getKey(), new LinkedHashSet<>(lst));
+    int count = 0;
+    for (int head = 0; head < nodes.length; head++) {
+      if (!extPostdominators.isRowEmpty(head)) {
+        count++;
+      }
+    }
+
+    // the heads are put in the order of the children, as later merges of the sets depend on the map order
+    HashMap<Integer, Set<Integer>> res = new HashMap<>(count);
+    for (Statement stat : statement.getStats()) {
+      int head = indexOf(stat);
+      long[] row = extPostdominators.getRow(head);
+      if (!BitMatrix.isEmpty(row)) {
+        // Order Matters! Indices follow the ids, so the set is sorted
+        Set<Integer> set = new LinkedHashSet<>();
+        for (int i = BitMatrix.nextSetBit(row, 0); i >= 0; i = BitMatrix.nextSetBit(row, i + 1)) {
+          set.add(nodes[i].id);
+        }
+        res.put(stat.id, set);
+      }
     }
 
     return res;
   }
 
+  private void orderStatements() {
+    List<Statement> lstStats = new ArrayList<>(statement.getStats());
+    lstStats.sort(Comparator.comparingInt(stat -> stat.id));
+
+    nodes = lstStats.toArray(new Statement[0]);
+    indices = new LongIntHashMap(nodes.length);
+    for (int i = 0; i < nodes.length; i++) {
+      indices.put(nodes[i].id, i);
+    }
+
+    List<Statement> lstReversePostOrderList = statement.getReversePostOrderList();
+    reversePostOrder = new int[lstReversePostOrderList.size()];
+    for (int i = 0; i < reversePostOrder.length; i++) {
+      reversePostOrder[i] = indexOf(lstReversePostOrderList.get(i));
+    }
+
+    supportPoints = new long[nodes.length][];
+    extPostdominators = new BitMatrix(nodes.length);
+  }
+
+  // returns -1 for statements outside of the processed one
+  private int indexOf(Statement stat) {
+    return indices.get(stat.id, -1);
+  }
 
   private void filterOnDominance(DominatorTreeExceptionFilter filter) {
 
     DominatorEngine engine = filter.getDomEngine();
-    LinkedList<Statement> stack = new LinkedList<>();
-    LinkedList<FastFixedSet<Integer>> stackPath = new LinkedList<>();
-    Set<Statement> setVisited = new HashSet<>();
 
-    for (Integer head : new HashSet<>(mapExtPostdominators.keySet())) {
+    // every node is queued at most once per head
+    int[] queue = new int[nodes.length];
+    long[][] queuePaths = new long[nodes.length][];
+    boolean[] setVisited = new boolean[nodes.length];
 
-      FastFixedSet<Integer> setPostdoms = mapExtPostdominators.get(head);
+    for (int head = 0; head < nodes.length; head++) {
 
-      stack.clear();
-      stackPath.clear();
-
-      stack.add(statement.getStats().getWithKey(head));
-      stackPath.add(factory.spawnEmptySet());
+      long[] setPostdoms = extPostdominators.getRow(head);
+      if (BitMatrix.isEmpty(setPostdoms)) {
+        continue;
+      }
 
-      setVisited.clear();
+      int first = 0, last = 0;
+      queue[last] = head;
+      queuePaths[last++] = extPostdominators.newVector();
 
-      setVisited.add(stack.getFirst());
+      Arrays.fill(setVisited, false);
+      setVisited[head] = true;
 
-      while (!stack.isEmpty()) {
+      while (first < last) {
 
-        Statement stat = stack.removeFirst();
-        FastFixedSet<Integer> path = stackPath.removeFirst();
+        int index = queue[first];
+        long[] path = queuePaths[first];
+        queuePaths[first++] = null;
 
-        if (setPostdoms.contains(stat.id)) {
-          path.add(stat.id);
+        if (BitMatrix.get(setPostdoms, index)) {
+          BitMatrix.set(path, index);
         }
 
-        if (path.contains(setPostdoms)) {
+        if (BitMatrix.containsAll(path, setPostdoms)) {
           continue;
         }
 
-        if(!engine.isDominator(stat.id, head)) {
-          setPostdoms.complement(path);
+        Statement stat = nodes[index];
+
+        if (!engine.isDominator(stat.id, nodes[head].id)) {
+          BitMatrix.andNot(setPostdoms, path);
           continue;
         }
 
         for (StatEdge edge : stat.getSuccessorEdges(StatEdge.TYPE_REGULAR)) {
 
-          Statement edge_destination = edge.getDestination();
+          int destination = indexOf(edge.getDestination());
 
-          if(!setVisited.contains(edge_destination)) {
+          if (destination >= 0 && !setVisited[destination]) {
 
-            stack.add(edge_destination);
-            stackPath.add(path.getCopy());
+            queue[last] = destination;
+            queuePaths[last++] = path.clone();
 
-            setVisited.add(edge_destination);
+            setVisited[destination] = true;
           }
         }
       }
-
-      if (setPostdoms.isEmpty()) {
-        mapExtPostdominators.remove(head);
-      }
     }
   }
 
   private void filterOnExceptionRanges(DominatorTreeExceptionFilter filter) {
-    for (Integer head : new HashSet<>(mapExtPostdominators.keySet())) {
-      FastFixedSet<Integer> set = mapExtPostdominators.get(head);
-      for (Iterator<Integer> it = set.iterator(); it.hasNext(); ) {
-        if (!filter.acceptStatementPair(head, it.next())) {
-          it.remove();
+    for (int head = 0; head < nodes.length; head++) {
+      long[] set = extPostdominators.getRow(head);
+      for (int i = BitMatrix.nextSetBit(set, 0); i >= 0; i = BitMatrix.nextSetBit(set, i + 1)) {
+        if (!filter.acceptStatementPair(nodes[head].id, nodes[i].id)) {
+          BitMatrix.clear(set, i);
         }
       }
-      if (set.isEmpty()) {
-        mapExtPostdominators.remove(head);
-      }
     }
   }
 
   private void removeErroneousNodes() {
-    mapSupportPoints = new HashMap<>();
+    supportPoints = new long[nodes.length][];
 
     calcReachabilitySuppPoints(StatEdge.TYPE_REGULAR);
 
-    iterateReachability((node, mapSets) -> {
-      Integer nodeid = node.id;
+    long[] setIntersection = extPostdominators.newVector();
+    long[] setDifference = extPostdominators.newVector();
+    List<long[]> lstPredSets = new ArrayList<>();
 
-      FastFixedSet<Integer> setReachability = mapSets.get(nodeid);
-      List<FastFixedSet<Integer>> lstPredSets = new ArrayList<>();
+    iterateReachability((node, index) -> {
+      long[] setReachability = reachabilitySets[index];
 
+      lstPredSets.clear();
       for (StatEdge prededge : node.getPredecessorEdges(StatEdge.TYPE_REGULAR)) {
-        FastFixedSet<Integer> setPred = mapSets.get(prededge.getSource().id);
-        if (setPred == null) {
-          setPred = mapSupportPoints.get(prededge.getSource().id);
-        }
-
         // setPred cannot be empty as it is a reachability set
-        lstPredSets.add(setPred);
+        long[] setPred = getReachabilitySet(prededge.getSource());
+        if (setPred != null) {
+          lstPredSets.add(setPred);
+        }
       }
 
-      for (Integer id : setReachability) {
-
-        FastFixedSet<Integer> setReachabilityCopy = setReachability.getCopy();
+      for (int id = BitMatrix.nextSetBit(setReachability, 0); id >= 0; id = BitMatrix.nextSetBit(setReachability, id + 1)) {
 
-        FastFixedSet<Integer> setIntersection = factory.spawnEmptySet();
         boolean isIntersectionInitialized = false;
 
-        for (FastFixedSet<Integer> predset : lstPredSets) {
-          if (predset.contains(id)) {
+        for (long[] predset : lstPredSets) {
+          if (BitMatrix.get(predset, id)) {
             if (!isIntersectionInitialized) {
-              setIntersection.union(predset);
+              System.arraycopy(predset, 0, setIntersection, 0, predset.length);
               isIntersectionInitialized = true;
             }
             else {
-              setIntersection.intersection(predset);
+              BitMatrix.and(setIntersection, predset);
             }
           }
         }
 
-        if (nodeid != id.intValue()) {
-          setIntersection.add(nodeid);
+        if (!isIntersectionInitialized) {
+          Arrays.fill(setIntersection, 0);
+        }
+
+        if (index != id) {
+          BitMatrix.set(setIntersection, index);
         }
         else {
-          setIntersection.remove(nodeid);
+          BitMatrix.clear(setIntersection, index);
         }
 
-        setReachabilityCopy.complement(setIntersection);
+        System.arraycopy(setReachability, 0, setDifference, 0, setReachability.length);
+        BitMatrix.andNot(setDifference, setIntersection);
 
-        mapExtPostdominators.get(id).complement(setReachabilityCopy);
+        BitMatrix.andNot(extPostdominators.getRow(id), setDifference);
       }
 
       return false;
     }, StatEdge.TYPE_REGULAR);
 
     // exception handlers cannot be postdominator nodes
-    // TODO: replace with a standard set?
-    FastFixedSet<Integer> setHandlers = factory.spawnEmptySet();
+    long[] setHandlers = extPostdominators.newVector();
     boolean handlerfound = false;
 
-    for (Statement stat : statement.getStats()) {
+    for (int i = 0; i < nodes.length; i++) {
+      Statement stat = nodes[i];
       if (stat.getPredecessorEdges(Statement.STATEDGE_DIRECT_ALL).isEmpty() &&
           !stat.getPredecessorEdges(StatEdge.TYPE_EXCEPTION).isEmpty()) { // exception handler
-        setHandlers.add(stat.id);
+        BitMatrix.set(setHandlers, i);
         handlerfound = true;
       }
     }
 
     if (handlerfound) {
-      for (FastFixedSet<Integer> set : mapExtPostdominators.values()) {
-        set.complement(setHandlers);
-      }
+      extPostdominators.andNotAll(setHandlers);
     }
   }
 
@@ -216,16 +259,11 @@ public class FastExtendedPostdominanceHelper {
 
     calcReachabilitySuppPoints(edgetype);
 
-    for (Statement stat : statement.getStats()) {
-      mapExtPostdominators.put(stat.id, factory.spawnEmptySet());
-    }
-
-    iterateReachability((node, mapSets) -> {
-      Integer nodeid = node.id;
-      FastFixedSet<Integer> setReachability = mapSets.get(nodeid);
+    iterateReachability((node, index) -> {
+      long[] setReachability = reachabilitySets[index];
 
-      for (Integer id : setReachability) {
-        mapExtPostdominators.get(id).add(nodeid);
+      for (int id = BitMatrix.nextSetBit(setReachability, 0); id >= 0; id = BitMatrix.nextSetBit(setReachability, id + 1)) {
+        extPostdominators.set(id, index);
       }
 
       return false;
@@ -233,15 +271,16 @@ public class FastExtendedPostdominanceHelper {
   }
 
   private void calcReachabilitySuppPoints(final int edgetype) {
-    iterateReachability((node, mapSets) -> {
+    iterateReachability((node, index) -> {
       // consider to be a support point
       for (StatEdge sucedge : node.getAllSuccessorEdges()) {
         if ((sucedge.getType() & edgetype) != 0) {
-          if (mapSets.containsKey(sucedge.getDestination().id)) {
-            FastFixedSet<Integer> setReachability = mapSets.get(node.id);
+          int destination = indexOf(sucedge.getDestination());
+          if (destination >= 0 && visited[destination]) {
+            long[] setReachability = reachabilitySets[index];
 
-            if (!InterpreterUtil.equalObjects(setReachability, mapSupportPoints.get(node.id))) {
-              mapSupportPoints.put(node.id, setReachability);
+            if (!Arrays.equals(setReachability, supportPoints[index])) {
+              supportPoints[index] = setReachability;
               return true;
             }
           }
@@ -252,50 +291,59 @@ public class FastExtendedPostdominanceHelper {
     }, edgetype);
   }
 
+  // the reachability set of a node in the current pass, falling back to the one of its support point
+  private long[] getReachabilitySet(Statement stat) {
+    int index = indexOf(stat);
+    if (index < 0) {
+      return null;
+    }
+    long[] set = reachabilitySets[index];
+    return set != null ? set : supportPoints[index];
+  }
+
   private void iterateReachability(IReachabilityAction action, int edgetype) {
-    HashMap<Integer, FastFixedSet<Integer>> mapSets = new HashMap<>();
+    reachabilitySets = new long[nodes.length][];
+    visited = new boolean[nodes.length];
 
     while (true) {
       boolean iterate = false;
 
-      mapSets.clear();
+      Arrays.fill(reachabilitySets, null);
+      Arrays.fill(visited, false);
 
-      for (Statement stat : lstReversePostOrderList) {
+      for (int index : reversePostOrder) {
+        Statement stat = nodes[index];
 
-        FastFixedSet<Integer> set = factory.spawnEmptySet();
-        set.add(stat.id);
+        long[] set = extPostdominators.newVector();
+        BitMatrix.set(set, index);
 
         for (StatEdge prededge : stat.getAllPredecessorEdges()) {
           if ((prededge.getType() & edgetype) != 0) {
-            Statement pred = prededge.getSource();
-
-            FastFixedSet<Integer> setPred = mapSets.get(pred.id);
-            if (setPred == null) {
-              setPred = mapSupportPoints.get(pred.id);
-            }
-
+            long[] setPred = getReachabilitySet(prededge.getSource());
             if (setPred != null) {
-              set.union(setPred);
+              BitMatrix.or(set, setPred);
             }
           }
         }
 
-        mapSets.put(stat.id, set);
+        reachabilitySets[index] = set;
+        visited[index] = true;
 
         if (action != null) {
-          iterate |= action.action(stat, mapSets);
+          iterate |= action.action(stat, index);
         }
 
         // remove reachability information of fully processed nodes (saves memory)
         for (StatEdge prededge : stat.getAllPredecessorEdges()) {
           if ((prededge.getType() & edgetype) != 0) {
-            Statement pred = prededge.getSource();
+            int pred = indexOf(prededge.getSource());
 
-            if (mapSets.containsKey(pred.id)) {
+            if (pred >= 0 && visited[pred]) {
               boolean remstat = true;
-              for (StatEdge sucedge : pred.getAllSuccessorEdges()) {
+              for (StatEdge sucedge : prededge.getSource().getAllSuccessorEdges()) {
                 if ((sucedge.getType() & edgetype) != 0) {
-                  if (!mapSets.containsKey(sucedge.getDestination().id)) {
+                  int destination = indexOf(sucedge.getDestination());
+                  if (destination < 0 || !visited[destination]) {
                     remstat = false;
                     break;
                   }
@@ -303,7 +351,7 @@ public class FastExtendedPostdominanceHelper {
               }
 
               if (remstat) {
-                mapSets.put(pred.id, null);
+                reachabilitySets[pred] = null;
               }
             }
           }
@@ -314,10 +362,13 @@ public class FastExtendedPostdominanceHelper {
         break;
       }
     }
+
+    reachabilitySets = null;
+    visited = null;
   }
 
 
   private interface IReachabilityAction {
-    boolean action(Statement node, HashMap<Integer, FastFixedSet<Integer>> mapSets);
+    boolean action(Statement node, int index);
   }
 }
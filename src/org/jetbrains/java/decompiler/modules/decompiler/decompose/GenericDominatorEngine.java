@@ -1,18 +1,23 @@
 // Copyright 2000-2017 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.jetbrains.java.decompiler.modules.decompiler.decompose;
 
-import org.jetbrains.java.decompiler.util.VBStyleCollection;
-
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
+/**
+ * Immediate dominators of a graph with possibly several roots, computed like in {@link DominatorEngine} over
+ * nodes numbered in reverse post-order. Roots and merging points of two dominator trees are their own idoms.
+ */
 public class GenericDominatorEngine {
 
   private final IGraph graph;
 
-  private final VBStyleCollection<IGraphNode, IGraphNode> colOrderedIDoms = new VBStyleCollection<>();
+  // reverse post-order index -> node
+  private IGraphNode[] nodes;
+
+  private Map<IGraphNode, Integer> indices;
 
-  private Set<? extends IGraphNode> setRoots;
+  // reverse post-order index -> index of the immediate dominator
+  private int[] idoms;
 
   public GenericDominatorEngine(IGraph graph) {
     this.graph = graph;
@@ -23,85 +28,96 @@ public class GenericDominatorEngine {
   }
 
   private void orderNodes() {
+    List<? extends IGraphNode> lstNodes = graph.getReversePostOrderList();
 
-    setRoots = graph.getRoots();
-
-    for (IGraphNode node : graph.getReversePostOrderList()) {
-      colOrderedIDoms.addWithKey(null, node);
+    nodes = lstNodes.toArray(new IGraphNode[0]);
+    indices = new HashMap<>(nodes.length * 2);
+    for (int i = 0; i < nodes.length; i++) {
+      indices.put(nodes[i], i);
     }
   }
 
-  private static IGraphNode getCommonIDom(IGraphNode node1, IGraphNode node2, VBStyleCollection<IGraphNode, IGraphNode> orderedIDoms) {
-
-    IGraphNode nodeOld;
-
-    if (node1 == null) {
-      return node2;
-    }
-    else if (node2 == null) {
-      return node1;
-    }
-
-    int index1 = orderedIDoms.getIndexByKey(node1);
-    int index2 = orderedIDoms.getIndexByKey(node2);
-
+  // returns -1 if there is no common idom, i.e. the nodes belong to different trees
+  private static int getCommonIDom(int index1, int index2, int[] idoms) {
     while (index1 != index2) {
       if (index1 > index2) {
-        nodeOld = node1;
-        node1 = orderedIDoms.getWithKey(node1);
+        int old = index1;
+        index1 = idoms[index1];
 
-        if (nodeOld == node1) { // no idom - root or merging point
-          return null;
+        if (old == index1) { // no idom - root or merging point
+          return -1;
         }
-
-        index1 = orderedIDoms.getIndexByKey(node1);
       }
       else {
-        nodeOld = node2;
-        node2 = orderedIDoms.getWithKey(node2);
+        int old = index2;
+        index2 = idoms[index2];
 
-        if (nodeOld == node2) { // no idom - root or merging point
-          return null;
+        if (old == index2) { // no idom - root or merging point
+          return -1;
         }
-
-        index2 = orderedIDoms.getIndexByKey(node2);
       }
     }
 
-    return node1;
+    return index1;
   }
 
   private void calcIDoms() {
 
     orderNodes();
 
-    List<IGraphNode> lstNodes = colOrderedIDoms.getLstKeys();
+    int count = nodes.length;
+
+    Set<? extends IGraphNode> setRoots = graph.getRoots();
+    boolean[] roots = new boolean[count];
+    int[][] preds = new int[count][];
+    for (int i = 0; i < count; i++) {
+      roots[i] = setRoots.contains(nodes[i]);
+
+      List<? extends IGraphNode> lst = nodes[i].getPredecessors();
+      int[] indexes = new int[lst.size()];
+      int size = 0;
+      for (IGraphNode pred : lst) {
+        Integer index = indices.get(pred);
+        if (index != null) {
+          indexes[size++] = index;
+        }
+      }
+      preds[i] = size == indexes.length ? indexes : Arrays.copyOf(indexes, size);
+    }
+
+    idoms = new int[count];
+    Arrays.fill(idoms, -1);
 
     while (true) {
 
       boolean changed = false;
 
-      for (IGraphNode node : lstNodes) {
+      for (int i = 0; i < count; i++) {
 
-        IGraphNode idom = null;
+        int idom = -1;
 
-        if (!setRoots.contains(node)) {
-          for (IGraphNode pred : node.getPredecessors()) {
-            if (colOrderedIDoms.getWithKey(pred) != null) {
-              idom = getCommonIDom(idom, pred, colOrderedIDoms);
-              if (idom == null) {
-                break; // no idom found: merging point of two trees
+        if (!roots[i]) {
+          for (int pred : preds[i]) {
+            if (idoms[pred] >= 0) {
+              if (idom < 0) {
+                idom = pred;
+              }
+              else {
+                idom = getCommonIDom(idom, pred, idoms);
+                if (idom < 0) {
+                  break; // no idom found: merging point of two trees
+                }
               }
             }
           }
         }
 
-        if (idom == null) {
-          idom = node;
+        if (idom < 0) {
+          idom = i;
         }
 
-        IGraphNode oldidom = colOrderedIDoms.putWithKey(idom, node);
-        if (!idom.equals(oldidom)) { // oldidom is null iff the node is touched for the first time
+        if (idoms[i] != idom) { // idoms[i] is -1 iff the node is touched for the first time
+          idoms[i] = idom;
           changed = true;
         }
       }
@@ -113,19 +129,28 @@ public class GenericDominatorEngine {
   }
 
   public boolean isDominator(IGraphNode node, IGraphNode dom) {
+    if (node.equals(dom)) {
+      return true;
+    }
+
+    Integer index = indices.get(node);
+    Integer domIndex = indices.get(dom);
+    if (index == null) {
+      throw new RuntimeException("Inconsistent idom sequence discovered!");
+    }
 
-    while (!node.equals(dom)) {
+    int current = index;
+    int target = domIndex == null ? -1 : domIndex;
 
-      IGraphNode idom = colOrderedIDoms.getWithKey(node);
+    while (current != target) {
 
-      if (idom == node) {
+      int idom = idoms[current];
+
+      if (idom == current) {
         return false; // root node or merging point
       }
-      else if (idom == null) {
-        throw new RuntimeException("Inconsistent idom sequence discovered!");
-      }
       else {
-        node = idom;
+        current = idom;
       }
     }
 
@@ -228,6 +228,7 @@ public final class ExceptionDeobfuscator {
 
     List<ExceptionRangeCFG> lstRanges = graph.getExceptions();
     for (int i = lstRanges.size() - 1; i >= 0; i--) {
+      DecompilerContext.checkCancelled();
       ExceptionRangeCFG range = lstRanges.get(i);
 
       BasicBlock handler = range.getHandler();
@@ -328,6 +329,7 @@ public final class ExceptionDeobfuscator {
     boolean found;
 
     while (true) {
+      DecompilerContext.checkCancelled();
       found = false;
       boolean splitted = false;
 
@@ -137,6 +137,10 @@ public class VarExprent extends Exprent {
     return new VarVersionPair(index, version);
   }
 
+  public long getVarVersionKey() {
+    return VarVersionPair.pack(index, version);
+  }
+
   /*
   public String getDebugName(StructMethod method) {
     StructLocalVariableTableAttribute attr = method.getLocalVariableAttr();
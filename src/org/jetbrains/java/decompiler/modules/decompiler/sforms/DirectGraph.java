@@ -5,8 +5,6 @@ import org.jetbrains.java.decompiler.modules.decompiler.exps.Exprent;
 import org.jetbrains.java.decompiler.modules.decompiler.sforms.FlattenStatementsHelper.FinallyPathWrapper;
 import org.jetbrains.java.decompiler.util.VBStyleCollection;
 
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -17,21 +15,67 @@ public class DirectGraph {
 
   public DirectNode first;
 
+  // number of nodes created for the graph, including the ones dropped as unreachable
+  private int nodeCount;
+
+  // the tables below are indexed by DirectNode.index
+
   // exit, [source, destination]
-  public final HashMap<String, List<FinallyPathWrapper>> mapShortRangeFinallyPaths = new HashMap<>();
+  FinallyPathWrapper[][] shortRangeFinallyPaths;
 
   // exit, [source, destination]
-  public final HashMap<String, List<FinallyPathWrapper>> mapLongRangeFinallyPaths = new HashMap<>();
+  FinallyPathWrapper[][] longRangeFinallyPaths;
 
   // negative if branches (recorded for handling of && and ||)
-  public final HashMap<String, String> mapNegIfBranch = new HashMap<>();
+  DirectNode[] negIfBranches;
 
   // nodes, that are exception exits of a finally block with monitor variable
-  public final HashMap<String, String> mapFinallyMonitorExceptionPathExits = new HashMap<>();
+  DirectNode[] finallyMonitorExceptionPathExits;
+
+  int nextNodeIndex() {
+    return nodeCount++;
+  }
+
+  // called once all nodes are created
+  void initNodeTables() {
+    shortRangeFinallyPaths = new FinallyPathWrapper[nodeCount][];
+    longRangeFinallyPaths = new FinallyPathWrapper[nodeCount][];
+    negIfBranches = new DirectNode[nodeCount];
+    finallyMonitorExceptionPathExits = new DirectNode[nodeCount];
+  }
+
+  /**
+   * @return the upper bound of node indices, to size tables indexed by {@link DirectNode#index}
+   */
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  /**
+   * @return the finally paths leaving the given exit node, or null if it is no finally exit
+   */
+  public FinallyPathWrapper[] getShortRangeFinallyPaths(int nodeIndex) {
+    return shortRangeFinallyPaths[nodeIndex];
+  }
+
+  public FinallyPathWrapper[] getLongRangeFinallyPaths(int nodeIndex) {
+    return longRangeFinallyPaths[nodeIndex];
+  }
+
+  /**
+   * @return the successor reached on the negative branch of the given if node, or null if it has none
+   */
+  public DirectNode getNegIfBranch(int nodeIndex) {
+    return negIfBranches[nodeIndex];
+  }
+
+  public DirectNode getFinallyMonitorExceptionPathExit(int nodeIndex) {
+    return finallyMonitorExceptionPathExits[nodeIndex];
+  }
 
   public void sortReversePostOrder() {
     LinkedList<DirectNode> res = new LinkedList<>();
-    addToReversePostOrderListIterative(first, res);
+    addToReversePostOrderListIterative(first, res, nodeCount);
 
     nodes.clear();
     for (DirectNode node : res) {
@@ -39,12 +83,12 @@ public class DirectGraph {
     }
   }
 
-  private static void addToReversePostOrderListIterative(DirectNode root, List<? super DirectNode> lst) {
+  private static void addToReversePostOrderListIterative(DirectNode root, List<? super DirectNode> lst, int nodeCount) {
 
     LinkedList<DirectNode> stackNode = new LinkedList<>();
     LinkedList<Integer> stackIndex = new LinkedList<>();
 
-    HashSet<DirectNode> setVisited = new HashSet<>();
+    boolean[] visited = new boolean[nodeCount];
 
     stackNode.add(root);
     stackIndex.add(0);
@@ -54,12 +98,12 @@ public class DirectGraph {
       DirectNode node = stackNode.getLast();
       int index = stackIndex.removeLast();
 
-      setVisited.add(node);
+      visited[node.index] = true;
 
       for (; index < node.succs.size(); index++) {
         DirectNode succ = node.succs.get(index);
 
-        if (!setVisited.contains(succ)) {
+        if (!visited[succ.index]) {
           stackIndex.add(index + 1);
 
           stackNode.add(succ);
@@ -83,16 +127,16 @@ public class DirectGraph {
     LinkedList<DirectNode> stack = new LinkedList<>();
     stack.add(first);
 
-    HashSet<DirectNode> setVisited = new HashSet<>();
+    boolean[] visited = new boolean[nodeCount];
 
     while (!stack.isEmpty()) {
 
       DirectNode node = stack.removeFirst();
 
-      if (setVisited.contains(node)) {
+      if (visited[node.index]) {
         continue;
       }
-      setVisited.add(node);
+      visited[node.index] = true;
 
       for (int i = 0; i < node.exprents.size(); i++) {
         int res = iter.processExprent(node.exprents.get(i));
@@ -40,11 +40,12 @@ public class FlattenStatementsHelper {
 
     // dummy exit node
     Statement dummyexit = root.getDummyExit();
-    DirectNode node = new DirectNode(DirectNode.NODE_DIRECT, dummyexit, dummyexit.id.toString());
+    DirectNode node = new DirectNode(DirectNode.NODE_DIRECT, dummyexit, dummyexit.id.toString(), graph.nextNodeIndex());
     node.exprents = new ArrayList<>();
     graph.nodes.addWithKey(node, node.id);
     mapDestinationNodes.put(dummyexit.id, new String[]{node.id, null});
 
+    graph.initNodeTables();
     setEdges();
 
     graph.first = graph.nodes.getWithKey(mapDestinationNodes.get(root.id)[0]);
@@ -93,7 +94,7 @@ public class FlattenStatementsHelper {
 
         switch (stat.type) {
           case Statement.TYPE_BASICBLOCK:
-            node = new DirectNode(DirectNode.NODE_DIRECT, stat, (BasicBlockStatement)stat);
+            node = new DirectNode(DirectNode.NODE_DIRECT, stat, (BasicBlockStatement)stat, graph.nextNodeIndex());
             if (stat.getExprents() != null) {
               node.exprents = stat.getExprents();
             }
@@ -106,7 +107,7 @@ public class FlattenStatementsHelper {
             List<Exprent> tailExprentList = statEntry.tailExprents;
 
             if (tailExprentList != null) {
-              DirectNode tail = new DirectNode(DirectNode.NODE_TAIL, stat, stat.id + "_tail");
+              DirectNode tail = new DirectNode(DirectNode.NODE_TAIL, stat, stat.id + "_tail", graph.nextNodeIndex());
               tail.exprents = tailExprentList;
               graph.nodes.putWithKey(tail, tail.id);
 
@@ -124,7 +125,7 @@ public class FlattenStatementsHelper {
             break;
           case Statement.TYPE_CATCHALL:
           case Statement.TYPE_TRYCATCH:
-            DirectNode firstnd = new DirectNode(DirectNode.NODE_TRY, stat, stat.id + "_try");
+            DirectNode firstnd = new DirectNode(DirectNode.NODE_TRY, stat, stat.id + "_try", graph.nextNodeIndex());
 
             if (stat.type == Statement.TYPE_TRYCATCH) {
               CatchStatement catchStat = (CatchStatement)stat;
@@ -182,7 +183,7 @@ public class FlattenStatementsHelper {
             switch (looptype) {
               case DoStatement.LOOP_WHILE:
               case DoStatement.LOOP_DOWHILE:
-                node = new DirectNode(DirectNode.NODE_CONDITION, stat, stat.id + "_cond");
+                node = new DirectNode(DirectNode.NODE_CONDITION, stat, stat.id + "_cond", graph.nextNodeIndex());
                 node.exprents = dostat.getConditionExprentList();
                 graph.nodes.putWithKey(node, node.id);
 
@@ -209,19 +210,19 @@ public class FlattenStatementsHelper {
                 break;
               case DoStatement.LOOP_FOR:
               case DoStatement.LOOP_FOREACH:
-                DirectNode nodeinit = new DirectNode(DirectNode.NODE_INIT, stat, stat.id + "_init");
+                DirectNode nodeinit = new DirectNode(DirectNode.NODE_INIT, stat, stat.id + "_init", graph.nextNodeIndex());
                 if (dostat.getInitExprent() != null) {
                   nodeinit.exprents = dostat.getInitExprentList();
                 }
                 graph.nodes.putWithKey(nodeinit, nodeinit.id);
 
-                DirectNode nodecond = new DirectNode(DirectNode.NODE_CONDITION, stat, stat.id + "_cond");
+                DirectNode nodecond = new DirectNode(DirectNode.NODE_CONDITION, stat, stat.id + "_cond", graph.nextNodeIndex());
                 if (looptype != DoStatement.LOOP_FOREACH) {
                   nodecond.exprents = dostat.getConditionExprentList();
                 }
                 graph.nodes.putWithKey(nodecond, nodecond.id);
 
-                DirectNode nodeinc = new DirectNode(DirectNode.NODE_INCREMENT, stat, stat.id + "_inc");
+                DirectNode nodeinc = new DirectNode(DirectNode.NODE_INCREMENT, stat, stat.id + "_inc", graph.nextNodeIndex());
                 nodeinc.exprents = dostat.getIncExprentList();
                 graph.nodes.putWithKey(nodeinc, nodeinc.id);
 
@@ -445,14 +446,15 @@ public class FlattenStatementsHelper {
       }
 
       if (mapPosIfBranch.containsKey(sourceid) && !statid.equals(mapPosIfBranch.get(sourceid))) {
-        graph.mapNegIfBranch.put(sourceid, dest.id);
+        graph.negIfBranches[source.index] = dest;
       }
     }
 
     for (int i = 0; i < 2; i++) {
       for (Entry<String, List<String[]>> ent : (i == 0 ? mapShortRangeFinallyPathIds : mapLongRangeFinallyPathIds).entrySet()) {
 
-        List<FinallyPathWrapper> newLst = new ArrayList<>();
+        DirectNode exit = graph.nodes.getWithKey(ent.getKey());
+        Set<FinallyPathWrapper> newSet = new LinkedHashSet<>();
 
         List<String[]> lst = ent.getValue();
         for (String[] arr : lst) {
@@ -462,17 +464,15 @@ public class FlattenStatementsHelper {
           DirectNode dest = graph.nodes.getWithKey(mapDestinationNodes.get(Integer.parseInt(arr[1]))[isContinueEdge ? 1 : 0]);
           DirectNode enter = graph.nodes.getWithKey(mapDestinationNodes.get(Integer.parseInt(arr[2]))[0]);
 
-          newLst.add(new FinallyPathWrapper(arr[0], dest.id, enter.id));
+          newSet.add(new FinallyPathWrapper(graph.nodes.getWithKey(arr[0]), dest, enter));
 
           if (i == 0 && arr[3] != null) {
-            graph.mapFinallyMonitorExceptionPathExits.put(ent.getKey(), dest.id);
+            graph.finallyMonitorExceptionPathExits[exit.index] = dest;
           }
         }
 
-        if (!newLst.isEmpty()) {
-          (i == 0 ? graph.mapShortRangeFinallyPaths : graph.mapLongRangeFinallyPaths).put(ent.getKey(),
-                                                                                          new ArrayList<>(
-                                                                                            new HashSet<>(newLst)));
+        if (!newSet.isEmpty()) {
+          (i == 0 ? graph.shortRangeFinallyPaths : graph.longRangeFinallyPaths)[exit.index] = newSet.toArray(new FinallyPathWrapper[0]);
         }
       }
     }
@@ -483,11 +483,11 @@ public class FlattenStatementsHelper {
   }
 
   public static final class FinallyPathWrapper {
-    public final String source;
-    public final String destination;
-    public final String entry;
+    public final DirectNode source;
+    public final DirectNode destination;
+    public final DirectNode entry;
 
-    private FinallyPathWrapper(String source, String destination, String entry) {
+    private FinallyPathWrapper(DirectNode source, DirectNode destination, DirectNode entry) {
       this.source = source;
       this.destination = destination;
       this.entry = entry;
@@ -499,17 +499,17 @@ public class FlattenStatementsHelper {
       if (!(o instanceof FinallyPathWrapper)) return false;
 
       FinallyPathWrapper fpw = (FinallyPathWrapper)o;
-      return (source + ":" + destination + ":" + entry).equals(fpw.source + ":" + fpw.destination + ":" + fpw.entry);
+      return source == fpw.source && destination == fpw.destination && entry == fpw.entry;
     }
 
     @Override
     public int hashCode() {
-      return (source + ":" + destination + ":" + entry).hashCode();
+      return (source.index * 31 + destination.index) * 31 + entry.index;
     }
 
     @Override
     public String toString() {
-      return source + "->(" + entry + ")->" + destination;
+      return source.id + "->(" + entry.id + ")->" + destination.id;
     }
   }
 
@@ -15,60 +15,55 @@ import org.jetbrains.java.decompiler.modules.decompiler.vars.VarVersionPair;
 import org.jetbrains.java.decompiler.struct.StructMethod;
 import org.jetbrains.java.decompiler.struct.gen.MethodDescriptor;
 import org.jetbrains.java.decompiler.util.DotExporter;
-import org.jetbrains.java.decompiler.util.FastSparseSetFactory;
-import org.jetbrains.java.decompiler.util.FastSparseSetFactory.FastSparseSet;
+import org.jetbrains.java.decompiler.util.FastIntSet;
 import org.jetbrains.java.decompiler.util.InterpreterUtil;
 import org.jetbrains.java.decompiler.util.SFormsFastMapDirect;
 
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.ArrayList;
 import java.util.Map.Entry;
 
 public class SSAConstructorSparseEx {
 
-  // node id, var, version
-  private final HashMap<String, SFormsFastMapDirect> inVarVersions = new HashMap<>();
+  // node index, var, version
+  private SFormsFastMapDirect[] inVarVersions;
 
-  // node id, var, version (direct branch)
-  private final HashMap<String, SFormsFastMapDirect> outVarVersions = new HashMap<>();
+  // node index, var, version (direct branch)
+  private SFormsFastMapDirect[] outVarVersions;
 
-  // node id, var, version (negative branch)
-  private final HashMap<String, SFormsFastMapDirect> outNegVarVersions = new HashMap<>();
+  // node index, var, version (negative branch)
+  private SFormsFastMapDirect[] outNegVarVersions;
 
-  // node id, var, version
-  private final HashMap<String, SFormsFastMapDirect> extraVarVersions = new HashMap<>();
+  // node index, var, version
+  private SFormsFastMapDirect[] extraVarVersions;
 
   // (var, version), version
-  private final HashMap<VarVersionPair, FastSparseSet<Integer>> phi = new HashMap<>();
+  private final HashMap<VarVersionPair, FastIntSet> phi = new HashMap<>();
 
   // var, version
   private final HashMap<Integer, Integer> lastversion = new HashMap<>();
 
-  // set factory
-  private FastSparseSetFactory<Integer> factory;
-
   public void splitVariables(RootStatement root, StructMethod mt) {
 
-    FlattenStatementsHelper flatthelper = new FlattenStatementsHelper();
-    DirectGraph dgraph = flatthelper.buildDirectGraph(root);
+    FlattenStatementsHelper flatthelper = root.getFlattenHelper();
+    DirectGraph dgraph = root.getDirectGraph();
 
     DotExporter.toDotFile(dgraph, mt, "ssaSplitVariables");
 
-    List<Integer> setInit = new ArrayList<>();
-    for (int i = 0; i < 64; i++) {
-      setInit.add(i);
-    }
-    factory = new FastSparseSetFactory<>(setInit);
+    int nodeCount = dgraph.getNodeCount();
+    inVarVersions = new SFormsFastMapDirect[nodeCount];
+    outVarVersions = new SFormsFastMapDirect[nodeCount];
+    outNegVarVersions = new SFormsFastMapDirect[nodeCount];
+    extraVarVersions = new SFormsFastMapDirect[nodeCount];
 
     SFormsFastMapDirect firstmap = createFirstMap(mt);
-    extraVarVersions.put(dgraph.first.id, firstmap);
+    extraVarVersions[dgraph.first.index] = firstmap;
 
     setCatchMaps(root, dgraph, flatthelper);
 
     int itteration = 1;
-    HashSet<String> updated = new HashSet<>();
+    BitSet updated = new BitSet(nodeCount);
     do {
       // System.out.println("~~~~~~~~~~~~~ \r\n"+root.toJava());
       ssaStatements(dgraph, updated, mt, itteration++);
@@ -77,7 +72,7 @@ public class SSAConstructorSparseEx {
     while (!updated.isEmpty());
   }
 
-  private void ssaStatements(DirectGraph dgraph, HashSet<String> updated, StructMethod mt, int itteration) {
+  private void ssaStatements(DirectGraph dgraph, BitSet updated, StructMethod mt, int itteration) {
 
     DotExporter.toDotFile(dgraph, mt, "ssaStatements_" + itteration, outVarVersions);
 
@@ -93,10 +88,10 @@ public class SSAConstructorSparseEx {
       //				}
       //			}
 
-      updated.remove(node.id);
+      updated.clear(node.index);
       mergeInVarMaps(node, dgraph);
 
-      SFormsFastMapDirect varmap = inVarVersions.get(node.id);
+      SFormsFastMapDirect varmap = inVarVersions[node.index];
       varmap = new SFormsFastMapDirect(varmap);
 
       SFormsFastMapDirect[] varmaparr = new SFormsFastMapDirect[]{varmap, null};
@@ -111,17 +106,17 @@ public class SSAConstructorSparseEx {
         varmaparr[1] = varmaparr[0];
       }
 
-      boolean this_updated = !mapsEqual(varmaparr[0], outVarVersions.get(node.id))
-                             || (outNegVarVersions.containsKey(node.id) && !mapsEqual(varmaparr[1], outNegVarVersions.get(node.id)));
+      boolean this_updated = !mapsEqual(varmaparr[0], outVarVersions[node.index])
+                             || (outNegVarVersions[node.index] != null && !mapsEqual(varmaparr[1], outNegVarVersions[node.index]));
 
       if (this_updated) {
-        outVarVersions.put(node.id, varmaparr[0]);
-        if (dgraph.mapNegIfBranch.containsKey(node.id)) {
-          outNegVarVersions.put(node.id, varmaparr[1]);
+        outVarVersions[node.index] = varmaparr[0];
+        if (dgraph.getNegIfBranch(node.index) != null) {
+          outNegVarVersions[node.index] = varmaparr[1];
         }
 
         for (DirectNode nd : node.succs) {
-          updated.add(nd.id);
+          updated.set(nd.index);
         }
       }
     }
@@ -236,13 +231,12 @@ public class SSAConstructorSparseEx {
 
       VarExprent vardest = (VarExprent)expr;
       Integer varindex = vardest.getIndex();
-      FastSparseSet<Integer> vers = varmap.get(varindex);
+      FastIntSet vers = varmap.get(varindex);
 
       int cardinality = vers != null ? vers.getCardinality() : 0;
       if (cardinality == 1) { // == 1
         // set version
-        Integer it = vers.iterator().next();
-        vardest.setVersion(it);
+        vardest.setVersion(vers.next(0));
       }
       else if (cardinality == 2) { // size > 1
         Integer current_vers = vardest.getVersion();
@@ -294,7 +288,7 @@ public class SSAConstructorSparseEx {
     SFormsFastMapDirect mapNew = new SFormsFastMapDirect();
 
     for (DirectNode pred : node.preds) {
-      SFormsFastMapDirect mapOut = getFilteredOutMap(node.id, pred.id, dgraph, node.id);
+      SFormsFastMapDirect mapOut = getFilteredOutMap(node, pred, dgraph, node);
       if (mapNew.isEmpty()) {
         mapNew = mapOut.getCopy();
       }
@@ -303,8 +297,8 @@ public class SSAConstructorSparseEx {
       }
     }
 
-    if (extraVarVersions.containsKey(node.id)) {
-      SFormsFastMapDirect mapExtra = extraVarVersions.get(node.id);
+    SFormsFastMapDirect mapExtra = extraVarVersions[node.index];
+    if (mapExtra != null) {
       if (mapNew.isEmpty()) {
         mapNew = mapExtra.getCopy();
       }
@@ -313,53 +307,50 @@ public class SSAConstructorSparseEx {
       }
     }
 
-    inVarVersions.put(node.id, mapNew);
+    inVarVersions[node.index] = mapNew;
   }
 
-  private SFormsFastMapDirect getFilteredOutMap(String nodeid, String predid, DirectGraph dgraph, String destid) {
+  private SFormsFastMapDirect getFilteredOutMap(DirectNode node, DirectNode pred, DirectGraph dgraph, DirectNode dest) {
 
     SFormsFastMapDirect mapNew = new SFormsFastMapDirect();
 
-    if (nodeid.equals(dgraph.mapNegIfBranch.get(predid))) {
-      if (outNegVarVersions.containsKey(predid)) {
-        mapNew = outNegVarVersions.get(predid).getCopy();
+    if (node == dgraph.getNegIfBranch(pred.index)) {
+      if (outNegVarVersions[pred.index] != null) {
+        mapNew = outNegVarVersions[pred.index].getCopy();
       }
     }
-    else if (outVarVersions.containsKey(predid)) {
-      mapNew = outVarVersions.get(predid).getCopy();
+    else if (outVarVersions[pred.index] != null) {
+      mapNew = outVarVersions[pred.index].getCopy();
     }
 
-    boolean isFinallyExit = dgraph.mapShortRangeFinallyPaths.containsKey(predid);
+    FinallyPathWrapper[] finallyPaths = dgraph.getShortRangeFinallyPaths(pred.index);
 
-    if (isFinallyExit && !mapNew.isEmpty()) {
+    if (finallyPaths != null && !mapNew.isEmpty()) {
 
       SFormsFastMapDirect mapNewTemp = mapNew.getCopy();
 
       SFormsFastMapDirect mapTrueSource = new SFormsFastMapDirect();
 
-      String exceptionDest = dgraph.mapFinallyMonitorExceptionPathExits.get(predid);
-      boolean isExceptionMonitorExit = (exceptionDest != null && !nodeid.equals(exceptionDest));
+      DirectNode exceptionDest = dgraph.getFinallyMonitorExceptionPathExit(pred.index);
+      boolean isExceptionMonitorExit = (exceptionDest != null && node != exceptionDest);
 
-      HashSet<String> setLongPathWrapper = new HashSet<>();
-      for (FinallyPathWrapper finwraplong : dgraph.mapLongRangeFinallyPaths.get(predid)) {
-        setLongPathWrapper.add(finwraplong.destination + "##" + finwraplong.source);
-      }
+      FinallyPathWrapper[] longPaths = dgraph.getLongRangeFinallyPaths(pred.index);
 
-      for (FinallyPathWrapper finwrap : dgraph.mapShortRangeFinallyPaths.get(predid)) {
+      for (FinallyPathWrapper finwrap : finallyPaths) {
         SFormsFastMapDirect map;
 
-        boolean recFinally = dgraph.mapShortRangeFinallyPaths.containsKey(finwrap.source);
+        boolean recFinally = dgraph.getShortRangeFinallyPaths(finwrap.source.index) != null;
 
         if (recFinally) {
           // recursion
-          map = getFilteredOutMap(finwrap.entry, finwrap.source, dgraph, destid);
+          map = getFilteredOutMap(finwrap.entry, finwrap.source, dgraph, dest);
         }
         else {
-          if (finwrap.entry.equals(dgraph.mapNegIfBranch.get(finwrap.source))) {
-            map = outNegVarVersions.get(finwrap.source);
+          if (finwrap.entry == dgraph.getNegIfBranch(finwrap.source.index)) {
+            map = outNegVarVersions[finwrap.source.index];
           }
           else {
-            map = outVarVersions.get(finwrap.source);
+            map = outVarVersions[finwrap.source.index];
           }
         }
 
@@ -367,10 +358,10 @@ public class SSAConstructorSparseEx {
         boolean isFalsePath;
 
         if (recFinally) {
-          isFalsePath = !finwrap.destination.equals(nodeid);
+          isFalsePath = finwrap.destination != node;
         }
         else {
-          isFalsePath = !setLongPathWrapper.contains(destid + "##" + finwrap.source);
+          isFalsePath = !containsPath(longPaths, finwrap.source, dest);
         }
 
         if (isFalsePath) {
@@ -396,7 +387,7 @@ public class SSAConstructorSparseEx {
 
         mapNewTemp.union(mapTrueSource);
 
-        SFormsFastMapDirect oldInMap = inVarVersions.get(nodeid);
+        SFormsFastMapDirect oldInMap = inVarVersions[node.index];
         if (oldInMap != null) {
           mapNewTemp.union(oldInMap);
         }
@@ -408,6 +399,17 @@ public class SSAConstructorSparseEx {
     return mapNew;
   }
 
+  private static boolean containsPath(FinallyPathWrapper[] paths, DirectNode source, DirectNode destination) {
+    if (paths != null) {
+      for (FinallyPathWrapper path : paths) {
+        if (path.source == source && path.destination == destination) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   private static SFormsFastMapDirect mergeMaps(SFormsFastMapDirect mapTo, SFormsFastMapDirect map2) {
 
     if (map2 != null && !map2.isEmpty()) {
@@ -430,7 +432,7 @@ public class SSAConstructorSparseEx {
       return false;
     }
 
-    for (Entry<Integer, FastSparseSet<Integer>> ent2 : map2.entryList()) {
+    for (Entry<Integer, FastIntSet> ent2 : map2.entryList()) {
       if (!InterpreterUtil.equalObjects(map1.get(ent2.getKey()), ent2.getValue())) {
         return false;
       }
@@ -440,7 +442,7 @@ public class SSAConstructorSparseEx {
   }
 
   private void setCurrentVar(SFormsFastMapDirect varmap, Integer var, Integer vers) {
-    FastSparseSet<Integer> set = factory.spawnEmptySet();
+    FastIntSet set = new FastIntSet();
     set.add(vers);
     varmap.put(var, set);
   }
@@ -468,7 +470,7 @@ public class SSAConstructorSparseEx {
           map = new SFormsFastMapDirect();
           setCurrentVar(map, varindex, version);
 
-          extraVarVersions.put(dgraph.nodes.getWithKey(flatthelper.getMapDestinationNodes().get(stat.getStats().get(i).id)[0]).id, map);
+          extraVarVersions[dgraph.nodes.getWithKey(flatthelper.getMapDestinationNodes().get(stat.getStats().get(i).id)[0]).index] = map;
         }
     }
 
@@ -489,7 +491,7 @@ public class SSAConstructorSparseEx {
     for (int i = 0; i < paramcount; i++) {
       int version = getNextFreeVersion(varindex); // == 1
 
-      FastSparseSet<Integer> set = factory.spawnEmptySet();
+      FastIntSet set = new FastIntSet();
       set.add(version);
       map.put(varindex, set);
 
@@ -509,7 +511,7 @@ public class SSAConstructorSparseEx {
     return map;
   }
 
-  public HashMap<VarVersionPair, FastSparseSet<Integer>> getPhi() {
+  public HashMap<VarVersionPair, FastIntSet> getPhi() {
     return phi;
   }
 }
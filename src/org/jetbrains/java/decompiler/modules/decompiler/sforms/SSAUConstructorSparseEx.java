@@ -12,13 +12,15 @@ import org.jetbrains.java.decompiler.modules.decompiler.vars.VarVersionsGraph;
 import org.jetbrains.java.decompiler.struct.StructMethod;
 import org.jetbrains.java.decompiler.struct.gen.MethodDescriptor;
 import org.jetbrains.java.decompiler.util.DotExporter;
-import org.jetbrains.java.decompiler.util.FastSparseSetFactory;
-import org.jetbrains.java.decompiler.util.FastSparseSetFactory.FastSparseSet;
+import org.jetbrains.java.decompiler.util.FastIntSet;
 import org.jetbrains.java.decompiler.util.InterpreterUtil;
+import org.jetbrains.java.decompiler.util.LongIntHashMap;
+import org.jetbrains.java.decompiler.util.LongObjectHashMap;
 import org.jetbrains.java.decompiler.util.SFormsFastMapDirect;
 import org.jetbrains.java.decompiler.util.VBStyleCollection;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -26,34 +28,32 @@ import java.util.Map.Entry;
 
 public class SSAUConstructorSparseEx {
 
-  // node id, var, version
-  private final HashMap<String, SFormsFastMapDirect> inVarVersions = new HashMap<>();
-  //private HashMap<String, HashMap<Integer, FastSet<Integer>>> inVarVersions = new HashMap<String, HashMap<Integer, FastSet<Integer>>>();
+  // node index, var, version
+  private SFormsFastMapDirect[] inVarVersions;
 
-  // node id, var, version (direct branch)
-  private final HashMap<String, SFormsFastMapDirect> outVarVersions = new HashMap<>();
-  //private HashMap<String, HashMap<Integer, FastSet<Integer>>> outVarVersions = new HashMap<String, HashMap<Integer, FastSet<Integer>>>();
+  // node index, var, version (direct branch)
+  private SFormsFastMapDirect[] outVarVersions;
 
-  // node id, var, version (negative branch)
-  private final HashMap<String, SFormsFastMapDirect> outNegVarVersions = new HashMap<>();
-  //private HashMap<String, HashMap<Integer, FastSet<Integer>>> outNegVarVersions = new HashMap<String, HashMap<Integer, FastSet<Integer>>>();
+  // node index, var, version (negative branch)
+  private SFormsFastMapDirect[] outNegVarVersions;
 
-  // node id, var, version
-  private final HashMap<String, SFormsFastMapDirect> extraVarVersions = new HashMap<>();
-  //private HashMap<String, HashMap<Integer, FastSet<Integer>>> extraVarVersions = new HashMap<String, HashMap<Integer, FastSet<Integer>>>();
+  // node index, var, version
+  private SFormsFastMapDirect[] extraVarVersions;
+
+  // node index (source), destinations of all long range finally paths
+  private BitSet[] longRangeFinallyPaths;
 
   // var, version
   private final HashMap<Integer, Integer> lastversion = new HashMap<>();
 
   // version, protected ranges (catch, finally)
-  private final HashMap<VarVersionPair, Integer> mapVersionFirstRange = new HashMap<>();
+  private final LongIntHashMap mapVersionFirstRange = new LongIntHashMap();
 
-  // version, version
-  private final HashMap<VarVersionPair, VarVersionPair> phantomppnodes = new HashMap<>(); // ++ and --
+  // version, phantom version
+  private final LongIntHashMap phantomppnodes = new LongIntHashMap(); // ++ and --
 
-  // node.id, version, version
-  private final HashMap<String, HashMap<VarVersionPair, VarVersionPair>> phantomexitnodes =
-    new HashMap<>(); // finally exits
+  // node, version, phantom version
+  private final HashMap<DirectNode, LongIntHashMap> phantomexitnodes = new HashMap<>(); // finally exits
 
   // versions memory dependencies
   private final VarVersionsGraph ssuversions = new VarVersionsGraph();
@@ -64,31 +64,42 @@ public class SSAUConstructorSparseEx {
   // field access counter
   private int fieldvarcounter = -1;
 
-  // set factory
-  private FastSparseSetFactory<Integer> factory;
-
   // track assignments for finding effectively final vars (left var, right var)
-  private HashMap<VarVersionPair, VarVersionPair> varAssignmentMap = new HashMap<>();
+  private final LongObjectHashMap<VarVersionPair> varAssignmentMap = new LongObjectHashMap<>();
 
   public void splitVariables(RootStatement root, StructMethod mt) {
 
-    FlattenStatementsHelper flatthelper = new FlattenStatementsHelper();
-    DirectGraph dgraph = flatthelper.buildDirectGraph(root);
+    FlattenStatementsHelper flatthelper = root.getFlattenHelper();
+    DirectGraph dgraph = root.getDirectGraph();
 
     DotExporter.toDotFile(dgraph, mt, "ssauSplitVariables");
     
-    List<Integer> setInit = new ArrayList<>();
-    for (int i = 0; i < 64; i++) {
-      setInit.add(i);
+    int nodeCount = dgraph.getNodeCount();
+    inVarVersions = new SFormsFastMapDirect[nodeCount];
+    outVarVersions = new SFormsFastMapDirect[nodeCount];
+    outNegVarVersions = new SFormsFastMapDirect[nodeCount];
+    extraVarVersions = new SFormsFastMapDirect[nodeCount];
+
+    longRangeFinallyPaths = new BitSet[nodeCount];
+    for (int i = 0; i < nodeCount; i++) {
+      FinallyPathWrapper[] paths = dgraph.getLongRangeFinallyPaths(i);
+      if (paths != null) {
+        for (FinallyPathWrapper path : paths) {
+          BitSet destinations = longRangeFinallyPaths[path.source.index];
+          if (destinations == null) {
+            longRangeFinallyPaths[path.source.index] = destinations = new BitSet(nodeCount);
+          }
+          destinations.set(path.destination.index);
+        }
+      }
     }
-    factory = new FastSparseSetFactory<>(setInit);
 
-    extraVarVersions.put(dgraph.first.id, createFirstMap(mt, root));
+    extraVarVersions[dgraph.first.index] = createFirstMap(mt, root);
 
     setCatchMaps(root, dgraph, flatthelper);
 
     int itteration = 1;
-    HashSet<String> updated = new HashSet<>();
+    BitSet updated = new BitSet(nodeCount);
     do {
       //			System.out.println("~~~~~~~~~~~~~ \r\n"+root.toJava());
       ssaStatements(dgraph, updated, false, mt, itteration++);
@@ -102,16 +113,16 @@ public class SSAUConstructorSparseEx {
     ssuversions.initDominators();
   }
 
-  private void ssaStatements(DirectGraph dgraph, HashSet<String> updated, boolean calcLiveVars, StructMethod mt, int itteration) {
+  private void ssaStatements(DirectGraph dgraph, BitSet updated, boolean calcLiveVars, StructMethod mt, int itteration) {
 
     DotExporter.toDotFile(dgraph, mt, "ssauStatements_" + itteration);
 
     for (DirectNode node : dgraph.nodes) {
 
-      updated.remove(node.id);
+      updated.clear(node.index);
       mergeInVarMaps(node, dgraph);
 
-      SFormsFastMapDirect varmap = new SFormsFastMapDirect(inVarVersions.get(node.id));
+      SFormsFastMapDirect varmap = new SFormsFastMapDirect(inVarVersions[node.index]);
 
       SFormsFastMapDirect[] varmaparr = new SFormsFastMapDirect[]{varmap, null};
 
@@ -134,18 +145,18 @@ public class SSAUConstructorSparseEx {
         varmaparr[1].removeAllFields();
       }
 
-      boolean this_updated = !mapsEqual(varmaparr[0], outVarVersions.get(node.id))
-                             || (outNegVarVersions.containsKey(node.id) && !mapsEqual(varmaparr[1], outNegVarVersions.get(node.id)));
+      boolean this_updated = !mapsEqual(varmaparr[0], outVarVersions[node.index])
+                             || (outNegVarVersions[node.index] != null && !mapsEqual(varmaparr[1], outNegVarVersions[node.index]));
 
       if (this_updated) {
 
-        outVarVersions.put(node.id, varmaparr[0]);
-        if (dgraph.mapNegIfBranch.containsKey(node.id)) {
-          outNegVarVersions.put(node.id, varmaparr[1]);
+        outVarVersions[node.index] = varmaparr[0];
+        if (dgraph.getNegIfBranch(node.index) != null) {
+          outNegVarVersions[node.index] = varmaparr[1];
         }
 
         for (DirectNode nd : node.succs) {
-          updated.add(nd.id);
+          updated.set(nd.index);
         }
       }
     }
@@ -308,12 +319,12 @@ public class SSAUConstructorSparseEx {
       AssignmentExprent assexpr = (AssignmentExprent)expr;
       if (assexpr.getRight().type == Exprent.EXPRENT_VAR) {
         VarVersionPair rightpaar = ((VarExprent)assexpr.getRight()).getVarVersionPair();
-        varAssignmentMap.put(varassign.getVarVersionPair(), rightpaar);
+        varAssignmentMap.put(varassign.getVarVersionKey(), rightpaar);
       }
       else if (assexpr.getRight().type == Exprent.EXPRENT_FIELD) {
         int index = mapFieldVars.get(((FieldExprent)assexpr.getRight()).id);
         VarVersionPair rightpaar = new VarVersionPair(index, 0);
-        varAssignmentMap.put(varassign.getVarVersionPair(), rightpaar);
+        varAssignmentMap.put(varassign.getVarVersionKey(), rightpaar);
       }
     }
     else if (expr.type == Exprent.EXPRENT_FUNCTION) { // MM or PP function
@@ -331,17 +342,16 @@ public class SSAUConstructorSparseEx {
             VarVersionPair varpaar = new VarVersionPair(varindex.intValue(), var.getVersion());
 
             // ssu graph
-            VarVersionPair phantomver = phantomppnodes.get(varpaar);
-            if (phantomver == null) {
+            if (!phantomppnodes.containsKey(varpaar.toLong())) {
               // get next version
               Integer nextver = getNextFreeVersion(varindex, null);
-              phantomver = new VarVersionPair(varindex, nextver);
+              VarVersionPair phantomver = new VarVersionPair(varindex, nextver);
               //ssuversions.createOrGetNode(phantomver);
               ssuversions.createNode(phantomver);
 
               VarVersionNode vernode = ssuversions.nodes.getWithKey(varpaar);
 
-              FastSparseSet<Integer> vers = factory.spawnEmptySet();
+              FastIntSet vers = new FastIntSet();
               if (vernode.preds.size() == 1) {
                 vers.add(vernode.preds.iterator().next().source.version);
               }
@@ -352,7 +362,7 @@ public class SSAUConstructorSparseEx {
               }
               vers.add(nextver);
               createOrUpdatePhiNode(varpaar, vers, stat);
-              phantomppnodes.put(varpaar, phantomver);
+              phantomppnodes.put(varpaar.toLong(), nextver);
             }
             if (calcLiveVars) {
               varMapToGraph(varpaar, varmap);
@@ -368,7 +378,7 @@ public class SSAUConstructorSparseEx {
       Integer varindex = vardest.getIndex();
       Integer current_vers = vardest.getVersion();
 
-      FastSparseSet<Integer> vers = varmap.get(varindex);
+      FastIntSet vers = varmap.get(varindex);
 
       int cardinality = vers != null ? vers.getCardinality() : 0;
       if (cardinality == 1) { // size == 1
@@ -387,8 +397,8 @@ public class SSAUConstructorSparseEx {
           setCurrentVar(varmap, varindex, usever);
 
           // ssu graph
-          Integer lastver = vers.iterator().next();
-          VarVersionNode prenode = ssuversions.nodes.getWithKey(new VarVersionPair(varindex, lastver));
+          int lastver = vers.next(0);
+          VarVersionNode prenode = ssuversions.nodes.getWithKey(new VarVersionPair(varindex.intValue(), lastver));
           VarVersionNode usenode = ssuversions.createNode(new VarVersionPair(varindex, usever));
           VarVersionEdge edge = new VarVersionEdge(VarVersionEdge.EDGE_GENERAL, prenode, usenode);
           prenode.addSuccessor(edge);
@@ -436,13 +446,13 @@ public class SSAUConstructorSparseEx {
     }
   }
 
-  private void createOrUpdatePhiNode(VarVersionPair phivar, FastSparseSet<Integer> vers, Statement stat) {
+  private void createOrUpdatePhiNode(VarVersionPair phivar, FastIntSet vers, Statement stat) {
 
-    FastSparseSet<Integer> versCopy = vers.getCopy();
+    FastIntSet versCopy = vers.getCopy();
     HashSet<Integer> phiVers = new HashSet<>();
 
     // take into account the corresponding mm/pp node if existing
-    int ppvers = phantomppnodes.containsKey(phivar) ? phantomppnodes.get(phivar).version : -1;
+    int ppvers = phantomppnodes.get(phivar.toLong(), -1);
 
     // ssu graph
     VarVersionNode phinode = ssuversions.nodes.getWithKey(phivar);
@@ -522,7 +532,7 @@ public class SSAUConstructorSparseEx {
     if (stat != null) { // null iff phantom version
       Integer firstRangeId = getFirstProtectedRange(stat);
       if (firstRangeId != null) {
-        mapVersionFirstRange.put(new VarVersionPair(var, nextver), firstRangeId);
+        mapVersionFirstRange.put(VarVersionPair.pack(var, nextver), firstRangeId);
       }
     }
 
@@ -535,7 +545,7 @@ public class SSAUConstructorSparseEx {
     SFormsFastMapDirect mapNew = new SFormsFastMapDirect();
 
     for (DirectNode pred : node.preds) {
-      SFormsFastMapDirect mapOut = getFilteredOutMap(node.id, pred.id, dgraph, node.id);
+      SFormsFastMapDirect mapOut = getFilteredOutMap(node, pred, dgraph, node);
       if (mapNew.isEmpty()) {
         mapNew = mapOut.getCopy();
       }
@@ -544,8 +554,8 @@ public class SSAUConstructorSparseEx {
       }
     }
 
-    if (extraVarVersions.containsKey(node.id)) {
-      SFormsFastMapDirect mapExtra = extraVarVersions.get(node.id);
+    SFormsFastMapDirect mapExtra = extraVarVersions[node.index];
+    if (mapExtra != null) {
       if (mapNew.isEmpty()) {
         mapNew = mapExtra.getCopy();
       }
@@ -554,55 +564,48 @@ public class SSAUConstructorSparseEx {
       }
     }
 
-    inVarVersions.put(node.id, mapNew);
+    inVarVersions[node.index] = mapNew;
   }
 
-  private SFormsFastMapDirect getFilteredOutMap(String nodeid, String predid, DirectGraph dgraph, String destid) {
+  private SFormsFastMapDirect getFilteredOutMap(DirectNode node, DirectNode pred, DirectGraph dgraph, DirectNode dest) {
 
     SFormsFastMapDirect mapNew = new SFormsFastMapDirect();
 
-    boolean isFinallyExit = dgraph.mapShortRangeFinallyPaths.containsKey(predid);
+    FinallyPathWrapper[] finallyPaths = dgraph.getShortRangeFinallyPaths(pred.index);
 
-    if (nodeid.equals(dgraph.mapNegIfBranch.get(predid))) {
-      if (outNegVarVersions.containsKey(predid)) {
-        mapNew = outNegVarVersions.get(predid).getCopy();
+    if (node == dgraph.getNegIfBranch(pred.index)) {
+      if (outNegVarVersions[pred.index] != null) {
+        mapNew = outNegVarVersions[pred.index].getCopy();
       }
     }
-    else if (outVarVersions.containsKey(predid)) {
-      mapNew = outVarVersions.get(predid).getCopy();
+    else if (outVarVersions[pred.index] != null) {
+      mapNew = outVarVersions[pred.index].getCopy();
     }
 
-    if (isFinallyExit) {
+    if (finallyPaths != null) {
 
       SFormsFastMapDirect mapNewTemp = mapNew.getCopy();
 
       SFormsFastMapDirect mapTrueSource = new SFormsFastMapDirect();
 
-      String exceptionDest = dgraph.mapFinallyMonitorExceptionPathExits.get(predid);
-      boolean isExceptionMonitorExit = (exceptionDest != null && !nodeid.equals(exceptionDest));
-
-      HashSet<String> setLongPathWrapper = new HashSet<>();
-      for (List<FinallyPathWrapper> lstwrapper : dgraph.mapLongRangeFinallyPaths.values()) {
-        for (FinallyPathWrapper finwraplong : lstwrapper) {
-          setLongPathWrapper.add(finwraplong.destination + "##" + finwraplong.source);
-        }
-      }
+      DirectNode exceptionDest = dgraph.getFinallyMonitorExceptionPathExit(pred.index);
+      boolean isExceptionMonitorExit = (exceptionDest != null && node != exceptionDest);
 
-      for (FinallyPathWrapper finwrap : dgraph.mapShortRangeFinallyPaths.get(predid)) {
+      for (FinallyPathWrapper finwrap : finallyPaths) {
         SFormsFastMapDirect map;
 
-        boolean recFinally = dgraph.mapShortRangeFinallyPaths.containsKey(finwrap.source);
+        boolean recFinally = dgraph.getShortRangeFinallyPaths(finwrap.source.index) != null;
 
         if (recFinally) {
           // recursion
-          map = getFilteredOutMap(finwrap.entry, finwrap.source, dgraph, destid);
+          map = getFilteredOutMap(finwrap.entry, finwrap.source, dgraph, dest);
         }
         else {
-          if (finwrap.entry.equals(dgraph.mapNegIfBranch.get(finwrap.source))) {
-            map = outNegVarVersions.get(finwrap.source);
+          if (finwrap.entry == dgraph.getNegIfBranch(finwrap.source.index)) {
+            map = outNegVarVersions[finwrap.source.index];
           }
           else {
-            map = outVarVersions.get(finwrap.source);
+            map = outVarVersions[finwrap.source.index];
           }
         }
 
@@ -610,10 +613,11 @@ public class SSAUConstructorSparseEx {
         boolean isFalsePath;
 
         if (recFinally) {
-          isFalsePath = !finwrap.destination.equals(nodeid);
+          isFalsePath = finwrap.destination != node;
         }
         else {
-          isFalsePath = !setLongPathWrapper.contains(destid + "##" + finwrap.source);
+          BitSet destinations = longRangeFinallyPaths[finwrap.source.index];
+          isFalsePath = destinations == null || !destinations.get(dest.index);
         }
 
         if (isFalsePath) {
@@ -643,31 +647,31 @@ public class SSAUConstructorSparseEx {
         if (!mapTrueSource.isEmpty() && !mapNew.isEmpty()) { // FIXME: what for??
 
           // replace phi versions with corresponding phantom ones
-          HashMap<VarVersionPair, VarVersionPair> mapPhantom = phantomexitnodes.get(predid);
+          LongIntHashMap mapPhantom = phantomexitnodes.get(pred);
           if (mapPhantom == null) {
-            mapPhantom = new HashMap<>();
+            mapPhantom = new LongIntHashMap();
           }
 
           SFormsFastMapDirect mapExitVar = mapNew.getCopy();
           mapExitVar.complement(mapTrueSource);
 
-          for (Entry<Integer, FastSparseSet<Integer>> ent : mapExitVar.entryList()) {
+          for (Entry<Integer, FastIntSet> ent : mapExitVar.entryList()) {
             for (Integer version : ent.getValue()) {
 
               Integer varindex = ent.getKey();
-              VarVersionPair exitvar = new VarVersionPair(varindex, version);
-              FastSparseSet<Integer> newSet = mapNew.get(varindex);
+              long exitkey = VarVersionPair.pack(varindex, version);
+              FastIntSet newSet = mapNew.get(varindex);
 
               // remove the actual exit version
               newSet.remove(version);
 
               // get or create phantom version
-              VarVersionPair phantomvar = mapPhantom.get(exitvar);
-              if (phantomvar == null) {
-                Integer newversion = getNextFreeVersion(exitvar.var, null);
-                phantomvar = new VarVersionPair(exitvar.var, newversion.intValue());
+              int phantomversion = mapPhantom.get(exitkey, -1);
+              if (phantomversion < 0) {
+                phantomversion = getNextFreeVersion(varindex, null);
+                VarVersionPair phantomvar = new VarVersionPair(varindex.intValue(), phantomversion);
 
-                VarVersionNode exitnode = ssuversions.nodes.getWithKey(exitvar);
+                VarVersionNode exitnode = ssuversions.nodes.getWithKey(new VarVersionPair(varindex.intValue(), version.intValue()));
                 VarVersionNode phantomnode = ssuversions.createNode(phantomvar);
                 phantomnode.flags |= VarVersionNode.FLAG_PHANTOM_FINEXIT;
 
@@ -675,16 +679,16 @@ public class SSAUConstructorSparseEx {
                 exitnode.addSuccessor(edge);
                 phantomnode.addPredecessor(edge);
 
-                mapPhantom.put(exitvar, phantomvar);
+                mapPhantom.put(exitkey, phantomversion);
               }
 
               // add phantom version
-              newSet.add(phantomvar.version);
+              newSet.add(phantomversion);
             }
           }
 
           if (!mapPhantom.isEmpty()) {
-            phantomexitnodes.put(predid, mapPhantom);
+            phantomexitnodes.put(pred, mapPhantom);
           }
         }
       }
@@ -715,7 +719,7 @@ public class SSAUConstructorSparseEx {
       return false;
     }
 
-    for (Entry<Integer, FastSparseSet<Integer>> ent2 : map2.entryList()) {
+    for (Entry<Integer, FastIntSet> ent2 : map2.entryList()) {
       if (!InterpreterUtil.equalObjects(map1.get(ent2.getKey()), ent2.getValue())) {
         return false;
       }
@@ -726,7 +730,7 @@ public class SSAUConstructorSparseEx {
 
 
   private void setCurrentVar(SFormsFastMapDirect varmap, Integer var, Integer vers) {
-    FastSparseSet<Integer> set = factory.spawnEmptySet();
+    FastIntSet set = new FastIntSet();
     set.add(vers);
     varmap.put(var, set);
   }
@@ -754,7 +758,7 @@ public class SSAUConstructorSparseEx {
           map = new SFormsFastMapDirect();
           setCurrentVar(map, varindex, version);
 
-          extraVarVersions.put(dgraph.nodes.getWithKey(flatthelper.getMapDestinationNodes().get(stat.getStats().get(i).id)[0]).id, map);
+          extraVarVersions[dgraph.nodes.getWithKey(flatthelper.getMapDestinationNodes().get(stat.getStats().get(i).id)[0]).index] = map;
           //ssuversions.createOrGetNode(new VarVersionPair(varindex, version));
           ssuversions.createNode(new VarVersionPair(varindex, version));
         }
@@ -777,7 +781,7 @@ public class SSAUConstructorSparseEx {
     for (int i = 0; i < paramcount; i++) {
       int version = getNextFreeVersion(varindex, root); // == 1
 
-      FastSparseSet<Integer> set = factory.spawnEmptySet();
+      FastIntSet set = new FastIntSet();
       set.add(version);
       map.put(varindex, set);
       ssuversions.createNode(new VarVersionPair(varindex, version));
@@ -840,7 +844,7 @@ public class SSAUConstructorSparseEx {
     return null;
   }
 
-  public HashMap<VarVersionPair, Integer> getMapVersionFirstRange() {
+  public LongIntHashMap getMapVersionFirstRange() {
     return mapVersionFirstRange;
   }
 
@@ -848,7 +852,7 @@ public class SSAUConstructorSparseEx {
     return mapFieldVars;
   }
 
-  public HashMap<VarVersionPair, VarVersionPair> getVarAssignmentMap() {
+  public LongObjectHashMap<VarVersionPair> getVarAssignmentMap() {
     return varAssignmentMap;
   }
 }
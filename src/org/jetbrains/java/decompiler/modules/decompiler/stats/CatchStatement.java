@@ -254,6 +254,7 @@ public final class CatchStatement extends Statement {
   }
 
   public void setTryType(int tryType) {
+    structureChanged();
     this.tryType = tryType;
   }
 
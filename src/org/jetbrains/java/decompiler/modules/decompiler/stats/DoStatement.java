@@ -223,6 +223,7 @@ public final class DoStatement extends Statement {
   }
 
   public void setInitExprent(Exprent initExprent) {
+    structureChanged();
     this.initExprent.set(0, initExprent);
   }
 
@@ -231,6 +232,7 @@ public final class DoStatement extends Statement {
   }
 
   public void setLooptype(int looptype) {
+    structureChanged();
     this.looptype = looptype;
   }
 }
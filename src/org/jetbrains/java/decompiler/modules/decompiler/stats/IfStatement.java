@@ -279,6 +279,7 @@ public final class IfStatement extends Statement {
     }
 
     headexprent.set(0, ifexpr);
+    structureChanged();
   }
 
   @Override
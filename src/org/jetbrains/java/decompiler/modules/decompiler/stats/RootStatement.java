@@ -1,14 +1,24 @@
 // Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.jetbrains.java.decompiler.modules.decompiler.stats;
 
+import org.jetbrains.java.decompiler.main.DecompilerContext;
 import org.jetbrains.java.decompiler.main.collectors.BytecodeMappingTracer;
+import org.jetbrains.java.decompiler.main.collectors.CounterContainer;
 import org.jetbrains.java.decompiler.modules.decompiler.ExprProcessor;
+import org.jetbrains.java.decompiler.modules.decompiler.sforms.DirectGraph;
+import org.jetbrains.java.decompiler.modules.decompiler.sforms.FlattenStatementsHelper;
 import org.jetbrains.java.decompiler.util.TextBuffer;
 import org.jetbrains.java.decompiler.util.StartEndPair;
 
 public class RootStatement extends Statement {
   private final DummyExitStatement dummyExit;
 
+  // flattened graph, valid as long as the structure counter it was built at is unchanged
+  private FlattenStatementsHelper flattenHelper;
+  private DirectGraph directGraph;
+  private CounterContainer graphCounters;
+  private int graphVersion;
+
   public RootStatement(Statement head, DummyExitStatement dummyExit) {
     type = Statement.TYPE_ROOT;
 
@@ -24,6 +34,33 @@ public class RootStatement extends Statement {
     return ExprProcessor.listToJava(varDefinitions, indent, tracer).append(first.toJava(indent, tracer));
   }
 
+  /**
+   * Returns the flattened graph of this tree, building it again only if the structure changed since the last call
+   * (see {@link Statement#structureChanged()}). Node exprent lists are the lists of the statements, so changes to
+   * exprents are visible without a rebuild.
+   */
+  public DirectGraph getDirectGraph() {
+    CounterContainer counters = DecompilerContext.getCounterContainer();
+    int version = counters.getCounter(CounterContainer.STRUCTURE_COUNTER);
+
+    if (directGraph == null || graphCounters != counters || graphVersion != version) {
+      flattenHelper = new FlattenStatementsHelper();
+      directGraph = flattenHelper.buildDirectGraph(this);
+      graphCounters = counters;
+      graphVersion = version;
+    }
+
+    return directGraph;
+  }
+
+  /**
+   * @return the helper that built the graph returned by {@link #getDirectGraph()}
+   */
+  public FlattenStatementsHelper getFlattenHelper() {
+    getDirectGraph();
+    return flattenHelper;
+  }
+
   public DummyExitStatement getDummyExit() {
     return dummyExit;
   }
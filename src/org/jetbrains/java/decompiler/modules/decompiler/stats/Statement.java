@@ -67,7 +67,7 @@ public class Statement implements IMatchable {
   private final Map<Integer, List<Statement>> mapPredStates = new HashMap<>();
 
   // statement as graph
-  protected final VBStyleCollection<Statement, Integer> stats = new VBStyleCollection<>();
+  protected final VBStyleCollection<Statement, Integer> stats = new ChildStatements();
 
   protected Statement parent;
 
@@ -298,6 +298,7 @@ public class Statement implements IMatchable {
   }
 
   public void addPredecessor(StatEdge edge) {
+    structureChanged();
     addEdgeInternal(DIRECTION_BACKWARD, edge);
   }
 
@@ -307,10 +308,12 @@ public class Statement implements IMatchable {
       return;
     }
 
+    structureChanged();
     removeEdgeInternal(DIRECTION_BACKWARD, edge);
   }
 
   public void addSuccessor(StatEdge edge) {
+    structureChanged();
     addEdgeInternal(DIRECTION_FORWARD, edge);
 
     if (edge.closure != null) {
@@ -326,6 +329,7 @@ public class Statement implements IMatchable {
       return;
     }
 
+    structureChanged();
     removeEdgeInternal(DIRECTION_FORWARD, edge);
 
     if (edge.closure != null) {
@@ -616,6 +620,7 @@ public class Statement implements IMatchable {
   // *****************************************************************************
 
   public void changeEdgeNode(int direction, StatEdge edge, Statement value) {
+    structureChanged();
 
     Map<Integer, List<StatEdge>> mapEdges = direction == DIRECTION_BACKWARD ? mapPredEdges : mapSuccEdges;
     Map<Integer, List<Statement>> mapStates = direction == DIRECTION_BACKWARD ? mapPredStates : mapSuccStates;
@@ -655,6 +660,8 @@ public class Statement implements IMatchable {
       return;
     }
 
+    structureChanged();
+
     if (oldtype == StatEdge.TYPE_EXCEPTION || newtype == StatEdge.TYPE_EXCEPTION) {
       throw new RuntimeException("Invalid edge type!");
     }
@@ -743,6 +750,7 @@ public class Statement implements IMatchable {
   }
 
   public void setFirst(Statement first) {
+    structureChanged();
     this.first = first;
   }
 
@@ -804,6 +812,7 @@ public class Statement implements IMatchable {
   }
 
   public void setParent(Statement parent) {
+    structureChanged();
     this.parent = parent;
   }
 
@@ -828,6 +837,7 @@ public class Statement implements IMatchable {
   }
 
   public void setExprents(List<Exprent> exprents) {
+    structureChanged();
     this.exprents = exprents;
   }
 
@@ -953,4 +963,83 @@ public class Statement implements IMatchable {
 
     return true;
   }
-}
\ No newline at end of file
+
+  /**
+   * Records a change that can alter the flattened form of a statement tree, invalidating the graph cached by
+   * {@link RootStatement#getDirectGraph()}. Statement and edge mutators call this themselves; code that changes
+   * other properties read by {@link org.jetbrains.java.decompiler.modules.decompiler.sforms.FlattenStatementsHelper}
+   * directly, e.g. the public {@code iftype} field, has to call it explicitly.
+   */
+  public static void structureChanged() {
+    DecompilerContext.getCounterContainer().getCounterAndIncrement(CounterContainer.STRUCTURE_COUNTER);
+  }
+
+  // many helpers edit the child list directly, so it reports changes by itself
+  private static final class ChildStatements extends VBStyleCollection<Statement, Integer> {
+    @Override
+    public boolean add(Statement element) {
+      structureChanged();
+      return super.add(element);
+    }
+
+    @Override
+    public void add(int index, Statement element) {
+      structureChanged();
+      super.add(index, element);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Statement> c) {
+      structureChanged();
+      return super.addAll(c);
+    }
+
+    @Override
+    public void addAllWithKey(Collection<Statement> elements, Collection<Integer> keys) {
+      structureChanged();
+      super.addAllWithKey(elements, keys);
+    }
+
+    @Override
+    public void addWithKey(Statement element, Integer key) {
+      structureChanged();
+      super.addWithKey(element, key);
+    }
+
+    @Override
+    public Statement putWithKey(Statement element, Integer key) {
+      structureChanged();
+      return super.putWithKey(element, key);
+    }
+
+    @Override
+    public void addWithKeyAndIndex(int index, Statement element, Integer key) {
+      structureChanged();
+      super.addWithKeyAndIndex(index, element, key);
+    }
+
+    @Override
+    public void removeWithKey(Integer key) {
+      structureChanged();
+      super.removeWithKey(key);
+    }
+
+    @Override
+    public Statement remove(int index) {
+      structureChanged();
+      return super.remove(index);
+    }
+
+    @Override
+    public Statement set(int index, Statement element) {
+      structureChanged();
+      return super.set(index, element);
+    }
+
+    @Override
+    public void clear() {
+      structureChanged();
+      super.clear();
+    }
+  }
+}
@@ -165,6 +165,7 @@ public final class SwitchStatement extends Statement {
     swexpr.setCaseValues(caseValues);
 
     headexprent.set(0, swexpr);
+    structureChanged();
   }
 
   @Override
@@ -90,6 +90,7 @@ public class SynchronizedStatement extends Statement {
   @Override
   public void initExprents() {
     headexprent.set(0, first.getExprents().remove(first.getExprents().size() - 1));
+    structureChanged();
   }
 
   @Override
@@ -28,6 +28,7 @@ import org.jetbrains.java.decompiler.struct.gen.MethodDescriptor;
 import org.jetbrains.java.decompiler.struct.gen.VarType;
 import org.jetbrains.java.decompiler.struct.gen.generics.GenericMain;
 import org.jetbrains.java.decompiler.struct.gen.generics.GenericType;
+import org.jetbrains.java.decompiler.util.LongObjectHashMap;
 import org.jetbrains.java.decompiler.util.StatementIterator;
 
 import java.util.*;
@@ -896,7 +897,7 @@ public class VarDefinitionHelper {
       return 0;
     });
 
-    Map<VarVersionPair, LocalVariable> lvts = new HashMap<>();
+    LongObjectHashMap<LocalVariable> lvts = new LongObjectHashMap<>();
 
     for (Entry<VarVersionPair, VarInfo> e : types.entrySet()) {
       VarVersionPair idx = e.getKey();
@@ -916,7 +917,7 @@ public class VarDefinitionHelper {
           lvt = lvt.rename(rename);
         }
         varproc.setVarLVT(idx, lvt);
-        lvts.put(idx, lvt);
+        lvts.put(idx.toLong(), lvt);
       }
     }
 
@@ -972,8 +973,8 @@ public class VarDefinitionHelper {
     }
   }
 
-  private void applyTypes(Statement stat, Map<VarVersionPair, LocalVariable> types) {
-    if (stat == null || types.size() == 0) {
+  private void applyTypes(Statement stat, LongObjectHashMap<LocalVariable> types) {
+    if (stat == null || types.isEmpty()) {
       return;
     }
 
@@ -998,7 +999,7 @@ public class VarDefinitionHelper {
     }
   }
 
-  private void applyTypes(Exprent exprent, Map<VarVersionPair, LocalVariable> types) {
+  private void applyTypes(Exprent exprent, LongObjectHashMap<LocalVariable> types) {
     if (exprent == null) {
       return;
     }
@@ -1008,7 +1009,7 @@ public class VarDefinitionHelper {
     for (Exprent expr : lst) {
       if (expr.type == Exprent.EXPRENT_VAR) {
         VarExprent var = (VarExprent)expr;
-        LocalVariable lvt = types.get(new VarVersionPair(var));
+        LocalVariable lvt = types.get(var.getVarVersionKey());
         if (lvt != null) {
           var.setLVT(lvt);
         } else {
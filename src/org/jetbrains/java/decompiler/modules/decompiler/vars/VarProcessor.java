@@ -9,19 +9,19 @@ import org.jetbrains.java.decompiler.struct.StructMethod;
 import org.jetbrains.java.decompiler.struct.attr.StructLocalVariableTableAttribute.LocalVariable;
 import org.jetbrains.java.decompiler.struct.gen.MethodDescriptor;
 import org.jetbrains.java.decompiler.struct.gen.VarType;
+import org.jetbrains.java.decompiler.util.LongObjectHashMap;
 import org.jetbrains.java.decompiler.util.StartEndPair;
 import org.jetbrains.java.decompiler.util.TextUtil;
 
 import java.util.*;
-import java.util.Map.Entry;
 import java.util.stream.Collectors;
 
 public class VarProcessor {
   private final VarNamesCollector varNamesCollector = new VarNamesCollector();
   private final StructMethod method;
   private final MethodDescriptor methodDescriptor;
-  private Map<VarVersionPair, String> mapVarNames = new HashMap<>();
-  private Map<VarVersionPair, LocalVariable> mapVarLVTs = new HashMap<>();
+  private LongObjectHashMap<String> mapVarNames = new LongObjectHashMap<>();
+  private final LongObjectHashMap<LocalVariable> mapVarLVTs = new LongObjectHashMap<>();
   private VarVersionsProcessor varVersions;
   private final Map<VarVersionPair, String> thisVars = new HashMap<>();
   private final Set<VarVersionPair> externalVars = new HashSet<>();
@@ -38,7 +38,7 @@ public class VarProcessor {
   }
 
   public void setVarDefinitions(Statement root) {
-    mapVarNames = new HashMap<>();
+    mapVarNames = new LongObjectHashMap<>();
     new VarDefinitionHelper(root, method, this).setVarDefinitions();
   }
 
@@ -49,16 +49,14 @@ public class VarProcessor {
 
     Map<Integer, VarVersionPair> mapOriginalVarIndices = varVersions.getMapOriginalVarIndices();
 
-    List<VarVersionPair> listVars = new ArrayList<>(mapVarNames.keySet());
-    listVars.sort(Comparator.comparingInt(o -> o.var));
-
     Map<String, Integer> mapNames = new HashMap<>();
 
-    for (VarVersionPair pair : listVars) {
+    // sorted by var, then version
+    for (long pair : mapVarNames.sortedKeys()) {
       String name = mapVarNames.get(pair);
 
       boolean lvtName = false;
-      VarVersionPair key = mapOriginalVarIndices.get(pair.var);
+      VarVersionPair key = mapOriginalVarIndices.get(VarVersionPair.unpackVar(pair));
       if (key != null) {
         String debugName = mapDebugVarNames.get(key);
         if (debugName != null && TextUtil.isValidIdentifier(debugName, method.getBytecodeVersion())) {
@@ -87,9 +85,9 @@ public class VarProcessor {
   }
 
   public void refreshVarNames(VarNamesCollector vc) {
-    Map<VarVersionPair, String> tempVarNames = new HashMap<>(mapVarNames);
-    for (Entry<VarVersionPair, String> ent : tempVarNames.entrySet()) {
-      mapVarNames.put(ent.getKey(), vc.getFreeName(ent.getValue()));
+    // sorted by var, then version, so the same variable keeps a clashing name on every run
+    for (long pair : mapVarNames.sortedKeys()) {
+      mapVarNames.put(pair, vc.getFreeName(mapVarNames.get(pair)));
     }
   }
 
@@ -108,15 +106,23 @@ public class VarProcessor {
   }
 
   public String getVarName(VarVersionPair pair) {
-    return mapVarNames == null ? null : mapVarNames.get(pair);
+    return mapVarNames == null ? null : mapVarNames.get(pair.toLong());
   }
 
   public void setVarName(VarVersionPair pair, String name) {
-    mapVarNames.put(pair, name);
+    mapVarNames.put(pair.toLong(), name);
   }
 
   public Collection<String> getVarNames() {
-    return mapVarNames != null ? mapVarNames.values() : Collections.emptySet();
+    if (mapVarNames == null) {
+      return Collections.emptySet();
+    }
+
+    List<String> names = new ArrayList<>(mapVarNames.size());
+    for (int slot = mapVarNames.nextSlot(0); slot >= 0; slot = mapVarNames.nextSlot(slot + 1)) {
+      names.add(mapVarNames.valueAt(slot));
+    }
+    return names;
   }
 
   public int getVarFinal(VarVersionPair pair) {
@@ -192,10 +198,10 @@ public class VarProcessor {
   }
 
   public void setVarLVT(VarVersionPair var, LocalVariable lvt) {
-    mapVarLVTs.put(var, lvt);
+    mapVarLVTs.put(var.toLong(), lvt);
   }
 
   public LocalVariable getVarLVT(VarVersionPair var) {
-    return mapVarLVTs.get(var);
+    return mapVarLVTs.get(var.toLong());
   }
 }
@@ -25,6 +25,30 @@ public class VarVersionPair {
     this.version = var.getVersion();
   }
 
+  /**
+   * Packs a var-version pair into a single {@code long}, for use as a key of the primitive
+   * collections in {@code org.jetbrains.java.decompiler.util}.
+   */
+  public static long pack(int var, int version) {
+    return ((long)var << 32) | (version & 0xFFFFFFFFL);
+  }
+
+  public static int unpackVar(long key) {
+    return (int)(key >> 32);
+  }
+
+  public static int unpackVersion(long key) {
+    return (int)key;
+  }
+
+  public static VarVersionPair unpack(long key) {
+    return new VarVersionPair(unpackVar(key), unpackVersion(key));
+  }
+
+  public long toLong() {
+    return pack(var, version);
+  }
+
   @Override
   public boolean equals(Object o) {
     if (o == this) return true;
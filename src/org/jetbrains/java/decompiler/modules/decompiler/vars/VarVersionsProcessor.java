@@ -8,14 +8,15 @@ import org.jetbrains.java.decompiler.modules.decompiler.exps.ConstExprent;
 import org.jetbrains.java.decompiler.modules.decompiler.exps.Exprent;
 import org.jetbrains.java.decompiler.modules.decompiler.exps.VarExprent;
 import org.jetbrains.java.decompiler.modules.decompiler.sforms.DirectGraph;
-import org.jetbrains.java.decompiler.modules.decompiler.sforms.FlattenStatementsHelper;
 import org.jetbrains.java.decompiler.modules.decompiler.sforms.SSAConstructorSparseEx;
 import org.jetbrains.java.decompiler.modules.decompiler.stats.RootStatement;
 import org.jetbrains.java.decompiler.struct.StructMethod;
 import org.jetbrains.java.decompiler.struct.gen.MethodDescriptor;
 import org.jetbrains.java.decompiler.struct.gen.VarType;
 import org.jetbrains.java.decompiler.util.DotExporter;
-import org.jetbrains.java.decompiler.util.FastSparseSetFactory.FastSparseSet;
+import org.jetbrains.java.decompiler.util.FastIntSet;
+import org.jetbrains.java.decompiler.util.LongHashSet;
+import org.jetbrains.java.decompiler.util.LongIntHashMap;
 
 import java.util.*;
 import java.util.Map.Entry;
@@ -34,8 +35,7 @@ public class VarVersionsProcessor {
     SSAConstructorSparseEx ssa = new SSAConstructorSparseEx();
     ssa.splitVariables(root, method);
 
-    FlattenStatementsHelper flattenHelper = new FlattenStatementsHelper();
-    DirectGraph graph = flattenHelper.buildDirectGraph(root);
+    DirectGraph graph = root.getDirectGraph();
 
     DotExporter.toDotFile(graph, method, "setVarVersions");
 
@@ -54,20 +54,21 @@ public class VarVersionsProcessor {
 
   private static void mergePhiVersions(SSAConstructorSparseEx ssa, DirectGraph graph) {
     // collect phi versions
-    List<Set<VarVersionPair>> lst = new ArrayList<>();
-    for (Entry<VarVersionPair, FastSparseSet<Integer>> ent : ssa.getPhi().entrySet()) {
-      Set<VarVersionPair> set = new HashSet<>();
-      set.add(ent.getKey());
-      for (Integer version : ent.getValue()) {
-        set.add(new VarVersionPair(ent.getKey().var, version.intValue()));
+    List<LongHashSet> lst = new ArrayList<>();
+    for (Entry<VarVersionPair, FastIntSet> ent : ssa.getPhi().entrySet()) {
+      int var = ent.getKey().var;
+      FastIntSet versions = ent.getValue();
+
+      LongHashSet set = new LongHashSet();
+      set.add(ent.getKey().toLong());
+      for (int version = versions.next(0); version >= 0; version = versions.next(version + 1)) {
+        set.add(VarVersionPair.pack(var, version));
       }
 
       for (int i = lst.size() - 1; i >= 0; i--) {
-        Set<VarVersionPair> tset = lst.get(i);
-        Set<VarVersionPair> intersection = new HashSet<>(set);
-        intersection.retainAll(tset);
+        LongHashSet tset = lst.get(i);
 
-        if (!intersection.isEmpty()) {
+        if (set.intersects(tset)) {
           set.addAll(tset);
           lst.remove(i);
         }
@@ -76,24 +77,22 @@ public class VarVersionsProcessor {
       lst.add(set);
     }
 
-    Map<VarVersionPair, Integer> phiVersions = new HashMap<>();
-    for (Set<VarVersionPair> set : lst) {
+    LongIntHashMap phiVersions = new LongIntHashMap();
+    for (LongHashSet set : lst) {
       int min = Integer.MAX_VALUE;
-      for (VarVersionPair paar : set) {
-        if (paar.version < min) {
-          min = paar.version;
-        }
+      for (int slot = set.nextSlot(0); slot >= 0; slot = set.nextSlot(slot + 1)) {
+        min = Math.min(min, VarVersionPair.unpackVersion(set.keyAt(slot)));
       }
 
-      for (VarVersionPair paar : set) {
-        phiVersions.put(new VarVersionPair(paar.var, paar.version), min);
+      for (int slot = set.nextSlot(0); slot >= 0; slot = set.nextSlot(slot + 1)) {
+        phiVersions.put(set.keyAt(slot), min);
       }
     }
 
     updateVersions(graph, phiVersions);
   }
 
-  private static void updateVersions(DirectGraph graph, final Map<VarVersionPair, Integer> versions) {
+  private static void updateVersions(DirectGraph graph, final LongIntHashMap versions) {
     graph.iterateExprents(exprent -> {
       List<Exprent> lst = exprent.getAllExprents(true);
       lst.add(exprent);
@@ -101,8 +100,8 @@ public class VarVersionsProcessor {
       for (Exprent expr : lst) {
         if (expr.type == Exprent.EXPRENT_VAR) {
           VarExprent var = (VarExprent)expr;
-          Integer version = versions.get(new VarVersionPair(var));
-          if (version != null) {
+          int version = versions.get(var.getVarVersionKey(), -1);
+          if (version >= 0) {
             var.setVersion(version);
           }
         }
@@ -151,7 +150,7 @@ public class VarVersionsProcessor {
 
     boolean is_method_static = mt.hasModifier(CodeConstants.ACC_STATIC);
 
-    Map<VarVersionPair, Integer> mapMergedVersions = new HashMap<>();
+    LongIntHashMap mapMergedVersions = new LongIntHashMap();
 
     for (Entry<Integer, Set<Integer>> ent : mapVarVersions.entrySet()) {
 
@@ -182,7 +181,7 @@ public class VarVersionsProcessor {
                              VarType.getCommonMinType(firstMaxType, secondMaxType);
 
               mapExprentMaxTypes.put(firstPair, type);
-              mapMergedVersions.put(secondPair, firstPair.version);
+              mapMergedVersions.put(secondPair.toLong(), firstPair.version);
               mapExprentMaxTypes.remove(secondPair);
               mapExprentMinTypes.remove(secondPair);
 
@@ -214,7 +213,7 @@ public class VarVersionsProcessor {
 
     CounterContainer counters = DecompilerContext.getCounterContainer();
 
-    final Map<VarVersionPair, Integer> mapVarPaar = new HashMap<>();
+    final LongIntHashMap mapVarPaar = new LongIntHashMap();
     Map<Integer, VarVersionPair> mapOriginalVarIndices = new HashMap<>();
     mapOriginalVarIndices.putAll(this.mapOriginalVarIndices);
 
@@ -236,7 +235,7 @@ public class VarVersionsProcessor {
           mapFinalVars.put(newVar, mapFinalVars.remove(pair));
         }
 
-        mapVarPaar.put(pair, newIndex);
+        mapVarPaar.put(pair.toLong(), newIndex);
         mapOriginalVarIndices.put(newIndex, pair);
       }
     }
@@ -249,8 +248,8 @@ public class VarVersionsProcessor {
       for (Exprent expr : lst) {
         if (expr.type == Exprent.EXPRENT_VAR) {
           VarExprent newVar = (VarExprent)expr;
-          Integer newVarIndex = mapVarPaar.get(new VarVersionPair(newVar));
-          if (newVarIndex != null) {
+          int newVarIndex = mapVarPaar.get(newVar.getVarVersionKey(), -1);
+          if (newVarIndex >= 0) {
             newVar.setIndex(newVarIndex);
             newVar.setVersion(0);
           }
@@ -9,15 +9,18 @@ import org.jetbrains.java.decompiler.struct.lazy.LazyLoader;
 import org.jetbrains.java.decompiler.struct.lazy.LazyLoader.Link;
 import org.jetbrains.java.decompiler.util.DataInputFullStream;
 import org.jetbrains.java.decompiler.util.InterpreterUtil;
+import org.jetbrains.java.decompiler.util.ZipArchiveWriter;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.zip.ZipFile;
@@ -106,7 +109,18 @@ public class ContextUnit {
     classes = lstClasses;
   }
 
-  public void save() {
+  /**
+   * Writes the non-class entries of this unit and schedules decompilation of its classes on the given executor.
+   * Classes of an archive are handed to the result saver in unit order, and the archive is closed as soon as its last class is written.
+   * Classes of a folder are saved concurrently by the workers, each into its own file.
+   * A class that fails to decompile or save is logged and left out.
+   *
+   * @return a future completed once every class of this unit has been saved
+   */
+  public CompletableFuture<Void> save(Executor executor) {
+    List<Integer> indices = new ArrayList<>();
+    List<String> entryNames = new ArrayList<>();
+
     switch (type) {
       case TYPE_FOLDER:
         // create folder
@@ -117,25 +131,6 @@ public class ContextUnit {
           resultSaver.copyFile(pair[0], filename, pair[1]);
         }
 
-        // classes
-        for (int i = 0; i < classes.size(); i++) {
-          StructClass cl = classes.get(i);
-          if (!cl.isOwn()) {
-            continue;
-          }
-          String entryName = decompiledData.getClassEntryName(cl, classEntries.get(i));
-          if (entryName != null) {
-            String content = decompiledData.getClassContent(cl);
-            if (content != null) {
-              int[] mapping = null;
-              if (DecompilerContext.getOption(IFernflowerPreferences.BYTECODE_SOURCE_MAPPING)) {
-                mapping = DecompilerContext.getBytecodeSourceMapper().getOriginalLinesMapping();
-              }
-              resultSaver.saveClassFile(filename, cl.qualifiedName, entryName, content, mapping);
-            }
-          }
-        }
-
         break;
 
       case TYPE_JAR:
@@ -156,42 +151,235 @@ public class ContextUnit {
           }
         }
 
-        final List<Future<?>> futures = new LinkedList<>();
-        final ExecutorService decompileExecutor = Executors.newFixedThreadPool(Integer.parseInt((String) DecompilerContext.getProperty(IFernflowerPreferences.THREADS)));
-        final DecompilerContext rootContext = DecompilerContext.getCurrentContext();
-
-        // classes
-        for (int i = 0; i < classes.size(); i++) {
-          StructClass cl = classes.get(i);
-          String entryName = decompiledData.getClassEntryName(cl, classEntries.get(i));
-          if (entryName != null) {
-            futures.add(decompileExecutor.submit(() -> {
-              setContext(rootContext);
-              String content = decompiledData.getClassContent(cl);
-              int[] mapping = null;
-              if (DecompilerContext.getOption(IFernflowerPreferences.BYTECODE_SOURCE_MAPPING)) {
-                mapping = DecompilerContext.getBytecodeSourceMapper().getOriginalLinesMapping();
-              }
-              if (resultSaver instanceof IFabricResultSaver) {
-                ((IFabricResultSaver) resultSaver).saveClassEntry(archivePath, filename, cl.qualifiedName, entryName, content, mapping);
-              } else {
-                resultSaver.saveClassEntry(archivePath, filename, cl.qualifiedName, entryName, content);
-              }
-            }));
+        break;
+    }
+
+    // classes
+    for (int i = 0; i < classes.size(); i++) {
+      StructClass cl = classes.get(i);
+      if (type == TYPE_FOLDER && !cl.isOwn()) {
+        continue;
+      }
+      String entryName = decompiledData.getClassEntryName(cl, classEntries.get(i));
+      if (entryName != null) {
+        indices.add(i);
+        entryNames.add(entryName);
+      }
+    }
+
+    OrderedSaver saver = new OrderedSaver(entryNames.size());
+    if (entryNames.isEmpty()) {
+      saver.finish();
+      return saver.done;
+    }
+
+    DecompilerContext rootContext = DecompilerContext.getCurrentContext();
+    for (int i = 0; i < entryNames.size(); i++) {
+      int index = i;
+      StructClass cl = classes.get(indices.get(i));
+      String entryName = entryNames.get(i);
+      executor.execute(() -> {
+        ClassResult result;
+        try {
+          setContext(rootContext);
+          result = decompile(cl, entryName);
+        }
+        catch (Throwable t) {
+          // the class is left out, but the rest of the unit is still saved and its archive closed
+          logSaveFailure(rootContext, cl, t);
+          result = null;
+        }
+
+        if (type == TYPE_FOLDER) {
+          // every class goes to a file of its own, so there is nothing to order
+          if (result != null) {
+            saveClass(rootContext, result);
           }
+          saver.countDown();
         }
+        else {
+          saver.submit(rootContext, index, result);
+        }
+      });
+    }
 
-        decompileExecutor.shutdown();
+    return saver.done;
+  }
+
+  private ClassResult decompile(StructClass cl, String entryName) {
+    boolean mapped = DecompilerContext.getOption(IFernflowerPreferences.BYTECODE_SOURCE_MAPPING);
+
+    String previous = type == TYPE_FOLDER ? decompiledData.getUnchangedOutput(cl, filename, null, entryName)
+                                          : decompiledData.getUnchangedOutput(cl, archivePath, filename, entryName);
+    // a copied class has no line mapping to hand to the saver
+    if (previous != null && !(mapped && resultSaver instanceof IFabricResultSaver)) {
+      return new ClassResult(cl, entryName, previous);
+    }
+
+    ByteBuffer content = decompiledData.getEncodedClassContent(cl);
+    int[] mapping = null;
+    if (mapped) {
+      mapping = DecompilerContext.getBytecodeSourceMapper().getOriginalLinesMapping();
+    }
+
+    // archive entries are saved one at a time in order, so deflate them here, on the decompiler thread
+    if (type != TYPE_FOLDER && !(resultSaver instanceof IFabricResultSaver) && resultSaver instanceof ZipArchiveWriter.CompressedEntrySaver) {
+      ByteBuffer data = content != null ? content : ByteBuffer.wrap(InterpreterUtil.EMPTY_BYTE_ARRAY);
+      return new ClassResult(cl, entryName, ZipArchiveWriter.compress(data));
+    }
+    return new ClassResult(cl, entryName, content, mapping);
+  }
 
-        for (Future<?> future : futures) {
-          try {
-            future.get();
-          } catch (InterruptedException | ExecutionException e) {
-            throw new RuntimeException(e);
+  private void saveClass(DecompilerContext rootContext, ClassResult result) {
+    try {
+      saveClass(result);
+    }
+    catch (Throwable t) {
+      logSaveFailure(rootContext, result.cl, t);
+    }
+  }
+
+  private static void logSaveFailure(DecompilerContext rootContext, StructClass cl, Throwable t) {
+    rootContext.logger.writeMessage("Class " + cl.qualifiedName + " couldn't be saved.", t);
+  }
+
+  private void saveClass(ClassResult result) {
+    if (result.previousOutput != null) {
+      if (type == TYPE_FOLDER) {
+        resultSaver.copyFile(result.previousOutput, filename, result.entryName);
+      }
+      else {
+        resultSaver.copyEntry(result.previousOutput, archivePath, filename, result.entryName);
+      }
+    }
+    else if (type == TYPE_FOLDER) {
+      if (result.content != null) {
+        resultSaver.saveEncodedClassFile(filename, result.cl.qualifiedName, result.entryName, result.content, result.mapping);
+      }
+    }
+    else if (result.compressed != null) {
+      ((ZipArchiveWriter.CompressedEntrySaver)resultSaver).saveCompressedClassEntry(archivePath, filename, result.cl.qualifiedName,
+                                                                                     result.entryName, result.compressed);
+    }
+    else if (resultSaver instanceof IFabricResultSaver) {
+      ((IFabricResultSaver) resultSaver).saveEncodedClassEntry(archivePath, filename, result.cl.qualifiedName, result.entryName, result.content, result.mapping);
+    }
+    else {
+      resultSaver.saveEncodedClassEntry(archivePath, filename, result.cl.qualifiedName, result.entryName, result.content);
+    }
+  }
+
+  private static final class ClassResult {
+    final StructClass cl;
+    final String entryName;
+    final ByteBuffer content;  // UTF-8
+    final int[] mapping;
+    final ZipArchiveWriter.CompressedEntry compressed;  // content deflated for an archive entry
+    final String previousOutput;  // file or archive of an earlier run to copy the class from
+
+    ClassResult(StructClass cl, String entryName, ByteBuffer content, int[] mapping) {
+      this(cl, entryName, content, mapping, null, null);
+    }
+
+    ClassResult(StructClass cl, String entryName, ZipArchiveWriter.CompressedEntry compressed) {
+      this(cl, entryName, null, null, compressed, null);
+    }
+
+    ClassResult(StructClass cl, String entryName, String previousOutput) {
+      this(cl, entryName, null, null, null, previousOutput);
+    }
+
+    private ClassResult(StructClass cl,
+                        String entryName,
+                        ByteBuffer content,
+                        int[] mapping,
+                        ZipArchiveWriter.CompressedEntry compressed,
+                        String previousOutput) {
+      this.cl = cl;
+      this.entryName = entryName;
+      this.content = content;
+      this.mapping = mapping;
+      this.compressed = compressed;
+      this.previousOutput = previousOutput;
+    }
+  }
+
+  // Collects decompiled classes in whatever order they finish and saves the longest completed prefix,
+  // so that the output order does not depend on thread scheduling and no worker waits for another one.
+  private final class OrderedSaver {
+    // stands for a class that failed and is left out
+    private final ClassResult skipped = new ClassResult(null, null, (String)null);
+
+    final CompletableFuture<Void> done = new CompletableFuture<>();
+    private final ClassResult[] results;
+    private final AtomicInteger remaining;
+    private int next;
+    private boolean saving;  // a worker is saving the completed prefix
+
+    OrderedSaver(int count) {
+      results = new ClassResult[count];
+      remaining = new AtomicInteger(count);
+    }
+
+    // used by folder units, whose classes are saved directly by the worker that decompiled them
+    void countDown() {
+      if (remaining.decrementAndGet() == 0) {
+        finish();
+      }
+    }
+
+    // a null result is a class that couldn't be decompiled
+    void submit(DecompilerContext rootContext, int index, ClassResult result) {
+      synchronized (this) {
+        results[index] = result != null ? result : skipped;
+        if (saving) {
+          // the saving worker picks it up once it reaches the index
+          return;
+        }
+        saving = true;
+      }
+
+      // the results are saved outside the lock, so the other workers only hand theirs over
+      List<ClassResult> ready = new ArrayList<>();
+      while (true) {
+        boolean all;
+        synchronized (this) {
+          while (next < results.length && results[next] != null) {
+            ready.add(results[next]);
+            results[next++] = null;
+          }
+          all = next == results.length;
+          if (ready.isEmpty()) {
+            saving = false;
+            break;
+          }
+        }
+
+        for (ClassResult saved : ready) {
+          if (saved != skipped) {
+            saveClass(rootContext, saved);
           }
         }
+        ready.clear();
 
-        resultSaver.closeArchive(archivePath, filename);
+        if (all) {
+          finish();
+          return;
+        }
+      }
+    }
+
+    void finish() {
+      if (type == TYPE_JAR || type == TYPE_ZIP) {
+        try {
+          resultSaver.closeArchive(archivePath, filename);
+        }
+        catch (Throwable t) {
+          done.completeExceptionally(t);
+          return;
+        }
+      }
+      done.complete(null);
     }
   }
 
@@ -1,9 +1,29 @@
 // Copyright 2000-2017 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.jetbrains.java.decompiler.struct;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 public interface IDecompiledData {
 
   String getClassEntryName(StructClass cl, String entryname);
 
   String getClassContent(StructClass cl);
+
+  /**
+   * @return the content of the class encoded in UTF-8 between the position and the limit of the buffer, or null
+   */
+  default ByteBuffer getEncodedClassContent(StructClass cl) {
+    String content = getClassContent(cl);
+    return content != null ? ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)) : null;
+  }
+
+  /**
+   * @return the file or archive of an earlier run holding an up-to-date output of the class, to be copied instead of decompiling
+   * the class again; null if the class has to be decompiled. Parameters are those given to the result saver, with a null archive
+   * name for folder output.
+   */
+  default String getUnchangedOutput(StructClass cl, String path, String archiveName, String entryName) {
+    return null;
+  }
 }
@@ -218,6 +218,9 @@ public class StructClass extends StructMember {
     if (loader != null) {
       pool = null;
     }
+    for (StructMethod mt : methods) {
+      mt.clearParsedData();
+    }
   }
 
   public ConstantPool getPool() {
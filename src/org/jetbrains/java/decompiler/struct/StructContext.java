@@ -2,6 +2,7 @@
 package org.jetbrains.java.decompiler.struct;
 
 import org.jetbrains.java.decompiler.main.DecompilerContext;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
 import org.jetbrains.java.decompiler.main.extern.IResultSaver;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger.Severity;
 import org.jetbrains.java.decompiler.struct.gen.generics.GenericMain;
@@ -17,6 +18,12 @@ import java.net.URISyntaxException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.Manifest;
 
 public class StructContext {
@@ -62,10 +69,20 @@ public class StructContext {
     }
   }
 
-  public void saveContext() {
+  public void saveContext(Executor executor) {
+    List<CompletableFuture<Void>> pending = new ArrayList<>();
     for (ContextUnit unit : units.values()) {
       if (unit.isOwn()) {
-        unit.save();
+        pending.add(unit.save(executor));
+      }
+    }
+
+    for (CompletableFuture<Void> future : pending) {
+      try {
+        future.get();
+      }
+      catch (InterruptedException | ExecutionException e) {
+        throw new RuntimeException(e);
       }
     }
   }
@@ -148,32 +165,68 @@ public class StructContext {
     DecompilerContext.getLogger().writeMessage("Adding Archive: " + file.getAbsolutePath(), Severity.INFO);
     FileSystem fs = getZipFileSystem(file);
     ContextUnit unit = units.computeIfAbsent(externalPath + "/" + file.getName(), k -> new ContextUnit(type, externalPath, file.getName(), isOwn, saver, decompiledData));
-    Files.walkFileTree(fs.getPath("/"), new SimpleFileVisitor<Path>() {
-      @Override
-      public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
-        String name = path.toString().substring(1);
-        if (name.endsWith(".class")) {
-          addClass(unit, name.substring(0, name.length() - 6), file.getAbsolutePath(), path.toString().substring(1), isOwn, path);
-        } else {
-          if ("META-INF/MANIFEST.MF".equals(name)) {
-            unit.setManifest(new Manifest(Files.newInputStream(path)));
+
+    // own classes are read and parsed on a worker pool while the archive is still being walked,
+    // and registered afterwards in walk order so that the unit keeps a stable class order
+    Map<String, ClassProvider> ownProviders = new LinkedHashMap<>();
+    List<Future<?>> futures = new ArrayList<>();
+    // sources are added before the run-wide pool exists, so the archive gets its own, sized like that one
+    int threads = Integer.parseInt((String)DecompilerContext.getProperty(IFernflowerPreferences.THREADS));
+    ExecutorService loadExecutor = isOwn ? Executors.newFixedThreadPool(Math.max(threads, 1)) : null;
+    DecompilerContext rootContext = DecompilerContext.getCurrentContext();
+
+    try {
+      Files.walkFileTree(fs.getPath("/"), new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
+          String name = path.toString().substring(1);
+          if (name.endsWith(".class")) {
+            String className = name.substring(0, name.length() - 6);
+            ClassProvider provider = new ClassProvider(unit, file.getAbsolutePath(), name, isOwn, () -> Files.readAllBytes(path));
+            classes.put(className, provider);
+            if (isOwn) {
+              ownProviders.put(className, provider);
+              futures.add(loadExecutor.submit(() -> {
+                unit.setContext(rootContext);
+                provider.preload();
+              }));
+            }
+          } else {
+            if ("META-INF/MANIFEST.MF".equals(name)) {
+              unit.setManifest(new Manifest(Files.newInputStream(path)));
+            }
+            unit.addOtherEntry(file.getAbsolutePath(), name);
           }
-          unit.addOtherEntry(file.getAbsolutePath(), name);
+          return FileVisitResult.CONTINUE;
         }
-        return FileVisitResult.CONTINUE;
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+          String dirStr = dir.toString();
+          if (dirStr.length() > 1) unit.addDirEntry(dirStr.substring(1));
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    }
+    finally {
+      if (loadExecutor != null) {
+        loadExecutor.shutdown();
       }
+    }
 
-      @Override
-      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-        String dirStr = dir.toString();
-        if (dirStr.length() > 1) unit.addDirEntry(dirStr.substring(1));
-        return FileVisitResult.CONTINUE;
+    for (Future<?> future : futures) {
+      try {
+        future.get();
       }
-    });
-  }
+      catch (InterruptedException | ExecutionException e) {
+        throw new RuntimeException(e);
+      }
+    }
 
-  private void addClass(ContextUnit unit, String name, String externalPath, String internalPath, boolean isOwn, Path path) {
-    addClass(name, isOwn, new ClassProvider(unit, externalPath, internalPath, isOwn, () -> Files.readAllBytes(path)));
+    // failed preloads are retried here, so errors are reported on the calling thread
+    for (Map.Entry<String, ClassProvider> entry : ownProviders.entrySet()) {
+      ownClasses.put(entry.getKey(), entry.getValue().get());
+    }
   }
 
   private void addClass(ContextUnit unit, String name, String externalPath, String internalPath, boolean isOwn, ClassSupplier supplier) {
@@ -212,6 +265,17 @@ public class StructContext {
     return ownClasses;
   }
 
+  public byte[] getClassBytes(String name) throws IOException {
+    if (getClass(name) == null) {
+      return null;
+    }
+    LazyLoader.Link link = loader.getClassLink(name);
+    if (link == null) {
+      return null;
+    }
+    return link.data != null ? link.data : loader.getClassBytes(link.externalPath, link.internalPath);
+  }
+
   public boolean hasClass(String name) {
     return classes.containsKey(name);
   }
@@ -287,6 +351,8 @@ public class StructContext {
     private volatile ClassSupplier supplier;
     private final boolean own;
     private StructClass value;
+    private StructClass preloaded;
+    private byte[] preloadedData;
 
     ClassProvider(ContextUnit unit, String externalPath, String internalPath, boolean own, ClassSupplier supplier) {
       this.unit = unit;
@@ -311,9 +377,15 @@ public class StructContext {
       synchronized (this) {
         if (supplier == null) return value;
         try {
-          DecompilerContext.getLogger().writeMessage("  Loading Class: " + internalPath, Severity.INFO);
-          byte[] data = supplier.get();
-          StructClass cl = StructClass.create(new DataInputFullStream(data), own, loader);
+          byte[] data = preloadedData;
+          StructClass cl = preloaded;
+          if (cl == null) {
+            DecompilerContext.getLogger().writeMessage(() -> "  Loading Class: " + internalPath, Severity.INFO);
+            data = supplier.get();
+            cl = StructClass.create(new DataInputFullStream(data), own, loader);
+          }
+          preloaded = null;
+          preloadedData = null;
           unit.addClass(cl, internalPath);
           loader.addClassLink(cl.qualifiedName, new LazyLoader.Link(externalPath, internalPath, data));
           value = cl;
@@ -326,6 +398,23 @@ public class StructContext {
         }
       }
     }
+
+    /**
+     * Reads and parses the class without registering it, so that this can be done off the calling thread.
+     * Registration still happens in {@link #get()}; a failed preload is simply retried there.
+     */
+    void preload() {
+      synchronized (this) {
+        if (supplier == null || preloaded != null) return;
+        try {
+          DecompilerContext.getLogger().writeMessage(() -> "  Loading Class: " + internalPath, Severity.INFO);
+          byte[] data = supplier.get();
+          preloaded = StructClass.create(new DataInputFullStream(data), own, loader);
+          preloadedData = data;
+        }
+        catch (IOException | RuntimeException ignored) { }
+      }
+    }
   }
 
   interface ClassSupplier {
@@ -23,10 +23,11 @@ import org.jetbrains.java.decompiler.struct.gen.generics.GenericMain;
 import org.jetbrains.java.decompiler.struct.gen.generics.GenericMethodDescriptor;
 import org.jetbrains.java.decompiler.struct.gen.generics.GenericType;
 import org.jetbrains.java.decompiler.util.DataInputFullStream;
-import org.jetbrains.java.decompiler.util.VBStyleCollection;
 
 import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -66,8 +67,9 @@ public class StructMethod extends StructMember {
     return new StructMethod(accessFlags, attributes, values[0], values[1], bytecodeVersion, own ? code : null, clQualifiedName, signature);
   }
 
-  private static final int[] opr_iconst = {-1, 0, 1, 2, 3, 4, 5};
-  private static final int[] opr_loadstore = {0, 1, 2, 3, 0, 1, 2, 3, 0, 1, 2, 3, 0, 1, 2, 3, 0, 1, 2, 3};
+  // operands are never modified, so the implicit ones of the short forms are shared
+  private static final int[][] opr_iconst = {{-1}, {0}, {1}, {2}, {3}, {4}, {5}};
+  private static final int[][] opr_loadstore = {{0}, {1}, {2}, {3}};
   private static final int[] opcs_load = {opc_iload, opc_lload, opc_fload, opc_dload, opc_aload};
   private static final int[] opcs_store = {opc_istore, opc_lstore, opc_fstore, opc_dstore, opc_astore};
 
@@ -78,6 +80,8 @@ public class StructMethod extends StructMember {
   private final byte[] codeAndExceptions;
   private InstructionSequence seq = null;
   private boolean expanded = false;
+  // the parsed sequence is read-only, so it outlives releaseResources() until memory runs short
+  private SoftReference<InstructionSequence> parsedSeq = null;
   private final String classQualifiedName;
   private final GenericMethodDescriptor signature;
   private IVariableNameProvider renamer;
@@ -110,7 +114,12 @@ public class StructMethod extends StructMember {
 
   public void expandData(StructClass classStruct) throws IOException {
     if (codeAndExceptions != null && !expanded) {
-      seq = parseBytecode(new DataInputFullStream(codeAndExceptions), classStruct.getPool());
+      InstructionSequence parsed = parsedSeq != null ? parsedSeq.get() : null;
+      if (parsed == null) {
+        parsed = parseBytecode(codeAndExceptions, classStruct.getPool());
+        parsedSeq = new SoftReference<>(parsed);
+      }
+      seq = parsed;
       expanded = true;
     }
   }
@@ -122,47 +131,59 @@ public class StructMethod extends StructMember {
     }
   }
 
+  /**
+   * Drops the parsed bytecode kept for later {@link #expandData} calls, once the class is done with.
+   */
+  public void clearParsedData() {
+    parsedSeq = null;
+  }
+
   @SuppressWarnings("AssignmentToForLoopParameter")
-  private InstructionSequence parseBytecode(DataInputFullStream in, ConstantPool pool) throws IOException {
-    VBStyleCollection<Instruction, Integer> instructions = new VBStyleCollection<>();
+  private InstructionSequence parseBytecode(byte[] data, ConstantPool pool) {
+    int length = s4(data, 0);
+    int base = 4;  // code starts after its length
+
+    Instruction[] instructions = new Instruction[length / 3 + 4];
+    int[] offsets = new int[instructions.length];
+    int count = 0;
 
-    int length = in.readInt();
     for (int i = 0; i < length; ) {
       int offset = i;
 
-      int opcode = in.readUnsignedByte();
+      int opcode = u1(data, base + i);
       int group = GROUP_GENERAL;
 
       boolean wide = (opcode == opc_wide);
 
       if (wide) {
         i++;
-        opcode = in.readUnsignedByte();
+        opcode = u1(data, base + i);
       }
 
-      List<Integer> operands = new ArrayList<>();
+      int p = base + i + 1;  // first operand byte
+      int[] ops = null;
 
       if (opcode >= opc_iconst_m1 && opcode <= opc_iconst_5) {
-        operands.add(opr_iconst[opcode - opc_iconst_m1]);
+        ops = opr_iconst[opcode - opc_iconst_m1];
         opcode = opc_bipush;
       }
       else if (opcode >= opc_iload_0 && opcode <= opc_aload_3) {
-        operands.add(opr_loadstore[opcode - opc_iload_0]);
+        ops = opr_loadstore[(opcode - opc_iload_0) % 4];
         opcode = opcs_load[(opcode - opc_iload_0) / 4];
       }
       else if (opcode >= opc_istore_0 && opcode <= opc_astore_3) {
-        operands.add(opr_loadstore[opcode - opc_istore_0]);
+        ops = opr_loadstore[(opcode - opc_istore_0) % 4];
         opcode = opcs_store[(opcode - opc_istore_0) / 4];
       }
       else {
         switch (opcode) {
           case opc_bipush:
-            operands.add((int)in.readByte());
+            ops = new int[]{data[p]};
             i++;
             break;
           case opc_ldc:
           case opc_newarray:
-            operands.add(in.readUnsignedByte());
+            ops = new int[]{u1(data, p)};
             i++;
             break;
           case opc_sipush:
@@ -187,7 +208,7 @@ public class StructMethod extends StructMember {
             if (opcode != opc_sipush) {
               group = GROUP_JUMP;
             }
-            operands.add((int)in.readShort());
+            ops = new int[]{s2(data, p)};
             i += 2;
             break;
           case opc_ldc_w:
@@ -203,7 +224,7 @@ public class StructMethod extends StructMember {
           case opc_anewarray:
           case opc_checkcast:
           case opc_instanceof:
-            operands.add(in.readUnsignedShort());
+            ops = new int[]{u2(data, p)};
             i += 2;
             if (opcode >= opc_getstatic && opcode <= opc_putfield) {
               group = GROUP_FIELDACCESS;
@@ -214,8 +235,7 @@ public class StructMethod extends StructMember {
             break;
           case opc_invokedynamic:
             if (bytecodeVersion >= CodeConstants.BYTECODE_JAVA_7) { // instruction unused in Java 6 and before
-              operands.add(in.readUnsignedShort());
-              in.discard(2);
+              ops = new int[]{u2(data, p)};
               group = GROUP_INVOCATION;
               i += 4;
             }
@@ -232,11 +252,11 @@ public class StructMethod extends StructMember {
           case opc_astore:
           case opc_ret:
             if (wide) {
-              operands.add(in.readUnsignedShort());
+              ops = new int[]{u2(data, p)};
               i += 2;
             }
             else {
-              operands.add(in.readUnsignedByte());
+              ops = new int[]{u1(data, p)};
               i++;
             }
             if (opcode == opc_ret) {
@@ -245,71 +265,55 @@ public class StructMethod extends StructMember {
             break;
           case opc_iinc:
             if (wide) {
-              operands.add(in.readUnsignedShort());
-              operands.add((int)in.readShort());
+              ops = new int[]{u2(data, p), s2(data, p + 2)};
               i += 4;
             }
             else {
-              operands.add(in.readUnsignedByte());
-              operands.add((int)in.readByte());
+              ops = new int[]{u1(data, p), data[p + 1]};
               i += 2;
             }
             break;
           case opc_goto_w:
           case opc_jsr_w:
             opcode = opcode == opc_jsr_w ? opc_jsr : opc_goto;
-            operands.add(in.readInt());
+            ops = new int[]{s4(data, p)};
             group = GROUP_JUMP;
             i += 4;
             break;
           case opc_invokeinterface:
-            operands.add(in.readUnsignedShort());
-            operands.add(in.readUnsignedByte());
-            in.discard(1);
+            ops = new int[]{u2(data, p), u1(data, p + 2)};
             group = GROUP_INVOCATION;
             i += 4;
             break;
           case opc_multianewarray:
-            operands.add(in.readUnsignedShort());
-            operands.add(in.readUnsignedByte());
+            ops = new int[]{u2(data, p), u1(data, p + 2)};
             i += 3;
             break;
-          case opc_tableswitch:
-            in.discard((4 - (i + 1) % 4) % 4);
-            i += ((4 - (i + 1) % 4) % 4); // padding
-            operands.add(in.readInt());
-            i += 4;
-            int low = in.readInt();
-            operands.add(low);
-            i += 4;
-            int high = in.readInt();
-            operands.add(high);
-            i += 4;
-
-            for (int j = 0; j < high - low + 1; j++) {
-              operands.add(in.readInt());
-              i += 4;
+          case opc_tableswitch: {
+            int padding = (4 - (i + 1) % 4) % 4;
+            p += padding;
+            int low = s4(data, p + 4);
+            int high = s4(data, p + 8);
+            ops = new int[3 + high - low + 1];
+            for (int j = 0; j < ops.length; j++) {
+              ops[j] = s4(data, p + 4 * j);
             }
+            i += padding + 4 * ops.length;
             group = GROUP_SWITCH;
-
             break;
-          case opc_lookupswitch:
-            in.discard((4 - (i + 1) % 4) % 4);
-            i += ((4 - (i + 1) % 4) % 4); // padding
-            operands.add(in.readInt());
-            i += 4;
-            int npairs = in.readInt();
-            operands.add(npairs);
-            i += 4;
-
-            for (int j = 0; j < npairs; j++) {
-              operands.add(in.readInt());
-              i += 4;
-              operands.add(in.readInt());
-              i += 4;
+          }
+          case opc_lookupswitch: {
+            int padding = (4 - (i + 1) % 4) % 4;
+            p += padding;
+            int npairs = s4(data, p + 4);
+            ops = new int[2 + 2 * npairs];
+            for (int j = 0; j < ops.length; j++) {
+              ops[j] = s4(data, p + 4 * j);
             }
+            i += padding + 4 * ops.length;
             group = GROUP_SWITCH;
             break;
+          }
           case opc_ireturn:
           case opc_lreturn:
           case opc_freturn:
@@ -321,32 +325,29 @@ public class StructMethod extends StructMember {
         }
       }
 
-      int[] ops = null;
-      if (!operands.isEmpty()) {
-        ops = new int[operands.size()];
-        for (int j = 0; j < operands.size(); j++) {
-          ops[j] = operands.get(j);
-        }
-      }
-
       i++;
 
-      Instruction instr = Instruction.create(opcode, wide, group, bytecodeVersion, ops, i - offset);
-
-      instructions.addWithKey(instr, offset);
+      if (count == instructions.length) {
+        instructions = Arrays.copyOf(instructions, count * 2);
+        offsets = Arrays.copyOf(offsets, count * 2);
+      }
+      instructions[count] = Instruction.create(opcode, wide, group, bytecodeVersion, ops, i - offset);
+      offsets[count++] = offset;
     }
 
     // initialize exception table
-    List<ExceptionHandler> lstHandlers = new ArrayList<>();
+    int p = base + length;
+    int exception_count = u2(data, p);
+    p += 2;
 
-    int exception_count = in.readUnsignedShort();
-    for (int i = 0; i < exception_count; i++) {
+    List<ExceptionHandler> lstHandlers = new ArrayList<>(exception_count);
+    for (int i = 0; i < exception_count; i++, p += 8) {
       ExceptionHandler handler = new ExceptionHandler();
-      handler.from = in.readUnsignedShort();
-      handler.to = in.readUnsignedShort();
-      handler.handler = in.readUnsignedShort();
+      handler.from = u2(data, p);
+      handler.to = u2(data, p + 2);
+      handler.handler = u2(data, p + 4);
 
-      int excclass = in.readUnsignedShort();
+      int excclass = u2(data, p + 6);
       if (excclass != 0) {
         handler.exceptionClass = pool.getPrimitiveConstant(excclass).getString();
       }
@@ -354,7 +355,7 @@ public class StructMethod extends StructMember {
       lstHandlers.add(handler);
     }
 
-    InstructionSequence seq = new FullInstructionSequence(instructions, new ExceptionTable(lstHandlers));
+    InstructionSequence seq = new FullInstructionSequence(instructions, offsets, count, length, new ExceptionTable(lstHandlers));
 
     // initialize instructions
     int i = seq.length() - 1;
@@ -371,6 +372,22 @@ public class StructMethod extends StructMember {
     return seq;
   }
 
+  private static int u1(byte[] data, int pos) {
+    return data[pos] & 0xFF;
+  }
+
+  private static int u2(byte[] data, int pos) {
+    return ((data[pos] & 0xFF) << 8) | (data[pos + 1] & 0xFF);
+  }
+
+  private static int s2(byte[] data, int pos) {
+    return (short)u2(data, pos);
+  }
+
+  private static int s4(byte[] data, int pos) {
+    return (data[pos] << 24) | ((data[pos + 1] & 0xFF) << 16) | ((data[pos + 2] & 0xFF) << 8) | (data[pos + 3] & 0xFF);
+  }
+
   public String getName() {
     return name;
   }
@@ -0,0 +1,142 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.java.decompiler.util;
+
+/**
+ * Square bit matrix over the nodes of a graph numbered densely from 0, e.g. the children of a statement.
+ * Row {@code i} is the set of nodes related to node {@code i}, so that a single relation query is a constant time
+ * bit test instead of a hash lookup.
+ * <p>
+ * A row is a plain {@code long[]} word vector of {@link #getWordCount()} words; the static helpers apply the
+ * set operations to such vectors a word at a time and also serve for temporary sets of the same nodes.
+ */
+public final class BitMatrix {
+  private final int size;
+  private final int wordCount;
+  private final long[][] rows;
+
+  public BitMatrix(int size) {
+    this.size = size;
+    this.wordCount = getWordCount(size);
+    this.rows = new long[size][wordCount];
+  }
+
+  public static int getWordCount(int size) {
+    return (size + 63) >>> 6;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getWordCount() {
+    return wordCount;
+  }
+
+  public boolean get(int row, int column) {
+    return get(rows[row], column);
+  }
+
+  public void set(int row, int column) {
+    set(rows[row], column);
+  }
+
+  public void clear(int row, int column) {
+    clear(rows[row], column);
+  }
+
+  /**
+   * @return the words of the row itself, modifications are visible in the matrix
+   */
+  public long[] getRow(int row) {
+    return rows[row];
+  }
+
+  public boolean isRowEmpty(int row) {
+    return isEmpty(rows[row]);
+  }
+
+  /**
+   * Removes the bits of {@code bits} from every row.
+   */
+  public void andNotAll(long[] bits) {
+    for (long[] row : rows) {
+      andNot(row, bits);
+    }
+  }
+
+  public long[] newVector() {
+    return new long[wordCount];
+  }
+
+  public static boolean get(long[] bits, int index) {
+    return (bits[index >>> 6] & (1L << index)) != 0;
+  }
+
+  public static void set(long[] bits, int index) {
+    bits[index >>> 6] |= 1L << index;
+  }
+
+  public static void clear(long[] bits, int index) {
+    bits[index >>> 6] &= ~(1L << index);
+  }
+
+  public static void or(long[] bits, long[] other) {
+    for (int i = bits.length - 1; i >= 0; i--) {
+      bits[i] |= other[i];
+    }
+  }
+
+  public static void and(long[] bits, long[] other) {
+    for (int i = bits.length - 1; i >= 0; i--) {
+      bits[i] &= other[i];
+    }
+  }
+
+  public static void andNot(long[] bits, long[] other) {
+    for (int i = bits.length - 1; i >= 0; i--) {
+      bits[i] &= ~other[i];
+    }
+  }
+
+  /**
+   * @return true if every bit of {@code other} is set in {@code bits}
+   */
+  public static boolean containsAll(long[] bits, long[] other) {
+    for (int i = bits.length - 1; i >= 0; i--) {
+      if ((other[i] & ~bits[i]) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public static boolean isEmpty(long[] bits) {
+    for (long word : bits) {
+      if (word != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the smallest set index not less than {@code from}, or -1 if there is none
+   */
+  public static int nextSetBit(long[] bits, int from) {
+    int word = from >>> 6;
+    if (word >= bits.length) {
+      return -1;
+    }
+
+    long value = bits[word] & (-1L << from);
+    while (true) {
+      if (value != 0) {
+        return (word << 6) + Long.numberOfTrailingZeros(value);
+      }
+      if (++word == bits.length) {
+        return -1;
+      }
+      value = bits[word];
+    }
+  }
+}
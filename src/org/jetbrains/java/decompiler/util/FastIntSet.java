@@ -0,0 +1,230 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.java.decompiler.util;
+
+import java.util.*;
+
+/**
+ * Bit set of small non-negative ints, used for the versions of a variable in SSA form. Unlike
+ * a generic sparse set it needs no element to bit mapping and never boxes its elements.
+ * <p>
+ * {@link #getCopy()} is constant time: the copies share their bits until one of them is modified.
+ */
+public final class FastIntSet implements Iterable<Integer> {
+  private static final long[] EMPTY_WORDS = new long[0];
+
+  private long[] words;
+
+  // words may be referenced by another set and have to be copied before modification
+  private boolean shared;
+
+  public FastIntSet() {
+    words = EMPTY_WORDS;
+  }
+
+  private FastIntSet(long[] words) {
+    this.words = words;
+    this.shared = true;
+  }
+
+  public FastIntSet getCopy() {
+    shared = true;
+    return new FastIntSet(words);
+  }
+
+  private long[] getWritableWords(int length) {
+    long[] data = words;
+    if (data.length < length) {
+      data = Arrays.copyOf(data, Math.max(length, data.length + (data.length >> 1)));
+    }
+    else if (shared) {
+      data = data.clone();
+    }
+    else {
+      return data;
+    }
+
+    words = data;
+    shared = false;
+    return data;
+  }
+
+  public void add(int element) {
+    if (!contains(element)) {
+      int word = element >>> 6;
+      getWritableWords(word + 1)[word] |= 1L << element;
+    }
+  }
+
+  public void remove(int element) {
+    if (contains(element)) {
+      getWritableWords(0)[element >>> 6] &= ~(1L << element);
+    }
+  }
+
+  public boolean contains(int element) {
+    int word = element >>> 6;
+    return word < words.length && (words[word] & (1L << element)) != 0;
+  }
+
+  public void union(FastIntSet set) {
+    long[] own = words;
+    long[] ext = set.words;
+
+    // only copy shared bits if something changes
+    int last = ext.length - 1;
+    while (last >= 0 && (ext[last] & ~(last < own.length ? own[last] : 0)) == 0) {
+      last--;
+    }
+    if (last < 0) {
+      return;
+    }
+
+    own = getWritableWords(last + 1);
+    for (int i = last; i >= 0; i--) {
+      own[i] |= ext[i];
+    }
+  }
+
+  public void intersection(FastIntSet set) {
+    long[] own = words;
+    long[] ext = set.words;
+
+    int last = own.length - 1;
+    while (last >= 0 && (own[last] & ~(last < ext.length ? ext[last] : 0)) == 0) {
+      last--;
+    }
+    if (last < 0) {
+      return;
+    }
+
+    own = getWritableWords(0);
+    for (int i = last; i >= 0; i--) {
+      own[i] &= i < ext.length ? ext[i] : 0;
+    }
+  }
+
+  public void complement(FastIntSet set) {
+    long[] own = words;
+    long[] ext = set.words;
+
+    int last = Math.min(own.length, ext.length) - 1;
+    while (last >= 0 && (own[last] & ext[last]) == 0) {
+      last--;
+    }
+    if (last < 0) {
+      return;
+    }
+
+    own = getWritableWords(0);
+    for (int i = last; i >= 0; i--) {
+      own[i] &= ~ext[i];
+    }
+  }
+
+  /**
+   * @return the smallest element not less than {@code from}, or -1 if there is none
+   */
+  public int next(int from) {
+    long[] data = words;
+    int word = from >>> 6;
+    if (word >= data.length) {
+      return -1;
+    }
+
+    long bits = data[word] & (-1L << from);
+    while (true) {
+      if (bits != 0) {
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+      }
+      if (++word == data.length) {
+        return -1;
+      }
+      bits = data[word];
+    }
+  }
+
+  /**
+   * @return 0 for the empty set, 1 for a singleton and 2 for any larger set
+   */
+  public int getCardinality() {
+    int count = 0;
+    for (long word : words) {
+      count += Long.bitCount(word);
+      if (count > 1) {
+        return 2;
+      }
+    }
+    return count;
+  }
+
+  public boolean isEmpty() {
+    for (long word : words) {
+      if (word != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) return true;
+    if (!(o instanceof FastIntSet)) return false;
+
+    long[] own = words;
+    long[] ext = ((FastIntSet)o).words;
+    if (own == ext) return true;
+
+    int length = Math.max(own.length, ext.length);
+    for (int i = 0; i < length; i++) {
+      if ((i < own.length ? own[i] : 0) != (i < ext.length ? ext[i] : 0)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    long hash = 1234;
+    for (int i = words.length - 1; i >= 0; i--) {
+      hash ^= words[i] * (i + 1);
+    }
+    return (int)((hash >> 32) ^ hash);
+  }
+
+  @Override
+  public Iterator<Integer> iterator() {
+    return new Iterator<Integer>() {
+      private int pointer = FastIntSet.this.next(0);
+
+      @Override
+      public boolean hasNext() {
+        return pointer >= 0;
+      }
+
+      @Override
+      public Integer next() {
+        if (pointer < 0) {
+          throw new NoSuchElementException();
+        }
+        int element = pointer;
+        pointer = FastIntSet.this.next(element + 1);
+        return element;
+      }
+    };
+  }
+
+  public Set<Integer> toPlainSet() {
+    Set<Integer> set = new HashSet<>();
+    for (int element = next(0); element >= 0; element = next(element + 1)) {
+      set.add(element);
+    }
+    return set;
+  }
+
+  @Override
+  public String toString() {
+    return toPlainSet().toString();
+  }
+}
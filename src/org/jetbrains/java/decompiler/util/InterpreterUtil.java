@@ -12,6 +12,7 @@ public final class InterpreterUtil {
   public static final boolean IS_WINDOWS = System.getProperty("os.name", "").startsWith("Windows");
 
   public static final int[] EMPTY_INT_ARRAY = new int[0];
+  public static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
 
   private static final int BUFFER_SIZE = 16 * 1024;
 
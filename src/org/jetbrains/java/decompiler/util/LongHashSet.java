@@ -0,0 +1,47 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.java.decompiler.util;
+
+/**
+ * Set of primitive {@code long} values, e.g. var-version pairs packed with
+ * {@link org.jetbrains.java.decompiler.modules.decompiler.vars.VarVersionPair#pack(int, int)}.
+ */
+public final class LongHashSet extends LongHashTable {
+  public LongHashSet() {
+    super(0);
+  }
+
+  public LongHashSet(int expectedSize) {
+    super(expectedSize);
+  }
+
+  /**
+   * @return true if the set did not contain the value yet
+   */
+  public boolean add(long value) {
+    return insert(value) < 0;
+  }
+
+  public boolean contains(long value) {
+    return find(value) >= 0;
+  }
+
+  public void addAll(LongHashSet set) {
+    for (int slot = set.nextSlot(0); slot >= 0; slot = set.nextSlot(slot + 1)) {
+      add(set.keyAt(slot));
+    }
+  }
+
+  public boolean intersects(LongHashSet set) {
+    LongHashSet smaller = size <= set.size ? this : set;
+    LongHashSet larger = smaller == this ? set : this;
+    for (int slot = smaller.nextSlot(0); slot >= 0; slot = smaller.nextSlot(slot + 1)) {
+      if (larger.contains(smaller.keyAt(slot))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  void moveValues(int[] moves, int length) { }
+}
@@ -0,0 +1,168 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.java.decompiler.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing table of primitive {@code long} keys with linear probing, the common part of
+ * {@link LongHashSet}, {@link LongIntHashMap} and {@link LongObjectHashMap}.
+ * <p>
+ * A zero in the key array marks a free slot, so the key 0 itself is kept in the extra slot at the end of the array.
+ * Entries are never removed. The occupied slots are walked with {@link #nextSlot(int)} and {@link #keyAt(int)}.
+ */
+abstract class LongHashTable {
+  private static final int MIN_CAPACITY = 8;
+
+  long[] keys;
+  int mask;
+  boolean containsZero;
+  int size;
+
+  LongHashTable(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    while (capacity * 3 / 4 < expectedSize) {
+      capacity <<= 1;
+    }
+    keys = new long[capacity + 1];
+    mask = capacity - 1;
+  }
+
+  LongHashTable(LongHashTable table) {
+    keys = table.keys.clone();
+    mask = table.mask;
+    containsZero = table.containsZero;
+    size = table.size;
+  }
+
+  private static int hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int)(h >>> 32) ^ (int)h;
+  }
+
+  /**
+   * @return the slot of the key, or -1 if the table does not contain it
+   */
+  final int find(long key) {
+    if (key == 0) {
+      return containsZero ? mask + 1 : -1;
+    }
+
+    long[] data = keys;
+    int pos = hash(key) & mask;
+    while (true) {
+      long k = data[pos];
+      if (k == key) {
+        return pos;
+      }
+      if (k == 0) {
+        return -1;
+      }
+      pos = (pos + 1) & mask;
+    }
+  }
+
+  /**
+   * @return the slot of the key if the table already contains it, otherwise {@code -(slot + 1)} of the slot
+   * the key has just been put into
+   */
+  final int insert(long key) {
+    int pos = find(key);
+    if (pos >= 0) {
+      return pos;
+    }
+
+    if (size >= (mask + 1) * 3 / 4) {
+      resize((mask + 1) << 1);
+    }
+    size++;
+
+    if (key == 0) {
+      containsZero = true;
+      return -(mask + 1) - 1;
+    }
+
+    pos = freeSlot(keys, mask, key);
+    keys[pos] = key;
+    return -pos - 1;
+  }
+
+  private static int freeSlot(long[] keys, int mask, long key) {
+    int pos = hash(key) & mask;
+    while (keys[pos] != 0) {
+      pos = (pos + 1) & mask;
+    }
+    return pos;
+  }
+
+  private void resize(int capacity) {
+    long[] oldKeys = keys;
+    int[] moves = new int[oldKeys.length];
+    long[] newKeys = new long[capacity + 1];
+    int newMask = capacity - 1;
+
+    for (int i = 0; i < oldKeys.length - 1; i++) {
+      long key = oldKeys[i];
+      if (key != 0) {
+        int pos = freeSlot(newKeys, newMask, key);
+        newKeys[pos] = key;
+        moves[i] = pos;
+      }
+      else {
+        moves[i] = -1;
+      }
+    }
+    moves[oldKeys.length - 1] = capacity;
+
+    keys = newKeys;
+    mask = newMask;
+    moveValues(moves, capacity + 1);
+  }
+
+  /**
+   * Rearranges the values after the table has grown: the value in slot {@code i} goes to slot {@code moves[i]},
+   * unless that is -1.
+   */
+  abstract void moveValues(int[] moves, int length);
+
+  /**
+   * @return the first occupied slot not less than {@code from}, or -1 if there is none
+   */
+  public final int nextSlot(int from) {
+    long[] data = keys;
+    for (int i = from; i < data.length - 1; i++) {
+      if (data[i] != 0) {
+        return i;
+      }
+    }
+    return containsZero && from <= mask + 1 ? mask + 1 : -1;
+  }
+
+  public final long keyAt(int slot) {
+    return slot > mask ? 0 : keys[slot];
+  }
+
+  public final int size() {
+    return size;
+  }
+
+  public final boolean isEmpty() {
+    return size == 0;
+  }
+
+  public final boolean containsKey(long key) {
+    return find(key) >= 0;
+  }
+
+  /**
+   * @return all keys in ascending order
+   */
+  public final long[] sortedKeys() {
+    long[] result = new long[size];
+    int count = 0;
+    for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1)) {
+      result[count++] = keyAt(slot);
+    }
+    Arrays.sort(result);
+    return result;
+  }
+}
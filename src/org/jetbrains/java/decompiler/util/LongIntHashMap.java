@@ -0,0 +1,46 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.java.decompiler.util;
+
+/**
+ * Map from primitive {@code long} keys to {@code int} values that boxes neither.
+ */
+public final class LongIntHashMap extends LongHashTable {
+  private int[] values;
+
+  public LongIntHashMap() {
+    this(0);
+  }
+
+  public LongIntHashMap(int expectedSize) {
+    super(expectedSize);
+    values = new int[keys.length];
+  }
+
+  /**
+   * @return the value of the key, or {@code defaultValue} if the map does not contain it
+   */
+  public int get(long key, int defaultValue) {
+    int slot = find(key);
+    return slot < 0 ? defaultValue : values[slot];
+  }
+
+  public void put(long key, int value) {
+    int slot = insert(key);
+    values[slot < 0 ? -slot - 1 : slot] = value;
+  }
+
+  public int valueAt(int slot) {
+    return values[slot];
+  }
+
+  @Override
+  void moveValues(int[] moves, int length) {
+    int[] newValues = new int[length];
+    for (int i = 0; i < moves.length; i++) {
+      if (moves[i] >= 0) {
+        newValues[moves[i]] = values[i];
+      }
+    }
+    values = newValues;
+  }
+}
@@ -0,0 +1,63 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.java.decompiler.util;
+
+/**
+ * Map from primitive {@code long} keys to objects. Null values are allowed and are distinguished from
+ * missing keys by {@link #containsKey(long)}.
+ * <p>
+ * Copying a map clones two flat arrays instead of allocating an entry per key.
+ */
+public final class LongObjectHashMap<V> extends LongHashTable {
+  private Object[] values;
+
+  public LongObjectHashMap() {
+    this(0);
+  }
+
+  public LongObjectHashMap(int expectedSize) {
+    super(expectedSize);
+    values = new Object[keys.length];
+  }
+
+  public LongObjectHashMap(LongObjectHashMap<? extends V> map) {
+    super(map);
+    values = map.values.clone();
+  }
+
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    int slot = find(key);
+    return slot < 0 ? null : (V)values[slot];
+  }
+
+  /**
+   * @return the previous value of the key, or null if there was none
+   */
+  @SuppressWarnings("unchecked")
+  public V put(long key, V value) {
+    int slot = insert(key);
+    if (slot < 0) {
+      values[-slot - 1] = value;
+      return null;
+    }
+    V old = (V)values[slot];
+    values[slot] = value;
+    return old;
+  }
+
+  @SuppressWarnings("unchecked")
+  public V valueAt(int slot) {
+    return (V)values[slot];
+  }
+
+  @Override
+  void moveValues(int[] moves, int length) {
+    Object[] newValues = new Object[length];
+    for (int i = 0; i < moves.length; i++) {
+      if (moves[i] >= 0) {
+        newValues[moves[i]] = values[i];
+      }
+    }
+    values = newValues;
+  }
+}
@@ -6,10 +6,16 @@ package org.jetbrains.java.decompiler.util;
 import org.jetbrains.java.decompiler.main.DecompilerContext;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
  * Allows to connect text with resulting lines
+ * <p>
+ * The text is kept in two segments: the prepended text, stored reversed so that prepending is an append, and the
+ * body. Line offsets are relative to the start of the body, so prepending neither moves the text nor touches the
+ * mapping; the segments are joined only when the whole text is needed.
  *
  * @author egor
  */
@@ -18,7 +24,16 @@ public class TextBuffer {
   private final String myLineSeparator = DecompilerContext.getNewLineSeparator();
   private final String myIndent = (String)DecompilerContext.getProperty(IFernflowerPreferences.INDENT_STRING);
   private final StringBuilder myStringBuilder;
-  private Map<Integer, Integer> myLineToOffsetMapping = null;
+  private StringBuilder myReversedPrefix = null;
+
+  // line -> offset marks sorted by line, offsets relative to the body
+  private int[] myMarkLines = null;
+  private int[] myMarkOffsets = null;
+  private int myMarkCount = 0;
+
+  // new to original line pairs sorted by the new and then the original line
+  private int[] myLineMappingLines = null;
+  private int[] myLineMappingOriginals = null;
 
   public TextBuffer() {
     myStringBuilder = new StringBuilder();
@@ -60,8 +75,12 @@ public class TextBuffer {
   }
 
   public TextBuffer prepend(String s) {
-    myStringBuilder.insert(0, s);
-    shiftMapping(s.length());
+    if (myReversedPrefix == null) {
+      myReversedPrefix = new StringBuilder(Math.max(16, s.length()));
+    }
+    for (int i = s.length() - 1; i >= 0; i--) {
+      myReversedPrefix.append(s.charAt(i));
+    }
     return this;
   }
 
@@ -72,37 +91,59 @@ public class TextBuffer {
   }
 
   public boolean containsOnlyWhitespaces() {
-    for (int i = 0; i < myStringBuilder.length(); i++) {
-      if (myStringBuilder.charAt(i) != ' ') {
+    return containsOnlyWhitespaces(myStringBuilder) && (myReversedPrefix == null || containsOnlyWhitespaces(myReversedPrefix));
+  }
+
+  private static boolean containsOnlyWhitespaces(StringBuilder sb) {
+    for (int i = 0; i < sb.length(); i++) {
+      if (sb.charAt(i) != ' ') {
         return false;
       }
     }
     return true;
   }
 
+  private int prefixLength() {
+    return myReversedPrefix == null ? 0 : myReversedPrefix.length();
+  }
+
+  /**
+   * Moves the prepended text to the body, shifting the line offsets once.
+   */
+  private void flatten() {
+    int shift = prefixLength();
+    if (shift > 0) {
+      // not StringBuilder.reverse(), which would treat surrogate pairs as units
+      char[] prefix = new char[shift];
+      for (int i = 0; i < shift; i++) {
+        prefix[i] = myReversedPrefix.charAt(shift - 1 - i);
+      }
+      myStringBuilder.insert(0, prefix);
+      shiftMapping(shift);
+    }
+    myReversedPrefix = null;
+  }
+
   @Override
   public String toString() {
-    String original = myStringBuilder.toString();
-    if (myLineToOffsetMapping == null || myLineToOffsetMapping.isEmpty()) {
-      if (myLineMapping != null) {
+    flatten();
+    if (myMarkCount == 0) {
+      if (myLineMappingLines != null) {
         return addOriginalLineNumbers();
       }
-      return original;
+      return myStringBuilder.toString();
     }
     else {
       StringBuilder res = new StringBuilder();
-      String[] srcLines = original.split(myLineSeparator);
-      int currentLineStartOffset = 0;
+      Lines srcLines = new Lines(myStringBuilder, myLineSeparator);
       int currentLine = 0;
       int previousMarkLine = 0;
       int dumpedLines = 0;
-      ArrayList<Integer> linesWithMarks = new ArrayList<>(myLineToOffsetMapping.keySet());
-      Collections.sort(linesWithMarks);
-      for (Integer markLine : linesWithMarks) {
-        Integer markOffset = myLineToOffsetMapping.get(markLine);
-        while (currentLine < srcLines.length) {
-          String line = srcLines[currentLine];
-          int lineEnd = currentLineStartOffset + line.length() + myLineSeparator.length();
+      for (int i = 0; i < myMarkCount; i++) {
+        int markLine = myMarkLines[i];
+        int markOffset = myMarkOffsets[i];
+        while (currentLine < srcLines.count) {
+          int lineEnd = srcLines.ends[currentLine] + myLineSeparator.length();
           if (markOffset <= lineEnd) {
             int requiredLine = markLine - 1;
             int linesToAdd = requiredLine - dumpedLines;
@@ -111,56 +152,125 @@ public class TextBuffer {
             previousMarkLine = currentLine;
             break;
           }
-          currentLineStartOffset = lineEnd;
           currentLine++;
         }
       }
-      if (previousMarkLine < srcLines.length) {
-        appendLines(res, srcLines, previousMarkLine, srcLines.length, srcLines.length - previousMarkLine);
+      if (previousMarkLine < srcLines.count) {
+        appendLines(res, srcLines, previousMarkLine, srcLines.count, srcLines.count - previousMarkLine);
       }
 
       return res.toString();
     }
   }
 
+  /**
+   * Encodes the text as UTF-8, like {@code toString().getBytes(UTF_8)} but without the intermediate string when
+   * no line processing is needed.
+   *
+   * @return a heap buffer holding the encoded text between its position and limit
+   */
+  public ByteBuffer encodeUtf8() {
+    if (myLineMappingLines != null || myMarkCount > 0) {
+      return ByteBuffer.wrap(toString().getBytes(StandardCharsets.UTF_8));
+    }
+    flatten();
+    StringBuilder sb = myStringBuilder;
+    int length = sb.length();
+
+    // decompiled code is mostly ASCII
+    byte[] bytes = new byte[length + 16];
+    int pos = 0;
+
+    char[] chunk = new char[Math.min(length, 8192)];
+    int start = 0;
+    while (start < length) {
+      int end = Math.min(length, start + chunk.length);
+      if (end < length && Character.isHighSurrogate(sb.charAt(end - 1)) && end - 1 > start) {
+        end--; // keep surrogate pairs within a chunk
+      }
+      int count = end - start;
+      sb.getChars(start, end, chunk, 0);
+
+      if (bytes.length - pos < count * 3) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, pos + count * 3));
+      }
+
+      for (int i = 0; i < count; i++) {
+        char c = chunk[i];
+        if (c < 0x80) {
+          bytes[pos++] = (byte)c;
+        }
+        else if (c < 0x800) {
+          bytes[pos++] = (byte)(0xC0 | (c >> 6));
+          bytes[pos++] = (byte)(0x80 | (c & 0x3F));
+        }
+        else if (Character.isSurrogate(c)) {
+          if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(chunk[i + 1])) {
+            int cp = Character.toCodePoint(c, chunk[++i]);
+            bytes[pos++] = (byte)(0xF0 | (cp >> 18));
+            bytes[pos++] = (byte)(0x80 | ((cp >> 12) & 0x3F));
+            bytes[pos++] = (byte)(0x80 | ((cp >> 6) & 0x3F));
+            bytes[pos++] = (byte)(0x80 | (cp & 0x3F));
+          }
+          else {
+            bytes[pos++] = '?'; // unpaired surrogate, replaced like String.getBytes does
+          }
+        }
+        else {
+          bytes[pos++] = (byte)(0xE0 | (c >> 12));
+          bytes[pos++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+          bytes[pos++] = (byte)(0x80 | (c & 0x3F));
+        }
+      }
+
+      start = end;
+    }
+
+    return ByteBuffer.wrap(bytes, 0, pos);
+  }
+
   private String addOriginalLineNumbers() {
     StringBuilder sb = new StringBuilder();
     int lineStart = 0, lineEnd;
     int count = 0, length = myLineSeparator.length();
+    int mapped = 0;
     while ((lineEnd = myStringBuilder.indexOf(myLineSeparator, lineStart)) > 0) {
       ++count;
-      sb.append(myStringBuilder.substring(lineStart, lineEnd));
-      Set<Integer> integers = myLineMapping.get(count);
-      if (integers != null) {
+      sb.append(myStringBuilder, lineStart, lineEnd);
+      while (mapped < myLineMappingLines.length && myLineMappingLines[mapped] < count) {
+        mapped++;
+      }
+      if (mapped < myLineMappingLines.length && myLineMappingLines[mapped] == count) {
         sb.append("//");
-        for (Integer integer : integers) {
-          sb.append(' ').append(integer);
+        do {
+          sb.append(' ').append(myLineMappingOriginals[mapped++]);
         }
+        while (mapped < myLineMappingLines.length && myLineMappingLines[mapped] == count);
       }
       sb.append(myLineSeparator);
       lineStart = lineEnd + length;
     }
     if (lineStart < myStringBuilder.length()) {
-      sb.append(myStringBuilder.substring(lineStart));
+      sb.append(myStringBuilder, lineStart, myStringBuilder.length());
     }
     return sb.toString();
   }
 
-  private void appendLines(StringBuilder res, String[] srcLines, int from, int to, int requiredLineNumber) {
+  private void appendLines(StringBuilder res, Lines srcLines, int from, int to, int requiredLineNumber) {
     if (to - from > requiredLineNumber) {
-      List<String> strings = compactLines(Arrays.asList(srcLines).subList(from, to) ,requiredLineNumber);
+      boolean[] joined = compactLines(srcLines, from, to, requiredLineNumber);
       int separatorsRequired = requiredLineNumber - 1;
-      for (String s : strings) {
-        res.append(s);
-        if (separatorsRequired-- > 0) {
+      for (int i = from; i < to; i++) {
+        if (i > from && !joined[i - from] && separatorsRequired-- > 0) {
           res.append(myLineSeparator);
         }
+        res.append(myStringBuilder, srcLines.starts[i], srcLines.ends[i]);
       }
       res.append(myLineSeparator);
     }
-    else if (to - from <= requiredLineNumber) {
+    else {
       for (int i = from; i < to; i++) {
-        res.append(srcLines[i]).append(myLineSeparator);
+        res.append(myStringBuilder, srcLines.starts[i], srcLines.ends[i]).append(myLineSeparator);
       }
       for (int i = 0; i < requiredLineNumber - to + from; i++) {
         res.append(myLineSeparator);
@@ -169,58 +279,94 @@ public class TextBuffer {
   }
 
   public int length() {
-    return myStringBuilder.length();
+    return myStringBuilder.length() + prefixLength();
   }
 
   public void setStart(int position) {
+    int prefixLength = prefixLength();
+    if (position <= prefixLength) {
+      if (position > 0) {
+        myReversedPrefix.setLength(prefixLength - position);
+      }
+      return;
+    }
+
+    flatten();
     myStringBuilder.delete(0, position);
     shiftMapping(-position);
   }
 
   public void setLength(int position) {
+    int prefixLength = prefixLength();
+    if (prefixLength > 0 && position < prefixLength) {
+      flatten();
+    }
+    else {
+      position -= prefixLength;
+    }
+
     myStringBuilder.setLength(position);
-    if (myLineToOffsetMapping != null) {
-      Map<Integer, Integer> newMap = new HashMap<>();
-      for (Map.Entry<Integer, Integer> entry : myLineToOffsetMapping.entrySet()) {
-        if (entry.getValue() <= position) {
-          newMap.put(entry.getKey(), entry.getValue());
-        }
+
+    int count = 0;
+    for (int i = 0; i < myMarkCount; i++) {
+      if (myMarkOffsets[i] <= position) {
+        myMarkLines[count] = myMarkLines[i];
+        myMarkOffsets[count++] = myMarkOffsets[i];
       }
-      myLineToOffsetMapping = newMap;
     }
+    myMarkCount = count;
   }
 
   public TextBuffer append(TextBuffer buffer) {
-    if (buffer.myLineToOffsetMapping != null && !buffer.myLineToOffsetMapping.isEmpty()) {
-      checkMapCreated();
-      for (Map.Entry<Integer, Integer> entry : buffer.myLineToOffsetMapping.entrySet()) {
-        myLineToOffsetMapping.put(entry.getKey(), entry.getValue() + myStringBuilder.length());
+    if (buffer.myMarkCount > 0) {
+      mergeMarks(buffer, myStringBuilder.length() + buffer.prefixLength());
+    }
+    StringBuilder prefix = buffer.myReversedPrefix;
+    if (prefix != null) {
+      for (int i = prefix.length() - 1; i >= 0; i--) {
+        myStringBuilder.append(prefix.charAt(i));
       }
     }
     myStringBuilder.append(buffer.myStringBuilder);
     return this;
   }
 
-  private void shiftMapping(int shiftOffset) {
-    if (myLineToOffsetMapping != null) {
-      Map<Integer, Integer> newMap = new HashMap<>();
-      for (Map.Entry<Integer, Integer> entry : myLineToOffsetMapping.entrySet()) {
-        int newValue = entry.getValue();
-        if (newValue >= 0) {
-          newValue += shiftOffset;
-        }
-        if (newValue >= 0) {
-          newMap.put(entry.getKey(), newValue);
+  // the marks of the buffer replace own marks of the same lines
+  private void mergeMarks(TextBuffer buffer, int shift) {
+    int[] lines = new int[myMarkCount + buffer.myMarkCount];
+    int[] offsets = new int[lines.length];
+    int count = 0, own = 0, ext = 0;
+    while (own < myMarkCount || ext < buffer.myMarkCount) {
+      if (ext == buffer.myMarkCount || (own < myMarkCount && myMarkLines[own] < buffer.myMarkLines[ext])) {
+        lines[count] = myMarkLines[own];
+        offsets[count++] = myMarkOffsets[own++];
+      }
+      else {
+        if (own < myMarkCount && myMarkLines[own] == buffer.myMarkLines[ext]) {
+          own++;
         }
+        lines[count] = buffer.myMarkLines[ext];
+        offsets[count++] = buffer.myMarkOffsets[ext++] + shift;
       }
-      myLineToOffsetMapping = newMap;
     }
+    myMarkLines = lines;
+    myMarkOffsets = offsets;
+    myMarkCount = count;
   }
 
-  private void checkMapCreated() {
-    if (myLineToOffsetMapping == null) {
-      myLineToOffsetMapping = new HashMap<>();
+  private void shiftMapping(int shiftOffset) {
+    int count = 0;
+    for (int i = 0; i < myMarkCount; i++) {
+      int newValue = myMarkOffsets[i];
+      if (newValue >= 0) {
+        newValue += shiftOffset;
+      }
+      if (newValue >= 0) {
+        myMarkLines[count] = myMarkLines[i];
+        myMarkOffsets[count++] = newValue;
+      }
     }
+    myMarkCount = count;
   }
 
   public int countLines() {
@@ -232,6 +378,7 @@ public class TextBuffer {
   }
 
   public int count(String substring, int from) {
+    flatten();
     int count = 0, length = substring.length(), p = from;
     while ((p = myStringBuilder.indexOf(substring, p)) > 0) {
       ++count;
@@ -240,46 +387,132 @@ public class TextBuffer {
     return count;
   }
 
-  private static List<String> compactLines(List<String> srcLines, int requiredLineNumber) {
-    if (srcLines.size() < 2 || srcLines.size() <= requiredLineNumber) {
-      return srcLines;
+  /**
+   * Joins lines with a single { or }, and then empty lines, to the preceding ones, starting from the last line,
+   * until no more than the required number of lines is left.
+   *
+   * @return flags of the lines in [from, to) appended to the preceding line, indexed from {@code from}
+   */
+  private boolean[] compactLines(Lines srcLines, int from, int to, int requiredLineNumber) {
+    boolean[] joined = new boolean[to - from];
+    int size = to - from;
+    if (size < 2 || size <= requiredLineNumber) {
+      return joined;
     }
-    List<String> res = new LinkedList<>(srcLines);
-    // first join lines with a single { or }
-    for (int i = res.size()-1; i > 0 ; i--) {
-      String s = res.get(i);
-      if (s.trim().equals("{") || s.trim().equals("}")) {
-        res.set(i-1, res.get(i-1).concat(s));
-        res.remove(i);
-      }
-      if (res.size() <= requiredLineNumber) {
-        return res;
+
+    for (int pass = 0; pass < 2; pass++) {
+      // the current entry spans the lines [start, end), earlier entries are unchanged lines or groups of the first pass
+      int end = to;
+      int start = groupStart(joined, from, to - 1);
+      while (start > from) {
+        boolean join = pass == 0 ? isSingleBrace(srcLines, start, end) : isBlank(srcLines, start, end);
+        if (join) {
+          joined[start - from] = true;
+          size--;
+        }
+        else {
+          end = start;
+        }
+        start = groupStart(joined, from, start - 1);
+
+        if (size <= requiredLineNumber) {
+          return joined;
+        }
       }
     }
-    // now join empty lines
-    for (int i = res.size()-1; i > 0 ; i--) {
-      String s = res.get(i);
-      if (s.trim().isEmpty()) {
-        res.set(i-1, res.get(i-1).concat(s));
-        res.remove(i);
-      }
-      if (res.size() <= requiredLineNumber) {
-        return res;
+    return joined;
+  }
+
+  private static int groupStart(boolean[] joined, int from, int line) {
+    while (line > from && joined[line - from]) {
+      line--;
+    }
+    return line;
+  }
+
+  // String.trim().equals("{") or "}" for the joined lines
+  private boolean isSingleBrace(Lines srcLines, int start, int end) {
+    char brace = 0;
+    for (int line = start; line < end; line++) {
+      for (int i = srcLines.starts[line]; i < srcLines.ends[line]; i++) {
+        char c = myStringBuilder.charAt(i);
+        if (c > ' ') {
+          if (brace != 0 || (c != '{' && c != '}')) {
+            return false;
+          }
+          brace = c;
+        }
       }
     }
-    return res;
+    return brace != 0;
   }
 
-  private Map<Integer, Set<Integer>> myLineMapping = null; // new to original
+  // String.trim().isEmpty() for the joined lines
+  private boolean isBlank(Lines srcLines, int start, int end) {
+    for (int line = start; line < end; line++) {
+      for (int i = srcLines.starts[line]; i < srcLines.ends[line]; i++) {
+        if (myStringBuilder.charAt(i) > ' ') {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
 
   public void dumpOriginalLineNumbers(int[] lineMapping) {
     if (lineMapping.length > 0) {
-      myLineMapping = new HashMap<>();
-      for (int i = 0; i < lineMapping.length; i += 2) {
-        int key = lineMapping[i + 1];
-        Set<Integer> existing = myLineMapping.computeIfAbsent(key, k -> new TreeSet<>());
-        existing.add(lineMapping[i]);
+      // pack the pairs so that a single sort orders them by the new line and then by the original one
+      long[] pairs = new long[lineMapping.length / 2];
+      for (int i = 0; i < pairs.length; i++) {
+        pairs[i] = ((long)lineMapping[2 * i + 1] << 32) | ((long)lineMapping[2 * i] - Integer.MIN_VALUE);
+      }
+      Arrays.sort(pairs);
+
+      int[] lines = new int[pairs.length];
+      int[] originals = new int[pairs.length];
+      int count = 0;
+      for (int i = 0; i < pairs.length; i++) {
+        if (i == 0 || pairs[i] != pairs[i - 1]) {
+          lines[count] = (int)(pairs[i] >> 32);
+          originals[count++] = (int)((pairs[i] & 0xFFFFFFFFL) + Integer.MIN_VALUE);
+        }
+      }
+      myLineMappingLines = Arrays.copyOf(lines, count);
+      myLineMappingOriginals = Arrays.copyOf(originals, count);
+    }
+  }
+
+  /**
+   * Bounds of the lines of a text, excluding the separators, as {@code String.split} would return them.
+   */
+  private static final class Lines {
+    int[] starts = new int[64];
+    int[] ends = new int[64];
+    int count;
+
+    Lines(StringBuilder text, String separator) {
+      int start = 0, end;
+      while ((end = text.indexOf(separator, start)) >= 0) {
+        add(start, end);
+        start = end + separator.length();
+      }
+      add(start, text.length());
+
+      // split() drops trailing empty strings, unless the text is empty
+      if (text.length() > 0) {
+        while (count > 0 && starts[count - 1] == ends[count - 1]) {
+          count--;
+        }
+      }
+    }
+
+    private void add(int start, int end) {
+      if (count == starts.length) {
+        starts = Arrays.copyOf(starts, count * 2);
+        ends = Arrays.copyOf(ends, count * 2);
       }
+      starts[count] = start;
+      ends[count++] = end;
     }
   }
-}
\ No newline at end of file
+}
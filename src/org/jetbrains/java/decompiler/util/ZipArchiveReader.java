@@ -0,0 +1,201 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.java.decompiler.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+
+/**
+ * Reads the central directory of a zip archive, so that entries can be copied to another archive
+ * in their compressed form (see {@link ZipArchiveWriter#copyRawEntry}).
+ */
+public final class ZipArchiveReader implements Closeable {
+  private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+  private static final int LOCAL_HEADER_SIG = 0x04034b50;
+  private static final int END_HEADER_SIG = 0x06054b50;
+  private static final int ZIP64_END_HEADER_SIG = 0x06064b50;
+  private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+  private static final int ZIP64_EXTRA_ID = 0x0001;
+
+  private static final int END_HEADER_SIZE = 22;
+  private static final int ZIP64_LOCATOR_SIZE = 20;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+  private final FileChannel channel;
+  private final Map<String, Entry> entries = new HashMap<>();
+
+  public ZipArchiveReader(File file) throws IOException {
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      readCentralDirectory();
+    }
+    catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  public Entry getEntry(String name) {
+    return entries.get(name);
+  }
+
+  FileChannel getChannel() {
+    return channel;
+  }
+
+  long getDataOffset(Entry entry) throws IOException {
+    ByteBuffer header = read(entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+    if (header.getInt(0) != LOCAL_HEADER_SIG) {
+      throw new IOException("Invalid local header for " + entry.name);
+    }
+    return entry.localHeaderOffset + LOCAL_HEADER_SIZE + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private void readCentralDirectory() throws IOException {
+    long size = channel.size();
+    int tailSize = (int)Math.min(size, END_HEADER_SIZE + MAX_COMMENT_SIZE);
+    long tailStart = size - tailSize;
+    ByteBuffer tail = read(tailStart, tailSize);
+
+    int end = -1;
+    for (int i = tailSize - END_HEADER_SIZE; i >= 0; i--) {
+      if (tail.getInt(i) == END_HEADER_SIG && i + END_HEADER_SIZE + (tail.getShort(i + 20) & 0xFFFF) <= tailSize) {
+        end = i;
+        break;
+      }
+    }
+    if (end < 0) {
+      throw new IOException("End of central directory not found");
+    }
+
+    long count = tail.getShort(end + 10) & 0xFFFF;
+    long cdSize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+    long cdOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+
+    if (count == 0xFFFF || cdSize == 0xFFFFFFFFL || cdOffset == 0xFFFFFFFFL) {
+      long locatorPos = tailStart + end - ZIP64_LOCATOR_SIZE;
+      ByteBuffer locator = read(locatorPos, ZIP64_LOCATOR_SIZE);
+      if (locator.getInt(0) != ZIP64_LOCATOR_SIG) {
+        throw new IOException("Zip64 end of central directory locator not found");
+      }
+      ByteBuffer end64 = read(locator.getLong(8), 56);
+      if (end64.getInt(0) != ZIP64_END_HEADER_SIG) {
+        throw new IOException("Zip64 end of central directory not found");
+      }
+      count = end64.getLong(32);
+      cdSize = end64.getLong(40);
+      cdOffset = end64.getLong(48);
+    }
+
+    if (cdSize > Integer.MAX_VALUE) {
+      throw new IOException("Central directory too large");
+    }
+
+    ByteBuffer cd = read(cdOffset, (int)cdSize);
+    int pos = 0;
+    for (long i = 0; i < count; i++) {
+      if (cd.getInt(pos) != CENTRAL_HEADER_SIG) {
+        throw new IOException("Invalid central directory header");
+      }
+
+      int flags = cd.getShort(pos + 8) & 0xFFFF;
+      int method = cd.getShort(pos + 10) & 0xFFFF;
+      int dosTime = cd.getInt(pos + 12);
+      long crc = cd.getInt(pos + 16) & 0xFFFFFFFFL;
+      long compressedSize = cd.getInt(pos + 20) & 0xFFFFFFFFL;
+      long uncompressedSize = cd.getInt(pos + 24) & 0xFFFFFFFFL;
+      int nameLength = cd.getShort(pos + 28) & 0xFFFF;
+      int extraLength = cd.getShort(pos + 30) & 0xFFFF;
+      int commentLength = cd.getShort(pos + 32) & 0xFFFF;
+      long localHeaderOffset = cd.getInt(pos + 42) & 0xFFFFFFFFL;
+
+      byte[] nameBytes = new byte[nameLength];
+      cd.position(pos + 46);
+      cd.get(nameBytes);
+      String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+      // sizes and offset overflowing 32 bits are stored in the zip64 extra field, in this order
+      int extra = pos + 46 + nameLength;
+      int extraEnd = extra + extraLength;
+      while (extra + 4 <= extraEnd) {
+        int id = cd.getShort(extra) & 0xFFFF;
+        int length = cd.getShort(extra + 2) & 0xFFFF;
+        if (id == ZIP64_EXTRA_ID) {
+          int field = extra + 4;
+          if (uncompressedSize == 0xFFFFFFFFL) {
+            uncompressedSize = cd.getLong(field);
+            field += 8;
+          }
+          if (compressedSize == 0xFFFFFFFFL) {
+            compressedSize = cd.getLong(field);
+            field += 8;
+          }
+          if (localHeaderOffset == 0xFFFFFFFFL) {
+            localHeaderOffset = cd.getLong(field);
+          }
+          break;
+        }
+        extra += 4 + length;
+      }
+
+      entries.putIfAbsent(name, new Entry(name, flags, method, dosTime, crc, compressedSize, uncompressedSize, localHeaderOffset));
+      pos = extraEnd + commentLength;
+    }
+  }
+
+  private ByteBuffer read(long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("premature end of archive");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  public static final class Entry {
+    public final String name;
+    public final int flags;
+    public final int method;
+    public final int dosTime;
+    public final long crc;
+    public final long compressedSize;
+    public final long size;
+    final long localHeaderOffset;
+
+    private Entry(String name, int flags, int method, int dosTime, long crc, long compressedSize, long size, long localHeaderOffset) {
+      this.name = name;
+      this.flags = flags;
+      this.method = method;
+      this.dosTime = dosTime;
+      this.crc = crc;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.localHeaderOffset = localHeaderOffset;
+    }
+
+    /**
+     * Encrypted entries, unusual compression methods and entries needing zip64 sizes are not copied as is.
+     */
+    public boolean canCopyRaw() {
+      return (flags & 1) == 0 &&
+             (method == ZipEntry.STORED || method == ZipEntry.DEFLATED) &&
+             compressedSize < 0xFFFFFFFFL && size < 0xFFFFFFFFL;
+    }
+  }
+}
@@ -0,0 +1,330 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.java.decompiler.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Minimal zip archive writer. Unlike {@link java.util.zip.ZipOutputStream} it can append entries whose data is already compressed,
+ * which allows resources to be copied from the source archive without inflating and deflating them again.
+ */
+public final class ZipArchiveWriter implements Closeable {
+  private static final int LOCAL_HEADER_SIG = 0x04034b50;
+  private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+  private static final int END_HEADER_SIG = 0x06054b50;
+  private static final int ZIP64_END_HEADER_SIG = 0x06064b50;
+  private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+  private static final int ZIP64_EXTRA_ID = 0x0001;
+  private static final int JAR_MAGIC_ID = 0xCAFE;
+
+  private static final int FLAG_UTF8 = 0x800;
+  private static final int FLAG_DEFLATE_OPTIONS = 0x6;
+  private static final int VERSION_STORED = 10;
+  private static final int VERSION_DEFLATED = 20;
+  private static final int VERSION_ZIP64 = 45;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final FileOutputStream fileStream;
+  private final OutputStream out;
+  private final List<EntryRecord> entries = new ArrayList<>();
+  private final int dosTime;
+  private long position;
+  private boolean jarMagic;
+
+  public ZipArchiveWriter(File file, Manifest manifest) throws IOException {
+    fileStream = new FileOutputStream(file);
+    out = new BufferedOutputStream(fileStream, BUFFER_SIZE);
+    dosTime = toDosTime(LocalDateTime.now());
+
+    if (manifest != null) {
+      jarMagic = true;
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      manifest.write(bytes);
+      putEntry(JarFile.MANIFEST_NAME, bytes.toByteArray());
+    }
+  }
+
+  /**
+   * Compresses and writes a new entry. Empty entries (including directories) are stored.
+   */
+  public void putEntry(String name, byte[] data) throws IOException {
+    putCompressedEntry(name, compress(data));
+  }
+
+  /**
+   * Writes an entry compressed beforehand with {@link #compress}, typically on another thread.
+   */
+  public synchronized void putCompressedEntry(String name, CompressedEntry entry) throws IOException {
+    EntryRecord record = new EntryRecord(name, entry.method, 0, dosTime, entry.crc, entry.length, entry.size);
+    writeLocalHeader(record);
+    out.write(entry.data, 0, entry.length);
+    position += entry.length;
+  }
+
+  /**
+   * Computes the CRC and the deflated form of an entry. Safe to call concurrently from any thread.
+   */
+  public static CompressedEntry compress(byte[] data) {
+    return compress(data, 0, data.length);
+  }
+
+  /**
+   * Same as {@link #compress(byte[])} for the remaining bytes of the buffer, which is left unchanged.
+   */
+  public static CompressedEntry compress(ByteBuffer data) {
+    if (data.hasArray()) {
+      return compress(data.array(), data.arrayOffset() + data.position(), data.remaining());
+    }
+    byte[] bytes = new byte[data.remaining()];
+    data.duplicate().get(bytes);
+    return compress(bytes);
+  }
+
+  private static CompressedEntry compress(byte[] data, int offset, int size) {
+    CRC32 crc = new CRC32();
+    crc.update(data, offset, size);
+
+    if (size == 0) {
+      return new CompressedEntry(ZipEntry.STORED, crc.getValue(), data, 0, 0);
+    }
+
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    try {
+      deflater.setInput(data, offset, size);
+      deflater.finish();
+      byte[] buffer = new byte[size / 2 + 64];
+      int length = 0;
+      while (!deflater.finished()) {
+        if (length == buffer.length) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        length += deflater.deflate(buffer, length, buffer.length - length);
+      }
+      return new CompressedEntry(ZipEntry.DEFLATED, crc.getValue(), buffer, length, size);
+    }
+    finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Appends the compressed data of an entry of another archive as is, together with its CRC and sizes.
+   */
+  public synchronized void copyRawEntry(String name, ZipArchiveReader source, ZipArchiveReader.Entry entry) throws IOException {
+    if (!entry.canCopyRaw()) {
+      throw new IOException("Entry " + entry.name + " cannot be copied without recompression");
+    }
+
+    long offset = source.getDataOffset(entry);
+    EntryRecord record = new EntryRecord(name, entry.method, entry.flags & FLAG_DEFLATE_OPTIONS, entry.dosTime, entry.crc,
+                                         entry.compressedSize, entry.size);
+    writeLocalHeader(record);
+    out.flush();
+
+    FileChannel target = fileStream.getChannel();
+    long remaining = entry.compressedSize;
+    while (remaining > 0) {
+      long count = source.getChannel().transferTo(offset, remaining, target);
+      if (count <= 0) {
+        throw new IOException("premature end of archive");
+      }
+      offset += count;
+      remaining -= count;
+    }
+    position += entry.compressedSize;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      long cdOffset = position;
+      for (EntryRecord record : entries) {
+        writeCentralHeader(record);
+      }
+      long cdSize = position - cdOffset;
+
+      boolean zip64 = entries.size() >= 0xFFFF || cdOffset >= 0xFFFFFFFFL || cdSize >= 0xFFFFFFFFL;
+      if (zip64) {
+        long end64Offset = position;
+        writeInt(ZIP64_END_HEADER_SIG);
+        writeLong(44);
+        writeShort(VERSION_ZIP64);
+        writeShort(VERSION_ZIP64);
+        writeInt(0);
+        writeInt(0);
+        writeLong(entries.size());
+        writeLong(entries.size());
+        writeLong(cdSize);
+        writeLong(cdOffset);
+
+        writeInt(ZIP64_LOCATOR_SIG);
+        writeInt(0);
+        writeLong(end64Offset);
+        writeInt(1);
+      }
+
+      writeInt(END_HEADER_SIG);
+      writeShort(0);
+      writeShort(0);
+      writeShort(zip64 ? 0xFFFF : entries.size());
+      writeShort(zip64 ? 0xFFFF : entries.size());
+      writeInt(zip64 ? 0xFFFFFFFFL : cdSize);
+      writeInt(zip64 ? 0xFFFFFFFFL : cdOffset);
+      writeShort(0);
+
+      out.flush();
+    }
+    finally {
+      fileStream.close();
+    }
+  }
+
+  private void writeLocalHeader(EntryRecord record) throws IOException {
+    record.localHeaderOffset = position;
+    if (jarMagic) {
+      record.jarMagic = true;
+      jarMagic = false;
+    }
+    entries.add(record);
+
+    writeInt(LOCAL_HEADER_SIG);
+    writeShort(record.versionNeeded());
+    writeShort(record.flags);
+    writeShort(record.method);
+    writeInt(record.dosTime & 0xFFFFFFFFL);
+    writeInt(record.crc);
+    writeInt(record.compressedSize);
+    writeInt(record.size);
+    writeShort(record.name.length);
+    writeShort(record.jarMagic ? 4 : 0);
+    writeBytes(record.name);
+    if (record.jarMagic) {
+      writeShort(JAR_MAGIC_ID);
+      writeShort(0);
+    }
+  }
+
+  private void writeCentralHeader(EntryRecord record) throws IOException {
+    boolean zip64 = record.localHeaderOffset >= 0xFFFFFFFFL;
+    int extraLength = (record.jarMagic ? 4 : 0) + (zip64 ? 12 : 0);
+
+    writeInt(CENTRAL_HEADER_SIG);
+    writeShort(zip64 ? VERSION_ZIP64 : VERSION_DEFLATED);
+    writeShort(zip64 ? VERSION_ZIP64 : record.versionNeeded());
+    writeShort(record.flags);
+    writeShort(record.method);
+    writeInt(record.dosTime & 0xFFFFFFFFL);
+    writeInt(record.crc);
+    writeInt(record.compressedSize);
+    writeInt(record.size);
+    writeShort(record.name.length);
+    writeShort(extraLength);
+    writeShort(0);
+    writeShort(0);
+    writeShort(0);
+    writeInt(0);
+    writeInt(zip64 ? 0xFFFFFFFFL : record.localHeaderOffset);
+    writeBytes(record.name);
+    if (record.jarMagic) {
+      writeShort(JAR_MAGIC_ID);
+      writeShort(0);
+    }
+    if (zip64) {
+      writeShort(ZIP64_EXTRA_ID);
+      writeShort(8);
+      writeLong(record.localHeaderOffset);
+    }
+  }
+
+  private void writeShort(int value) throws IOException {
+    out.write(value & 0xFF);
+    out.write((value >>> 8) & 0xFF);
+    position += 2;
+  }
+
+  private void writeInt(long value) throws IOException {
+    writeShort((int)(value & 0xFFFF));
+    writeShort((int)((value >>> 16) & 0xFFFF));
+  }
+
+  private void writeLong(long value) throws IOException {
+    writeInt(value & 0xFFFFFFFFL);
+    writeInt(value >>> 32);
+  }
+
+  private void writeBytes(byte[] bytes) throws IOException {
+    out.write(bytes);
+    position += bytes.length;
+  }
+
+  private static int toDosTime(LocalDateTime time) {
+    if (time.getYear() < 1980) {
+      return (1 << 21) | (1 << 16);
+    }
+    return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16 |
+           time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+  }
+
+  /**
+   * Implemented by result savers that write class entries with a {@link ZipArchiveWriter}. Archive class entries are saved
+   * one at a time in archive order, so the decompiler threads {@link #compress(ByteBuffer) compress} them beforehand and
+   * hand the result to such a saver instead of the encoded content.
+   */
+  public interface CompressedEntrySaver {
+    void saveCompressedClassEntry(String path, String archiveName, String qualifiedName, String entryName, CompressedEntry entry);
+  }
+
+  public static final class CompressedEntry {
+    final int method;
+    final long crc;
+    final byte[] data;
+    final int length;
+    final long size;
+
+    private CompressedEntry(int method, long crc, byte[] data, int length, long size) {
+      this.method = method;
+      this.crc = crc;
+      this.data = data;
+      this.length = length;
+      this.size = size;
+    }
+  }
+
+  private static final class EntryRecord {
+    final byte[] name;
+    final int method;
+    final int flags;
+    final int dosTime;
+    final long crc;
+    final long compressedSize;
+    final long size;
+    long localHeaderOffset;
+    boolean jarMagic;
+
+    EntryRecord(String name, int method, int flags, int dosTime, long crc, long compressedSize, long size) {
+      this.name = name.getBytes(StandardCharsets.UTF_8);
+      this.method = method;
+      this.flags = flags | FLAG_UTF8;
+      this.dosTime = dosTime;
+      this.crc = crc;
+      this.compressedSize = compressedSize;
+      this.size = size;
+    }
+
+    int versionNeeded() {
+      return method == ZipEntry.DEFLATED ? VERSION_DEFLATED : VERSION_STORED;
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.main.decompiler.AsyncPrintStreamLogger;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger.Severity;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncPrintStreamLoggerTest {
+  @Test
+  public void testJsonLines() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    AsyncPrintStreamLogger logger = new AsyncPrintStreamLogger(new PrintStream(out, true), true);
+    logger.startReadingClass("pkg/A");
+    logger.writeMessage(() -> "quote \" and\ttab", Severity.WARN);
+    logger.writeMessage(() -> { throw new AssertionError("filtered messages are not built"); }, Severity.TRACE);
+    logger.endReadingClass();
+    logger.close();
+
+    String[] lines = out.toString().split(System.lineSeparator());
+    assertEquals(3, lines.length);
+    assertTrue(lines[0].contains("\"level\": \"INFO\", \"thread\": \"" + Thread.currentThread().getName() + "\", \"scope\": null, \"depth\": 0, \"message\": \"Decompiling class pkg/A\"}"));
+    assertTrue(lines[1].contains("\"level\": \"WARN\""));
+    assertTrue(lines[1].endsWith("\"scope\": \"pkg/A\", \"depth\": 1, \"message\": \"quote \\\" and\\u0009tab\"}"));
+    assertTrue(lines[2].endsWith("\"message\": \"... done\"}"));
+  }
+
+  @Test
+  public void testConcurrentWriters() throws InterruptedException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    // a small buffer makes the threads wait for the writer
+    AsyncPrintStreamLogger logger = new AsyncPrintStreamLogger(new PrintStream(out, true), false, 16);
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      int id = t;
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 1000; i++) {
+          logger.writeMessage(id + ":" + i, Severity.INFO);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    logger.close();
+
+    String[] lines = out.toString().split(System.lineSeparator());
+    assertEquals(8000, lines.length);
+    int[] next = new int[threads.length];
+    for (String line : lines) {
+      assertTrue(line.startsWith(Severity.INFO.prefix));
+      String[] parts = line.substring(Severity.INFO.prefix.length()).split(":");
+      int id = Integer.parseInt(parts[0]);
+      // the records of one thread keep their order
+      assertEquals(next[id]++, Integer.parseInt(parts[1]));
+    }
+  }
+
+  @Test
+  public void testCloseWhileWriting() throws InterruptedException {
+    for (int run = 0; run < 50; run++) {
+      AtomicLong written = new AtomicLong();
+      OutputStream out = new OutputStream() {
+        @Override
+        public void write(int b) {
+          if (b == '\n') {
+            written.incrementAndGet();
+          }
+        }
+      };
+      AsyncPrintStreamLogger logger = new AsyncPrintStreamLogger(new PrintStream(out, true), false, 8);
+      AtomicLong returned = new AtomicLong();
+      AtomicBoolean stop = new AtomicBoolean();
+      Thread[] threads = new Thread[4];
+      for (int t = 0; t < threads.length; t++) {
+        threads[t] = new Thread(() -> {
+          while (!stop.get()) {
+            logger.writeMessage("message", Severity.INFO);
+            returned.incrementAndGet();
+          }
+        });
+        threads[t].start();
+      }
+      Thread.sleep(1);
+      logger.close();
+      stop.set(true);
+      for (Thread thread : threads) {
+        thread.join();
+      }
+
+      // every message is written before writeMessage returns or before close() does, whichever is later
+      assertEquals(returned.get(), written.get());
+    }
+  }
+
+  @Test
+  public void testDeadWriter() throws InterruptedException {
+    AtomicBoolean failed = new AtomicBoolean();
+    AtomicLong written = new AtomicLong();
+    OutputStream out = new OutputStream() {
+      @Override
+      public void write(int b) {
+        // the first batch kills the writer thread
+        if (failed.compareAndSet(false, true)) {
+          throw new IllegalStateException("broken stream");
+        }
+        if (b == '\n') {
+          written.incrementAndGet();
+        }
+      }
+    };
+    AsyncPrintStreamLogger logger = new AsyncPrintStreamLogger(new PrintStream(out, true), false, 2);
+    Thread producer = new Thread(() -> {
+      for (int i = 0; i < 100; i++) {
+        logger.writeMessage("message", Severity.INFO);
+      }
+    });
+    producer.start();
+    producer.join(10_000);
+
+    // the producer does not wait for a writer that is gone, it writes the messages itself
+    assertFalse(producer.isAlive());
+    assertTrue(written.get() > 0);
+    logger.close();
+  }
+}
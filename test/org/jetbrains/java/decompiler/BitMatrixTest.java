@@ -0,0 +1,65 @@
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.util.BitMatrix;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BitMatrixTest {
+  @Test
+  public void testRows() {
+    BitMatrix matrix = new BitMatrix(130);
+    assertEquals(3, matrix.getWordCount());
+
+    matrix.set(1, 0);
+    matrix.set(1, 64);
+    matrix.set(1, 129);
+    matrix.set(2, 64);
+    assertTrue(matrix.get(1, 129));
+    assertFalse(matrix.get(2, 129));
+    assertTrue(matrix.isRowEmpty(0));
+
+    matrix.clear(1, 0);
+    long[] row = matrix.getRow(1);
+    assertEquals(64, BitMatrix.nextSetBit(row, 0));
+    assertEquals(129, BitMatrix.nextSetBit(row, 65));
+    assertEquals(-1, BitMatrix.nextSetBit(row, 130));
+
+    long[] bits = matrix.newVector();
+    BitMatrix.set(bits, 64);
+    matrix.andNotAll(bits);
+    assertTrue(matrix.isRowEmpty(2));
+    assertFalse(matrix.get(1, 64));
+    assertTrue(matrix.get(1, 129));
+  }
+
+  @Test
+  public void testVectorOperations() {
+    long[] a = vector(0, 63, 100);
+    long[] b = vector(63, 127);
+
+    long[] union = a.clone();
+    BitMatrix.or(union, b);
+    assertArrayEquals(vector(0, 63, 100, 127), union);
+
+    long[] intersection = a.clone();
+    BitMatrix.and(intersection, b);
+    assertArrayEquals(vector(63), intersection);
+
+    long[] difference = a.clone();
+    BitMatrix.andNot(difference, b);
+    assertArrayEquals(vector(0, 100), difference);
+
+    assertTrue(BitMatrix.containsAll(union, a));
+    assertFalse(BitMatrix.containsAll(a, b));
+    assertTrue(BitMatrix.isEmpty(new long[2]));
+  }
+
+  private static long[] vector(int... elements) {
+    long[] bits = new long[BitMatrix.getWordCount(128)];
+    for (int element : elements) {
+      BitMatrix.set(bits, element);
+    }
+    return bits;
+  }
+}
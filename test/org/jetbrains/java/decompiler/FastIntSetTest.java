@@ -0,0 +1,72 @@
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.util.FastIntSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FastIntSetTest {
+  @Test
+  public void testSetOperations() {
+    FastIntSet a = set(1, 2, 70, 200);
+    FastIntSet b = set(2, 3, 200);
+
+    FastIntSet union = a.getCopy();
+    union.union(b);
+    assertEquals(new HashSet<>(Arrays.asList(1, 2, 3, 70, 200)), union.toPlainSet());
+
+    FastIntSet intersection = a.getCopy();
+    intersection.intersection(b);
+    assertEquals(set(2, 200), intersection);
+
+    FastIntSet complement = a.getCopy();
+    complement.complement(b);
+    assertEquals(set(1, 70), complement);
+
+    complement.complement(set(1, 70));
+    assertTrue(complement.isEmpty());
+    assertEquals(new FastIntSet(), complement);
+  }
+
+  // copies share their bits, so modifying one of them must not leak into the other
+  @Test
+  public void testCopiesAreIndependent() {
+    FastIntSet original = set(5, 64);
+    FastIntSet copy = original.getCopy();
+
+    copy.add(6);
+    copy.remove(64);
+    assertEquals(set(5, 64), original);
+    assertEquals(set(5, 6), copy);
+
+    original.union(set(1000));
+    assertFalse(copy.contains(1000));
+    assertTrue(original.contains(1000));
+  }
+
+  @Test
+  public void testCardinalityAndIteration() {
+    assertEquals(0, new FastIntSet().getCardinality());
+    assertEquals(1, set(100).getCardinality());
+    assertEquals(2, set(1, 100, 300).getCardinality());
+
+    FastIntSet set = set(300, 0, 63, 64);
+    StringBuilder elements = new StringBuilder();
+    for (Integer element : set) {
+      elements.append(element).append(' ');
+    }
+    assertEquals("0 63 64 300 ", elements.toString());
+    assertEquals(-1, set.next(301));
+  }
+
+  private static FastIntSet set(int... elements) {
+    FastIntSet set = new FastIntSet();
+    for (int element : elements) {
+      set.add(element);
+    }
+    return set;
+  }
+}
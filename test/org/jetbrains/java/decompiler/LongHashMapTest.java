@@ -0,0 +1,78 @@
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.modules.decompiler.vars.VarVersionPair;
+import org.jetbrains.java.decompiler.util.LongHashSet;
+import org.jetbrains.java.decompiler.util.LongIntHashMap;
+import org.jetbrains.java.decompiler.util.LongObjectHashMap;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongHashMapTest {
+  @Test
+  public void testPackedPairs() {
+    long key = VarVersionPair.pack(-3, 7);
+    assertEquals(-3, VarVersionPair.unpackVar(key));
+    assertEquals(7, VarVersionPair.unpackVersion(key));
+    assertEquals(new VarVersionPair(5, -1), VarVersionPair.unpack(new VarVersionPair(5, -1).toLong()));
+    assertTrue(VarVersionPair.pack(1, 100) < VarVersionPair.pack(2, 0));
+  }
+
+  // the key 0 is the pair (0, 0) and lives outside of the probed slots
+  @Test
+  public void testZeroKeyAndGrowth() {
+    LongObjectHashMap<String> map = new LongObjectHashMap<>();
+    map.put(0, "zero");
+    for (int var = 0; var < 100; var++) {
+      map.put(VarVersionPair.pack(var, 1), "v" + var);
+    }
+    map.put(VarVersionPair.pack(4, 2), null);
+
+    assertEquals(102, map.size());
+    assertEquals("zero", map.get(0));
+    assertEquals("v42", map.get(VarVersionPair.pack(42, 1)));
+    assertTrue(map.containsKey(VarVersionPair.pack(4, 2)));
+    assertNull(map.get(VarVersionPair.pack(4, 2)));
+    assertFalse(map.containsKey(VarVersionPair.pack(4, 3)));
+    assertEquals("v4", map.put(VarVersionPair.pack(4, 1), "four"));
+
+    int count = 0;
+    for (int slot = map.nextSlot(0); slot >= 0; slot = map.nextSlot(slot + 1)) {
+      assertEquals(map.get(map.keyAt(slot)), map.valueAt(slot));
+      count++;
+    }
+    assertEquals(102, count);
+  }
+
+  @Test
+  public void testCopiesAreIndependent() {
+    LongObjectHashMap<String> original = new LongObjectHashMap<>();
+    original.put(1, "a");
+    LongObjectHashMap<String> copy = new LongObjectHashMap<>(original);
+    copy.put(1, "b");
+    copy.put(2, "c");
+
+    assertEquals("a", original.get(1));
+    assertFalse(original.containsKey(2));
+    assertEquals(2, copy.size());
+  }
+
+  @Test
+  public void testSetAndIntMap() {
+    LongHashSet a = new LongHashSet();
+    LongHashSet b = new LongHashSet();
+    assertTrue(a.add(10));
+    assertFalse(a.add(10));
+    b.add(0);
+    assertFalse(a.intersects(b));
+    b.add(10);
+    assertTrue(a.intersects(b));
+    a.addAll(b);
+    assertArrayEquals(new long[]{0, 10}, a.sortedKeys());
+
+    LongIntHashMap map = new LongIntHashMap();
+    map.put(VarVersionPair.pack(3, 1), 5);
+    assertEquals(5, map.get(VarVersionPair.pack(3, 1), -1));
+    assertEquals(-1, map.get(VarVersionPair.pack(3, 2), -1));
+  }
+}
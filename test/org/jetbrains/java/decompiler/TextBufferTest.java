@@ -0,0 +1,52 @@
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.util.TextBuffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TextBufferTest {
+  @BeforeEach
+  public void setUp() {
+    MinimalFernflowerEnvironment.setup();
+  }
+
+  @Test
+  public void testPrependAndEnclose() {
+    TextBuffer buffer = new TextBuffer("b");
+    buffer.prepend("a").enclose("(", ")").append('c').prepend("!");
+    assertEquals(6, buffer.length());
+    assertEquals("!(ab)c", buffer.toString());
+
+    TextBuffer outer = new TextBuffer("x").append(buffer).append("y");
+    assertEquals("x!(ab)cy", outer.toString());
+  }
+
+  @Test
+  public void testCutAfterPrepend() {
+    TextBuffer buffer = new TextBuffer("body");
+    buffer.prepend("return ");
+    buffer.setStart(3);
+    assertEquals("urn body", buffer.toString());
+
+    buffer.prepend("re");
+    buffer.setLength(5);
+    assertEquals("reurn", buffer.toString());
+
+    buffer.prepend("  ");
+    assertFalse(buffer.containsOnlyWhitespaces());
+    buffer.setLength(1);
+    assertTrue(buffer.containsOnlyWhitespaces());
+  }
+
+  @Test
+  public void testOriginalLineNumbers() {
+    TextBuffer buffer = new TextBuffer("a").appendLineSeparator().append("b").appendLineSeparator().append("c");
+    // original line, new line pairs in any order, duplicates are dumped once
+    buffer.dumpOriginalLineNumbers(new int[]{7, 2, 3, 2, 5, 1, 7, 2});
+
+    TextBuffer expected = new TextBuffer("a// 5").appendLineSeparator().append("b// 3 7").appendLineSeparator().append("c");
+    assertEquals(expected.toString(), buffer.toString());
+  }
+}
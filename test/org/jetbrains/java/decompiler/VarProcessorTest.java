@@ -0,0 +1,27 @@
+package org.jetbrains.java.decompiler;
+
+import org.jetbrains.java.decompiler.main.collectors.VarNamesCollector;
+import org.jetbrains.java.decompiler.modules.decompiler.vars.VarProcessor;
+import org.jetbrains.java.decompiler.modules.decompiler.vars.VarVersionPair;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VarProcessorTest {
+  // variables that want the same name get it in the order of (var, version), whatever order they were named in
+  @Test
+  public void testRefreshVarNamesOrder() {
+    VarProcessor varProc = new VarProcessor(null, null);
+    for (int var = 24; var > 0; var--) {
+      varProc.setVarName(new VarVersionPair(var, var % 3), "e");
+    }
+
+    varProc.refreshVarNames(new VarNamesCollector());
+
+    String expected = "e";
+    for (int var = 1; var <= 24; var++) {
+      assertEquals(expected, varProc.getVarName(new VarVersionPair(var, var % 3)));
+      expected += "x";
+    }
+  }
+}